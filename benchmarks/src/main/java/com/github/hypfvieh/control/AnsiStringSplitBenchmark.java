@@ -0,0 +1,67 @@
+package com.github.hypfvieh.control;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.hypfvieh.control.jline3.AnsiStringSplit;
+
+/**
+ * Measures {@link AnsiStringSplit#smartWordSplit(String, int)} with plain and colored input.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnsiStringSplitBenchmark {
+
+    private static final String TEXT = "Change brightness of the given device. Values from 10-100 are allowed. "
+            + "The device has to be found by a previous scan before it can be used.";
+
+    private String plainText;
+    private String coloredText;
+
+    @Setup
+    public void setup() throws IOException {
+        Terminal terminal = BenchmarkSupport.createNoopTerminal();
+        plainText = TEXT;
+
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        String[] words = TEXT.split(" ");
+        int[] colors = {AttributedStyle.CYAN, AttributedStyle.YELLOW, AttributedStyle.BLUE};
+        for (int i = 0; i < words.length; i++) {
+            sb.style(AttributedStyle.DEFAULT.foreground(colors[i % colors.length]));
+            sb.append(words[i]);
+            sb.style(AttributedStyle.DEFAULT);
+            sb.append(' ');
+        }
+        coloredText = sb.toAnsi(terminal);
+        terminal.close();
+    }
+
+    @Benchmark
+    public List<String> splitPlain() {
+        return AnsiStringSplit.smartWordSplit(plainText, 29);
+    }
+
+    @Benchmark
+    public List<String> splitColored() {
+        return AnsiStringSplit.smartWordSplit(coloredText, 29);
+    }
+}
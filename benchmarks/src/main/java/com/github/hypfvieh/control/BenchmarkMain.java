@@ -0,0 +1,29 @@
+package com.github.hypfvieh.control;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all benchmarks with the GC profiler enabled, so allocation rates are reported next to the throughput.<br>
+ * Results are additionally written as JSON to jmh-result.json.<br>
+ * All regular JMH command line options are supported (e.g. a benchmark name regex or -f/-wi/-i).
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] _args) throws Exception {
+        CommandLineOptions cmdOptions = new CommandLineOptions(_args);
+
+        Options options = new OptionsBuilder()
+                .parent(cmdOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(cmdOptions.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(cmdOptions.getResult().orElse("jmh-result.json"))
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,186 @@
+package com.github.hypfvieh.control;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jline.terminal.Terminal;
+import org.jline.terminal.impl.DumbTerminal;
+
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+
+/**
+ * Shared fixtures for the benchmarks: a terminal which discards all output and
+ * fake commands which do not require any bluetooth hardware.
+ */
+final class BenchmarkSupport {
+
+    /** Terminal type used for the no-op terminal, supports colors so ANSI sequences are really created. */
+    static final String TERMINAL_TYPE = "xterm-256color";
+
+    static final String FAKE_CMD_PREFIX = "benchCmd";
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Creates a terminal which does not read any input and discards all output.
+     *
+     * @return terminal
+     * @throws IOException
+     */
+    static Terminal createNoopTerminal() throws IOException {
+        return createTerminal(new NullOutputStream());
+    }
+
+    /**
+     * Creates a terminal which does not read any input and writes all output to the given stream.
+     *
+     * @param _output output stream
+     * @return terminal
+     * @throws IOException
+     */
+    static Terminal createTerminal(OutputStream _output) throws IOException {
+        return new DumbTerminal("benchmark", TERMINAL_TYPE, new ByteArrayInputStream(new byte[0]), _output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fails if the given condition is false, used to check once in the setup that a benchmark measures
+     * the code path it is named after.
+     *
+     * @param _condition condition
+     * @param _message error message
+     */
+    static void check(boolean _condition, String _message) {
+        if (!_condition) {
+            throw new IllegalStateException(_message);
+        }
+    }
+
+    /**
+     * Registers the given number of fake commands in the {@link CommandRegistry}.
+     * Commands which are already registered (e.g. by another benchmark in the same JVM) are skipped.
+     *
+     * @param _count number of commands
+     */
+    static void registerFakeCommands(int _count) {
+        CommandRegistry registry = CommandRegistry.getInstance();
+        for (int i = 0; i < _count; i++) {
+            if (!registry.getRegisteredCommands().containsKey(FAKE_CMD_PREFIX + i)) {
+                registry.registerCommand(new FakeCommand(FAKE_CMD_PREFIX + i, "bc" + i));
+            }
+        }
+    }
+
+    /**
+     * Command doing nothing but echoing its arguments.
+     */
+    static class FakeCommand extends AbstractCommand {
+        private final String   commandName;
+        private final String[] aliases;
+
+        FakeCommand(String _commandName, String... _aliases) {
+            commandName = _commandName;
+            aliases = _aliases;
+        }
+
+        @Override
+        public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+            return printSuccess(new ShellFormatter(_terminal), commandName + " executed with " + StringUtils.join(_arguments, ", "));
+        }
+
+        @Override
+        public String getCommandName() {
+            return commandName;
+        }
+
+        @Override
+        public String[] getCommandAliases() {
+            return aliases;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Fake command used for benchmarking, it will echo the given arguments. "
+                    + "The description is rather long to force the help output to wrap into multiple lines.";
+        }
+
+        @Override
+        public List<CommandArg> getCommandArgs() {
+            CommandArg device = new CommandArg("deviceMacAddress", true, true, () -> {
+                List<ArgWithDescription> args = new ArrayList<>();
+                for (int i = 0; i < 16; i++) {
+                    args.add(new ArgWithDescription(String.format("00:11:22:33:44:%02X", i), "FakeDevice" + i));
+                }
+                return args;
+            });
+            CommandArg level = new CommandArg("level", true, true, () -> {
+                List<ArgWithDescription> args = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    args.add(new ArgWithDescription(String.valueOf(i), null));
+                }
+                return args;
+            });
+            return Arrays.asList(device, level);
+        }
+
+        @Override
+        public String getCmdGroup() {
+            return "Benchmark";
+        }
+    }
+
+    /**
+     * {@link OutputStream} discarding everything written to it, unless recording was started.
+     */
+    static class RecordingOutputStream extends NullOutputStream {
+        private ByteArrayOutputStream recorded;
+
+        void startRecording() {
+            recorded = new ByteArrayOutputStream();
+        }
+
+        String stopRecording() {
+            String result = new String(recorded.toByteArray(), StandardCharsets.UTF_8);
+            recorded = null;
+            return result;
+        }
+
+        @Override
+        public void write(int _b) {
+            if (recorded != null) {
+                recorded.write(_b);
+            }
+        }
+
+        @Override
+        public void write(byte[] _b, int _off, int _len) {
+            if (recorded != null) {
+                recorded.write(_b, _off, _len);
+            }
+        }
+    }
+
+    /**
+     * {@link OutputStream} discarding everything written to it.
+     */
+    static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int _b) {
+        }
+
+        @Override
+        public void write(byte[] _b, int _off, int _len) {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.hypfvieh.control;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.LineReaderBuilder;
+import org.jline.reader.ParsedLine;
+import org.jline.terminal.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures TAB completion through {@link CommandRegistry#getCompleter()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionBenchmark {
+
+    @Param({"10", "200"})
+    private int             registeredCommands;
+
+    private Terminal        terminal;
+    private LineReader      reader;
+    private Completer       completer;
+
+    private ParsedLine      emptyLine;
+    private ParsedLine      commandPrefix;
+    private ParsedLine      argumentPrefix;
+
+    private List<Candidate> candidates;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.createNoopTerminal();
+        BenchmarkSupport.registerFakeCommands(registeredCommands);
+
+        completer = CommandRegistry.getInstance().getCompleter();
+        reader = LineReaderBuilder.builder().terminal(terminal).completer(completer).build();
+
+        emptyLine = parse("");
+        commandPrefix = parse("benchCmd1");
+        argumentPrefix = parse("benchCmd1 00:11:22:33:44:0A 4");
+
+        candidates = new ArrayList<>();
+
+        BenchmarkSupport.check(completeAllCommands().size() >= registeredCommands, "Not all commands completed");
+        BenchmarkSupport.check(completeCommandPrefix().stream().anyMatch(c -> c.value().equals("benchCmd1")), "Command prefix not completed");
+        BenchmarkSupport.check(completeArgumentPrefix().stream().anyMatch(c -> c.value().equals("42")), "Argument prefix not completed");
+    }
+
+    private ParsedLine parse(String _line) {
+        return reader.getParser().parse(_line, _line.length());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public List<Candidate> completeAllCommands() {
+        candidates.clear();
+        completer.complete(reader, emptyLine, candidates);
+        return candidates;
+    }
+
+    @Benchmark
+    public List<Candidate> completeCommandPrefix() {
+        candidates.clear();
+        completer.complete(reader, commandPrefix, candidates);
+        return candidates;
+    }
+
+    @Benchmark
+    public List<Candidate> completeArgumentPrefix() {
+        candidates.clear();
+        completer.complete(reader, argumentPrefix, candidates);
+        return candidates;
+    }
+}
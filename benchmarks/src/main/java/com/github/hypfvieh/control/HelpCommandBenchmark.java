@@ -0,0 +1,70 @@
+package com.github.hypfvieh.control;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.hypfvieh.control.commands.base.ICommand;
+
+/**
+ * Measures rendering of the help table by the built-in help command.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HelpCommandBenchmark {
+
+    @Param({"10", "200"})
+    private int          registeredCommands;
+
+    private Terminal     terminal;
+    private ICommand     helpCommand;
+    private List<String> noArgs;
+    private List<String> commandArg;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.createNoopTerminal();
+        BenchmarkSupport.registerFakeCommands(registeredCommands);
+        helpCommand = CommandRegistry.getInstance().getRegisteredCommands().get("help");
+        noArgs = Collections.emptyList();
+        commandArg = Collections.singletonList("benchCmd1");
+
+        BenchmarkSupport.check(String.join("\n", helpTable()).contains("benchCmd" + (registeredCommands - 1)), "Help table incomplete");
+        String[] help = helpForCommand();
+        BenchmarkSupport.check(help != null && help.length > 0 && !String.join("\n", help).contains("Unknown command"), "Help for command not shown");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public String[] helpTable() throws IOException {
+        return helpCommand.execute(noArgs, terminal);
+    }
+
+    @Benchmark
+    public String[] helpForCommand() throws IOException {
+        return helpCommand.execute(commandArg, terminal);
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.hypfvieh.control;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.hypfvieh.control.BenchmarkSupport.RecordingOutputStream;
+
+/**
+ * Measures parsing and dispatching of user input in {@link EmbeddedShell#handleUserInput(String)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShellDispatchBenchmark {
+
+    @Param({"10", "200"})
+    private int           registeredCommands;
+
+    private EmbeddedShell shell;
+    private RecordingOutputStream output;
+
+    @Setup
+    public void setup() throws IOException {
+        output = new RecordingOutputStream();
+        Terminal terminal = BenchmarkSupport.createTerminal(output);
+        shell = new EmbeddedShell(new ByteArrayInputStream(new byte[0]), terminal.output(), null);
+        shell.initialize(terminal, null, null);
+        BenchmarkSupport.registerFakeCommands(registeredCommands);
+
+        checkOutput("benchCmd1 00:11:22:33:44:01 50", "benchCmd1 executed with");
+        checkOutput("bc1 00:11:22:33:44:01 50", "benchCmd1 executed with");
+        checkOutput("benchCmd1", "Arguments missing");
+        checkOutput("   doesNotExist  with some   arguments ", "Unknown command");
+    }
+
+    private void checkOutput(String _input, String _expected) throws IOException {
+        output.startRecording();
+        shell.handleUserInput(_input);
+        String printed = output.stopRecording();
+        BenchmarkSupport.check(printed.contains(_expected), "'" + _input + "' printed '" + printed + "' instead of '" + _expected + "'");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        shell.close();
+    }
+
+    @Benchmark
+    public void dispatchCommand() throws IOException {
+        shell.handleUserInput("benchCmd1 00:11:22:33:44:01 50");
+    }
+
+    @Benchmark
+    public void dispatchAlias() throws IOException {
+        shell.handleUserInput("bc1 00:11:22:33:44:01 50");
+    }
+
+    @Benchmark
+    public void dispatchMissingArguments() throws IOException {
+        shell.handleUserInput("benchCmd1");
+    }
+
+    @Benchmark
+    public void dispatchUnknownCommand() throws IOException {
+        shell.handleUserInput("   doesNotExist  with some   arguments ");
+    }
+}
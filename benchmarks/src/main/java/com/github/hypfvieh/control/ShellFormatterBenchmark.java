@@ -0,0 +1,64 @@
+package com.github.hypfvieh.control;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link ShellFormatter#rightPad(AttributedStringBuilder, int)} and
+ * {@link ShellFormatter#printInColor(String, AttributedStyle)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShellFormatterBenchmark {
+
+    private Terminal                terminal;
+    private ShellFormatter          formatter;
+    private AttributedStringBuilder commandName;
+    private AttributedStyle         red;
+
+    @Setup
+    public void setup() throws IOException {
+        terminal = BenchmarkSupport.createNoopTerminal();
+        formatter = new ShellFormatter(terminal);
+
+        commandName = new AttributedStringBuilder();
+        commandName.style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN));
+        commandName.append("setBrightness");
+
+        red = AttributedStyle.DEFAULT.foreground(AttributedStyle.RED);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        terminal.close();
+    }
+
+    @Benchmark
+    public String rightPad() {
+        return formatter.rightPad(commandName, 20);
+    }
+
+    @Benchmark
+    public String printInColor() {
+        return formatter.printInColor("Arguments missing, expecting 2 but got 0", red);
+    }
+}
@@ -1,13 +1,34 @@
 package com.github.hypfvieh;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.UserInterruptException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.hypfvieh.control.BatchRunner;
+import com.github.hypfvieh.control.CommandDispatcher;
 import com.github.hypfvieh.control.EmbeddedShell;
+import com.github.hypfvieh.control.commands.ConnectionsCommand;
+import com.github.hypfvieh.control.commands.DiscoveryCommand;
+import com.github.hypfvieh.control.commands.FadeCommand;
+import com.github.hypfvieh.control.commands.FlightRecordingCommand;
 import com.github.hypfvieh.control.commands.OnOffSwitchCommand;
 import com.github.hypfvieh.control.commands.ScanCommand;
+import com.github.hypfvieh.control.commands.SceneCommand;
+import com.github.hypfvieh.control.commands.ScheduleCommand;
 import com.github.hypfvieh.control.commands.SelectAdapter;
 import com.github.hypfvieh.control.commands.SetBrightnessCommand;
 import com.github.hypfvieh.control.commands.SetDefaultDevicePassword;
@@ -15,45 +36,320 @@ import com.github.hypfvieh.control.commands.SetDevicePasswordCommand;
 import com.github.hypfvieh.control.commands.SetRgbCommand;
 import com.github.hypfvieh.control.commands.ShowDeviceDetailsCommand;
 import com.github.hypfvieh.control.commands.ShowDevicesCommand;
+import com.github.hypfvieh.control.commands.StatsCommand;
+import com.github.hypfvieh.control.commands.WriteQueueCommand;
+import com.github.hypfvieh.control.commands.base.ICommand;
 import com.github.hypfvieh.control.commands.init.ShellDeInitializeCommand;
 import com.github.hypfvieh.control.commands.init.ShellInitializeCommand;
+import com.github.hypfvieh.control.daemon.DaemonClient;
+import com.github.hypfvieh.control.daemon.DaemonProtocol;
+import com.github.hypfvieh.control.daemon.DaemonServer;
+import com.github.hypfvieh.control.daemon.ShellServer;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DiscoveryService;
+import com.github.hypfvieh.control.http.HttpApiServer;
+import com.github.hypfvieh.control.schedule.Scheduler;
 
 public class BlueMain {
 
+    /** Read script from stdin if given as script file. */
+    private static final String STDIN = "-";
+
+    private static final String SHELL_PROMPT = "bleCmd > ";
+
+    /** Exit code used if the daemon could not be contacted. */
+    private static final int EXIT_DAEMON_NOT_REACHABLE = 4;
+
     public static void main(String[] _args) {
         Logger logger = LoggerFactory.getLogger(BlueMain.class);
-        logger.debug("Initializing Shell");
+
+        String scriptFile = null;
+        String scanTime = null;
+        boolean daemon = false;
+        boolean client = false;
+        List<String> commandLine = new ArrayList<>();
+        for (int i = 0; i < _args.length; i++) {
+            if (commandLine.isEmpty() && ("-f".equals(_args[i]) || "--file".equals(_args[i])) && i + 1 < _args.length) {
+                scriptFile = _args[++i];
+            } else if (commandLine.isEmpty() && ("-s".equals(_args[i]) || "--scan".equals(_args[i])) && i + 1 < _args.length) {
+                scanTime = _args[++i];
+            } else if (commandLine.isEmpty() && ("-d".equals(_args[i]) || "--daemon".equals(_args[i]))) {
+                daemon = true;
+            } else if (commandLine.isEmpty() && ("-c".equals(_args[i]) || "--client".equals(_args[i]))) {
+                client = true;
+            } else if (commandLine.isEmpty() && ("-h".equals(_args[i]) || "--help".equals(_args[i]))) {
+                printUsage();
+                return;
+            } else {
+                commandLine.add(_args[i]);
+            }
+        }
+
+        if (daemon) {
+            // daemon is usually stopped by a signal, calling System.exit while shutdown hooks are running would block
+            int exitCode = runDaemon(logger, scanTime);
+            if (exitCode != 0) {
+                System.exit(exitCode);
+            }
+            return;
+        }
+
+        // no command and no script given: interactive shell if we have a console, otherwise read script from stdin
+        if (scriptFile == null && commandLine.isEmpty()) {
+            if (System.console() != null && scanTime == null && !client) {
+                runShell(logger);
+                return;
+            }
+            scriptFile = STDIN;
+        }
+
+        if (client) {
+            System.exit(runClient(scriptFile, scanTime, StringUtils.join(commandLine, " ")));
+        }
+        System.exit(runBatch(logger, scriptFile, scanTime, StringUtils.join(commandLine, " ")));
+    }
+
+    private static void printUsage() {
+        System.out.println("Usage: BlueMain                                   start interactive shell");
+        System.out.println("       BlueMain [-s seconds] command [arguments]  run a single command");
+        System.out.println("       BlueMain [-s seconds] -f script|-          run all commands of a script file or stdin");
+        System.out.println("       BlueMain [-s seconds] -d                   start daemon accepting commands from clients");
+        System.out.println("       BlueMain -c [-s seconds] command|-f script send commands to the running daemon");
+        System.out.println();
+        System.out.println("  -s, --scan seconds  scan for devices before executing commands");
+        System.out.println("  -f, --file script   script with one command per line, '#' starts a comment, '-' reads stdin");
+        System.out.println("  -d, --daemon        keep running and execute commands sent by clients (port: -D" + DaemonProtocol.PORT_PROPERTY + ")");
+        System.out.println("  -c, --client        execute commands using the running daemon");
+        System.out.println();
+        System.out.println("Exit codes: 0 = success, 1 = command failed, 2 = unknown command or missing arguments, 3 = initialization failed,");
+        System.out.println("            4 = daemon not reachable");
+    }
+
+    /**
+     * Register all supported commands.
+     *
+     * @param _registry method used to register a command
+     */
+    private static void registerCommands(Consumer<ICommand> _registry) {
+        // adapter commands
+        _registry.accept(new SelectAdapter());
+        _registry.accept(new OnOffSwitchCommand());
+        _registry.accept(new ScanCommand());
+        _registry.accept(new DiscoveryCommand());
+
+        // device commands
+        _registry.accept(new SetBrightnessCommand());
+        _registry.accept(new SetDevicePasswordCommand());
+        _registry.accept(new SetDefaultDevicePassword());
+
+        _registry.accept(new SetRgbCommand());
+        _registry.accept(new FadeCommand());
+        _registry.accept(new SceneCommand());
+        _registry.accept(new ScheduleCommand());
+        _registry.accept(new ShowDeviceDetailsCommand());
+        _registry.accept(new ShowDevicesCommand());
+        _registry.accept(new WriteQueueCommand());
+        _registry.accept(new ConnectionsCommand());
+        _registry.accept(new StatsCommand());
+        _registry.accept(new FlightRecordingCommand());
+    }
+
+    /**
+     * Start the background discovery if enabled by system property.
+     */
+    private static void startDiscoveryIfEnabled() {
+        if (Boolean.getBoolean(DiscoveryService.ENABLED_PROPERTY)) {
+            DiscoveryService.getInstance().start();
+        }
+    }
+
+    /**
+     * Connect the devices configured for warm-up in background.
+     */
+    private static void warmUpConnectionsIfConfigured() {
+        String selector = System.getProperty(DeviceConnectionManager.WARMUP_PROPERTY);
+        if (!StringUtils.isBlank(selector)) {
+            DeviceConnectionManager.getInstance().warmUpAsync(selector);
+        }
+    }
+
+    private static void runShell(Logger _logger) {
+        _logger.debug("Initializing Shell");
 
         try(EmbeddedShell shell = new EmbeddedShell(System.in, System.out, System.err))  {
             // initialize the shell
             shell.initialize(new ShellInitializeCommand(), new ShellDeInitializeCommand());
             // register our commands
-            
-            // adapter commands
-            shell.registerCommand(new SelectAdapter());
-            shell.registerCommand(new OnOffSwitchCommand());
-            shell.registerCommand(new ScanCommand());
-            
-            // device commands
-            shell.registerCommand(new SetBrightnessCommand());
-            shell.registerCommand(new SetDevicePasswordCommand());
-            shell.registerCommand(new SetDefaultDevicePassword());
-            
-            shell.registerCommand(new SetRgbCommand());
-            shell.registerCommand(new ShowDeviceDetailsCommand());
-            shell.registerCommand(new ShowDevicesCommand());
-            
+            registerCommands(shell::registerCommand);
+            startDiscoveryIfEnabled();
+            warmUpConnectionsIfConfigured();
+            Scheduler.getInstance().start();
+
             // start shell
-            shell.start("bleCmd > ");
+            shell.start(SHELL_PROMPT);
         } catch (Exception _ex) {
             // EndOfFileException will occur when using CTRL+D to exit shell
             // UserInterruptException will occur when using CTRL+C
-            if (! (_ex instanceof EndOfFileException) && !(_ex instanceof UserInterruptException)) { 
+            if (! (_ex instanceof EndOfFileException) && !(_ex instanceof UserInterruptException)) {
+                System.err.println("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
+            }
+        } finally {
+            Scheduler.getInstance().stop();
+            DiscoveryService.getInstance().stop();
+            PaulmannDeviceController.getInstance().deinitialize();
+            _logger.debug("Deinitializing Shell");
+        }
+    }
+
+    /**
+     * Run a single command line or a script without terminal.
+     *
+     * @param _logger
+     * @param _scriptFile script to execute ('-' for stdin), null to execute the given command line
+     * @param _scanTime scan for devices for the given seconds before executing, may be null
+     * @param _commandLine command line to execute if no script is given
+     * @return exit code
+     */
+    private static int runBatch(Logger _logger, String _scriptFile, String _scanTime, String _commandLine) {
+        _logger.debug("Initializing batch mode");
+
+        try (BatchRunner runner = new BatchRunner(System.out, System.err)) {
+            try {
+                runner.initialize(new ShellInitializeCommand(), new ShellDeInitializeCommand());
+            } catch (IOException | RuntimeException _ex) {
+                System.err.println("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
+                return BatchRunner.EXIT_INIT_FAILED;
+            }
+            registerCommands(runner::registerCommand);
+            startDiscoveryIfEnabled();
+
+            if (_scanTime != null) {
+                int exitCode = runner.runLine("scan " + _scanTime);
+                if (exitCode != 0) {
+                    return exitCode;
+                }
+            }
+
+            if (_scriptFile == null) {
+                return runner.runLine(_commandLine);
+            } else if (STDIN.equals(_scriptFile)) {
+                return runner.runScript(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(_scriptFile), StandardCharsets.UTF_8)) {
+                    return runner.runScript(reader);
+                }
+            }
+        } catch (InterruptedIOException _ex) {
+            // exit command used as single command
+            return 0;
+        } catch (IOException _ex) {
+            System.err.println("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
+            return 1;
+        } finally {
+            DiscoveryService.getInstance().stop();
+            PaulmannDeviceController.getInstance().deinitialize();
+            _logger.debug("Deinitializing batch mode");
+        }
+    }
+
+    /**
+     * Initialize the bluetooth connection once and execute commands sent by clients until the process is terminated.
+     *
+     * @param _logger
+     * @param _scanTime scan for devices for the given seconds before accepting clients, may be null
+     * @return exit code
+     */
+    private static int runDaemon(Logger _logger, String _scanTime) {
+        _logger.debug("Initializing daemon");
+
+        Thread mainThread = Thread.currentThread();
+        try (BatchRunner runner = new BatchRunner(System.out, System.err)) {
+            try {
+                runner.initialize(new ShellInitializeCommand(), new ShellDeInitializeCommand());
+            } catch (IOException | RuntimeException _ex) {
                 System.err.println("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
-            }            
+                return BatchRunner.EXIT_INIT_FAILED;
+            }
+            registerCommands(runner::registerCommand);
+            startDiscoveryIfEnabled();
+
+            if (_scanTime != null) {
+                runner.runLine("scan " + _scanTime);
+            }
+            warmUpConnectionsIfConfigured();
+            Scheduler.getInstance().start();
+
+            int shellPort = Integer.getInteger(ShellServer.PORT_PROPERTY, 0);
+            int httpPort = Integer.getInteger(HttpApiServer.PORT_PROPERTY, 0);
+            try (DaemonServer server = new DaemonServer(DaemonProtocol.getPort(), DaemonProtocol.getTokenFile(), new CommandDispatcher());
+                    ShellServer shellServer = new ShellServer(shellPort, DaemonProtocol.getTokenFile(), SHELL_PROMPT);
+                    HttpApiServer httpServer = new HttpApiServer(httpPort, DaemonProtocol.getTokenFile(), new CommandDispatcher())) {
+                server.start();
+                if (shellPort > 0) {
+                    shellServer.start();
+                    System.err.println("Shell sessions accepted on port " + shellPort);
+                }
+                if (httpPort > 0) {
+                    httpServer.start();
+                    System.err.println("HTTP API listening on port " + httpPort);
+                }
+                // stop the daemon on SIGTERM/CTRL+C and wait until the bluetooth connection is closed
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        httpServer.close();
+                        shellServer.close();
+                        server.close();
+                        mainThread.join(TimeUnit.SECONDS.toMillis(5));
+                    } catch (IOException | InterruptedException _ex) {
+                        _logger.debug("Error while stopping daemon", _ex);
+                    }
+                }, "DaemonShutdown"));
+                System.err.println("Daemon listening on port " + DaemonProtocol.getPort());
+                server.awaitTermination();
+            }
+            return 0;
+        } catch (IOException _ex) {
+            System.err.println("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
+            return 1;
+        } catch (InterruptedException _ex) {
+            return 0;
         } finally {
+            Scheduler.getInstance().stop();
+            DiscoveryService.getInstance().stop();
             PaulmannDeviceController.getInstance().deinitialize();
-            logger.debug("Deinitializing Shell");
+            _logger.debug("Deinitializing daemon");
+        }
+    }
+
+    /**
+     * Send a single command line or a script to the running daemon.
+     *
+     * @param _scriptFile script to execute ('-' for stdin), null to execute the given command line
+     * @param _scanTime scan for devices for the given seconds before executing, may be null
+     * @param _commandLine command line to execute if no script is given
+     * @return exit code
+     */
+    private static int runClient(String _scriptFile, String _scanTime, String _commandLine) {
+        try (DaemonClient client = new DaemonClient(DaemonProtocol.getPort(), DaemonProtocol.getTokenFile())) {
+            if (_scanTime != null) {
+                int exitCode = client.execute("scan " + _scanTime, System.out, System.err);
+                if (exitCode != 0) {
+                    return exitCode;
+                }
+            }
+
+            if (_scriptFile == null) {
+                return client.execute(_commandLine, System.out, System.err);
+            } else if (STDIN.equals(_scriptFile)) {
+                return client.runScript(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.out, System.err);
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(_scriptFile), StandardCharsets.UTF_8)) {
+                    return client.runScript(reader, System.out, System.err);
+                }
+            }
+        } catch (IOException _ex) {
+            System.err.println("Daemon not reachable: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage());
+            return EXIT_DAEMON_NOT_REACHABLE;
         }
     }
 }
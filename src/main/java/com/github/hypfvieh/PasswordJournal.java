@@ -0,0 +1,387 @@
+package com.github.hypfvieh;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent key/value store consisting of a snapshot (properties file) and an append-only journal.<br>
+ * Changes are queued and written by a background thread: all changes queued at that time are appended to the journal
+ * and synced to disk at once, so callers never wait for file I/O and bulk changes cost one write per batch.
+ * When the journal contains more than the given number of entries, it is compacted: the current state is written to a
+ * temporary file which atomically replaces the snapshot, afterwards the journal is truncated.
+ * Journal entries use the properties format, so on startup the journal is simply loaded on top of the snapshot
+ * (later entries override earlier ones).
+ */
+final class PasswordJournal {
+    private static final int        WRITE_ATTEMPTS = 3;
+    /** Queued by {@link #close(long, TimeUnit)}, the writer stops after writing everything queued before. */
+    private static final Object     STOP           = new Object();
+
+    private final Logger            logger         = LoggerFactory.getLogger(getClass());
+
+    private final Path              snapshotFile;
+    private final Path              journalFile;
+    private final int               compactThreshold;
+
+    /** State written to disk (snapshot + journal), only used by the writer thread after loading. */
+    private final Map<String, String> persisted    = new HashMap<>();
+    private final BlockingQueue<Object> queue      = new LinkedBlockingQueue<>();
+    private final Thread            writerThread;
+
+    private FileChannel             journal;
+    private int                     journalEntries;
+
+    /**
+     * Load snapshot and journal from the given directory and start the writer.
+     *
+     * @param _directory directory of snapshot and journal (created if missing)
+     * @param _baseName file name of the snapshot, the journal uses the same name with '.journal' appended
+     * @param _compactThreshold number of journal entries after which the journal is compacted
+     * @param _initial values used if no snapshot exists yet (e.g. migrated from another file), may be null
+     * @throws IOException if the files could not be read
+     */
+    PasswordJournal(Path _directory, String _baseName, int _compactThreshold, Map<String, String> _initial) throws IOException {
+        snapshotFile = _directory.resolve(_baseName);
+        journalFile = _directory.resolve(_baseName + ".journal");
+        compactThreshold = Math.max(1, _compactThreshold);
+
+        Files.createDirectories(_directory);
+        if (Files.exists(snapshotFile)) {
+            load(snapshotFile);
+        } else if (_initial != null) {
+            persisted.putAll(_initial);
+        }
+        if (Files.exists(journalFile)) {
+            // entries of an existing journal count towards the next compaction
+            journalEntries = load(journalFile);
+        }
+
+        writerThread = new Thread(this::writeLoop, "PasswordJournal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Load the given file on top of the values loaded before.
+     * @return number of entries read
+     */
+    private int load(Path _file) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(_file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        for (String key : props.stringPropertyNames()) {
+            String value = props.getProperty(key);
+            if (value.isEmpty()) {
+                persisted.remove(key);
+            } else {
+                persisted.put(key, value);
+            }
+        }
+        return props.size();
+    }
+
+    /**
+     * Values read from disk on startup.
+     * @return copy of all values
+     */
+    Map<String, String> getLoadedValues() {
+        return new HashMap<>(persisted);
+    }
+
+    /**
+     * Queue a change, which is written in background.
+     * @param _key key
+     * @param _value value, null to remove the key
+     */
+    void put(String _key, String _value) {
+        queue.add(new String[] {_key, _value == null ? "" : _value});
+    }
+
+    /**
+     * Wait until all changes queued before are written.
+     * @param _timeout maximum time to wait
+     * @param _unit unit of timeout
+     * @return true if all changes were written, false on timeout or write error
+     * @throws InterruptedException if the calling thread was interrupted
+     */
+    boolean flush(long _timeout, TimeUnit _unit) throws InterruptedException {
+        CompletableFuture<Boolean> marker = new CompletableFuture<>();
+        queue.add(marker);
+        try {
+            return marker.get(_timeout, _unit);
+        } catch (ExecutionException | TimeoutException _ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Write all queued changes, compact the journal and stop the writer.
+     * @param _timeout maximum time to wait
+     * @param _unit unit of timeout
+     * @throws InterruptedException if the calling thread was interrupted
+     */
+    void close(long _timeout, TimeUnit _unit) throws InterruptedException {
+        // the writer is not interrupted, an interrupt would close the journal channel while writing
+        queue.add(STOP);
+        writerThread.join(_unit.toMillis(_timeout));
+    }
+
+    private void writeLoop() {
+        List<Object> batch = new ArrayList<>();
+        boolean stopped = false;
+        while (!stopped) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException _ex) {
+                logger.warn("Password journal writer interrupted, writing remaining changes");
+                stopped = true;
+            }
+            queue.drainTo(batch);
+            stopped |= batch.remove(STOP);
+            writeBatch(batch);
+            batch.clear();
+        }
+        try {
+            if (journalEntries > 0) {
+                compact();
+            }
+        } catch (IOException _ex) {
+            logger.error("Could not compact password journal {}", journalFile, _ex);
+        } finally {
+            closeJournal();
+        }
+    }
+
+    private void writeBatch(List<Object> _batch) {
+        StringBuilder sb = new StringBuilder();
+        int entries = 0;
+        List<CompletableFuture<Boolean>> markers = new ArrayList<>();
+        for (Object item : _batch) {
+            if (item instanceof String[]) {
+                String[] entry = (String[]) item;
+                sb.append(escape(entry[0], true)).append('=').append(escape(entry[1], false)).append('\n');
+                entries++;
+            } else {
+                @SuppressWarnings("unchecked")
+                CompletableFuture<Boolean> marker = (CompletableFuture<Boolean>) item;
+                markers.add(marker);
+            }
+        }
+
+        boolean written = entries == 0;
+        for (int attempt = 1; !written && attempt <= WRITE_ATTEMPTS; attempt++) {
+            try {
+                appendAndSync(sb.toString());
+                written = true;
+            } catch (IOException _ex) {
+                logger.error("Could not write {} entries to password journal {} (attempt {} of {})", entries, journalFile, attempt, WRITE_ATTEMPTS, _ex);
+                closeJournal();
+                pause();
+            }
+        }
+
+        if (written) {
+            for (Object item : _batch) {
+                if (item instanceof String[]) {
+                    String[] entry = (String[]) item;
+                    if (entry[1].isEmpty()) {
+                        persisted.remove(entry[0]);
+                    } else {
+                        persisted.put(entry[0], entry[1]);
+                    }
+                }
+            }
+            journalEntries += entries;
+            if (journalEntries >= compactThreshold) {
+                try {
+                    compact();
+                } catch (IOException _ex) {
+                    logger.error("Could not compact password journal {}", journalFile, _ex);
+                }
+            }
+        }
+        for (CompletableFuture<Boolean> marker : markers) {
+            marker.complete(written);
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void appendAndSync(String _entries) throws IOException {
+        if (journal == null) {
+            createOwnerOnly(journalFile);
+            journal = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(_entries.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        // one sync per batch
+        journal.force(false);
+    }
+
+    /**
+     * Write the persisted state to a new snapshot, replace the old snapshot atomically and truncate the journal.<br>
+     * If the process dies after replacing the snapshot but before truncating the journal, loading the old journal on top
+     * of the new snapshot results in the same state, as the snapshot contains exactly the values written to the journal.
+     */
+    private void compact() throws IOException {
+        Path tmpFile = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        Files.deleteIfExists(tmpFile);
+        createOwnerOnly(tmpFile);
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE);
+                Writer writer = new OutputStreamWriter(new ChannelOutputStream(channel), StandardCharsets.UTF_8)) {
+            for (Entry<String, String> entry : new TreeMap<>(persisted).entrySet()) {
+                writer.write(escape(entry.getKey(), true) + "=" + escape(entry.getValue(), false) + "\n");
+            }
+            writer.flush();
+            channel.force(true);
+        }
+        try {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException _ex) {
+            Files.move(tmpFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (journal == null && Files.exists(journalFile)) {
+            journal = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        if (journal != null) {
+            journal.truncate(0);
+            journal.force(false);
+        }
+        logger.debug("Compacted password journal ({} entries, {} values)", journalEntries, persisted.size());
+        journalEntries = 0;
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException _ex) {
+                logger.debug("Could not close password journal", _ex);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Create the file readable by the owner only (if supported by the file system), if it does not exist.
+     */
+    private static void createOwnerOnly(Path _file) throws IOException {
+        if (Files.exists(_file)) {
+            return;
+        }
+        try {
+            Files.createFile(_file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException _ex) {
+            Files.createFile(_file);
+        }
+    }
+
+    /**
+     * Escape key or value using the properties format.
+     */
+    static String escape(String _str, boolean _key) {
+        StringBuilder sb = new StringBuilder(_str.length() + 8);
+        for (int i = 0; i < _str.length(); i++) {
+            char c = _str.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                case '=':
+                case ':':
+                case '#':
+                case '!':
+                    sb.append('\\').append(c);
+                    break;
+                case ' ':
+                    if (i == 0 || _key) {
+                        sb.append('\\');
+                    }
+                    sb.append(c);
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Output stream writing to a file channel.
+     */
+    private static final class ChannelOutputStream extends OutputStream {
+        private final FileChannel channel;
+
+        ChannelOutputStream(FileChannel _channel) {
+            channel = _channel;
+        }
+
+        @Override
+        public void write(int _b) throws IOException {
+            write(new byte[] {(byte) _b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] _b, int _off, int _len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(_b, _off, _len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() {
+            // channel is closed by its owner
+        }
+    }
+}
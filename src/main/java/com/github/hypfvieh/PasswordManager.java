@@ -1,19 +1,70 @@
 package com.github.hypfvieh;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import com.github.hypfvieh.util.FileIoUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Stores the passwords of all devices and the default password.<br>
+ * Passwords are kept in memory, changes are written in background to a journal in the directory configured by
+ * 'paulmann.passwords.dir' (default ~/.paulmann-bt-cmdline), see {@link PasswordJournal}.
+ * On first start, passwords are taken from 'devicePasswords.properties' on the classpath and in the working directory.
+ */
 public class PasswordManager {
-    private static final PasswordManager INSTANCE = new PasswordManager();
-    
-    private final Properties macToPassword;
-    private String defaultPassword;
-    
+    private static final String          FILE_NAME           = "devicePasswords.properties";
+    /** Key of the default password, cannot collide with MAC addresses. */
+    private static final String          DEFAULT_PASSWORD_KEY = "defaultPassword";
+
+    private static final PasswordManager INSTANCE            = new PasswordManager();
+
+    private final Logger                 logger              = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, String>    macToPassword       = new ConcurrentHashMap<>();
+    private volatile String              defaultPassword;
+    private final PasswordJournal        journal;
+
     private PasswordManager() {
-        macToPassword = FileIoUtil.readProperties(getClass().getClassLoader().getResourceAsStream("devicePasswords.properties"));
+        Path dir = Paths.get(System.getProperty("paulmann.passwords.dir", System.getProperty("user.home") + "/.paulmann-bt-cmdline"));
+        int compactThreshold = Integer.getInteger("paulmann.passwords.compactThreshold", 1000);
+
+        PasswordJournal store = null;
+        Map<String, String> values;
+        try {
+            store = new PasswordJournal(dir, FILE_NAME, compactThreshold, readLegacyPasswords());
+            values = store.getLoadedValues();
+        } catch (IOException _ex) {
+            logger.error("Could not read passwords from {}, changed passwords will not be saved", dir, _ex);
+            values = readLegacyPasswords();
+        }
+        journal = store;
+
+        defaultPassword = values.remove(DEFAULT_PASSWORD_KEY);
+        macToPassword.putAll(values);
+
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close(5, TimeUnit.SECONDS);
+                } catch (InterruptedException _ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "PasswordManager-shutdown"));
+        }
     }
-    
+
     public static PasswordManager getInstance() {
         return INSTANCE;
     }
@@ -24,16 +75,74 @@ public class PasswordManager {
 
     public void setDefaultPassword(String _defaultPassword) {
         defaultPassword = _defaultPassword;
-        FileIoUtil.writeProperties("devicePasswords.properties", macToPassword);
+        persist(DEFAULT_PASSWORD_KEY, _defaultPassword);
     }
-    
+
     public void putDevicePassword(String _mac, String _password) {
-        macToPassword.setProperty(_mac, _password);
-        FileIoUtil.writeProperties("devicePasswords.properties", macToPassword);
+        macToPassword.put(_mac, _password);
+        persist(_mac, _password);
+    }
+
+    /**
+     * Store the passwords of many devices at once (e.g. when provisioning new devices).<br>
+     * All passwords are written to disk together.
+     *
+     * @param _macToPassword MAC address to password
+     */
+    public void putDevicePasswords(Map<String, String> _macToPassword) {
+        for (Entry<String, String> entry : _macToPassword.entrySet()) {
+            putDevicePassword(entry.getKey(), entry.getValue());
+        }
     }
 
     public String getDevicePassword(String _mac) {
-        return macToPassword.getProperty(_mac, defaultPassword);
+        return macToPassword.getOrDefault(_mac, defaultPassword);
+    }
+
+    /**
+     * Wait until all changed passwords are written to disk.
+     *
+     * @param _timeout maximum time to wait
+     * @param _unit unit of timeout
+     * @return true if all passwords were written
+     * @throws InterruptedException if the calling thread was interrupted
+     */
+    public boolean flush(long _timeout, TimeUnit _unit) throws InterruptedException {
+        return journal == null || journal.flush(_timeout, _unit);
+    }
+
+    private void persist(String _key, String _value) {
+        if (journal != null) {
+            journal.put(_key, _value);
+        }
     }
-    
+
+    /**
+     * Read passwords from 'devicePasswords.properties' on the classpath and in the working directory (used by older versions).
+     */
+    private Map<String, String> readLegacyPasswords() {
+        Properties props = new Properties();
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream(FILE_NAME)) {
+            if (is != null) {
+                props.load(is);
+            }
+        } catch (IOException _ex) {
+            logger.warn("Could not read {} from classpath", FILE_NAME, _ex);
+        }
+        Path workingDirFile = Paths.get(FILE_NAME);
+        if (Files.isRegularFile(workingDirFile)) {
+            try (Reader reader = Files.newBufferedReader(workingDirFile, StandardCharsets.ISO_8859_1)) {
+                props.load(reader);
+            } catch (IOException _ex) {
+                logger.warn("Could not read {}", workingDirFile.toAbsolutePath(), _ex);
+            }
+        }
+
+        Map<String, String> values = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            values.put(key, props.getProperty(key));
+        }
+        return values;
+    }
+
 }
@@ -0,0 +1,129 @@
+package com.github.hypfvieh.control;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.commands.init.AbstractDeInitializationCommand;
+import com.github.hypfvieh.control.commands.init.AbstractInitializationCommand;
+
+/**
+ * Non-interactive (headless) execution of commands.<br>
+ * No terminal is created and no colored output is produced. All lines of a script are executed
+ * in the same session, so the D-Bus connection and all discovered devices are re-used.
+ */
+public class BatchRunner implements Closeable {
+    /** Exit code used if the initialization failed. */
+    public static final int                EXIT_INIT_FAILED = 3;
+
+    /** Prefix of comment lines in scripts. */
+    private static final String            COMMENT_PREFIX   = "#";
+
+    private final Logger                   logger           = LoggerFactory.getLogger(getClass());
+
+    private final PrintStream              outStream;
+    private final PrintStream              errStream;
+
+    private final CommandRegistry          commandRegistry  = CommandRegistry.getInstance();
+    private final CommandDispatcher        dispatcher       = new CommandDispatcher(commandRegistry);
+
+    private AbstractDeInitializationCommand deInitCommand;
+
+    public BatchRunner(PrintStream _outStream, PrintStream _errStream) {
+        if (_outStream == null) {
+            throw new IllegalArgumentException("Output-Stream cannot be null");
+        }
+        outStream = _outStream;
+        errStream = _errStream == null ? _outStream : _errStream;
+    }
+
+    /**
+     * Run the given init command and remember the de-init command, which will be executed on {@link #close()}.<br>
+     * Output of both commands is written to the error stream to keep the command output clean.
+     *
+     * @param _initCommand
+     * @param _deinitCommand
+     * @throws IOException
+     */
+    public void initialize(AbstractInitializationCommand _initCommand, AbstractDeInitializationCommand _deinitCommand) throws IOException {
+        deInitCommand = _deinitCommand;
+        if (_initCommand != null) {
+            print(errStream, _initCommand.execute(null, null));
+        }
+    }
+
+    public void registerCommand(ICommand _command) {
+        commandRegistry.registerCommand(_command);
+    }
+
+    /**
+     * Execute a single command line.
+     * Output of successful commands is written to the output stream, output of failed commands to the error stream.
+     *
+     * @param _line command line
+     * @return exit code of the command (0 on success)
+     * @throws InterruptedIOException if the command requests termination (e.g. exit command)
+     */
+    public int runLine(String _line) throws InterruptedIOException {
+        CommandResult result = dispatcher.dispatch(_line, null);
+        print(result.isSuccess() ? outStream : errStream, result.getLines());
+        return result.getStatus().getExitCode();
+    }
+
+    /**
+     * Execute all lines read from the given reader.<br>
+     * Blank lines and lines starting with '#' are ignored. Failing lines do not stop the script,
+     * the highest exit code of all lines is returned. The 'exit' command stops the script.
+     *
+     * @param _reader reader to read the script from
+     * @return highest exit code of all executed lines (0 if all lines were successful)
+     * @throws IOException if reading the script fails
+     */
+    public int runScript(BufferedReader _reader) throws IOException {
+        int exitCode = 0;
+        int lineNo = 0;
+        String line;
+        while ((line = _reader.readLine()) != null) {
+            lineNo++;
+            if (StringUtils.isBlank(line) || line.trim().startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            try {
+                int lineExitCode = runLine(line);
+                if (lineExitCode != 0) {
+                    errStream.println("Line " + lineNo + " failed: " + line.trim());
+                    exitCode = Math.max(exitCode, lineExitCode);
+                }
+            } catch (InterruptedIOException _ex) {
+                logger.debug("Script terminated in line {}", lineNo);
+                break;
+            }
+        }
+        outStream.flush();
+        errStream.flush();
+        return exitCode;
+    }
+
+    private static void print(PrintStream _stream, String... _lines) {
+        if (_lines != null) {
+            for (String line : _lines) {
+                _stream.println(line);
+            }
+            _stream.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deInitCommand != null) {
+            print(errStream, deInitCommand.execute(null, null));
+        }
+    }
+}
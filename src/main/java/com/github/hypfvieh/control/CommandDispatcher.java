@@ -0,0 +1,134 @@
+package com.github.hypfvieh.control;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.CommandResult.Status;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.base.CommandOutcome;
+import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+import com.github.hypfvieh.control.stats.CommandStatistics;
+
+/**
+ * Parses a command line, resolves the command in the {@link CommandRegistry} and executes it.<br>
+ * Used by the interactive shell as well as by the non-interactive batch mode.
+ * Count, errors and latency of every executed command are recorded in the {@link CommandStatistics}.
+ */
+public class CommandDispatcher {
+    private final Logger          logger = LoggerFactory.getLogger(getClass());
+
+    private final CommandRegistry commandRegistry;
+
+    public CommandDispatcher() {
+        this(CommandRegistry.getInstance());
+    }
+
+    CommandDispatcher(CommandRegistry _commandRegistry) {
+        commandRegistry = _commandRegistry;
+    }
+
+    /**
+     * Parse and execute the given command line.
+     *
+     * @param _line command line
+     * @param _terminal terminal used for formatting, null to suppress colored output
+     * @return result, never null
+     * @throws InterruptedIOException if the command requests termination of the session
+     */
+    public CommandResult dispatch(String _line, Terminal _terminal) throws InterruptedIOException {
+        if (_line == null) {
+            return new CommandResult(Status.EMPTY, null);
+        }
+
+        // parse given command
+        String[] split = StringUtils.split(StringUtils.trim(_line), " ");
+        if (split == null || split.length < 1) {
+            return new CommandResult(Status.EMPTY, null);
+        }
+
+        List<String> argList = new ArrayList<>();
+        if (split.length > 1) {
+            List<String> splitArgsList = Arrays.asList(split);
+            argList = splitArgsList.subList(1, splitArgsList.size());
+        }
+
+        return dispatch(split[0], argList, _terminal);
+    }
+
+    /**
+     * Execute the given command with already separated arguments.<br>
+     * Used if the arguments are not read from a command line (e.g. HTTP API), so arguments may contain spaces.
+     *
+     * @param _commandName command name, alias or unambiguous prefix
+     * @param _arguments arguments, null for no arguments
+     * @param _terminal terminal used for formatting, null to suppress colored output
+     * @return result, never null
+     * @throws InterruptedIOException if the command requests termination of the session
+     */
+    public CommandResult dispatch(String _commandName, List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        if (StringUtils.isBlank(_commandName)) {
+            return new CommandResult(Status.EMPTY, null);
+        }
+        List<String> argList = _arguments == null ? new ArrayList<>() : _arguments;
+
+        // resolves command names, aliases and unambiguous prefixes
+        ICommand iCommand = commandRegistry.resolveCommand(_commandName);
+        if (iCommand == null) {
+            List<String> matching = commandRegistry.findMatchingCommandNames(_commandName);
+            if (matching.size() > 1) {
+                return new CommandResult(Status.AMBIGUOUS_COMMAND, null, "Ambiguous command: " + _commandName + " (could be " + StringUtils.join(matching, ", ") + ")");
+            }
+            return new CommandResult(Status.UNKNOWN_COMMAND, null, "Unknown command: " + _commandName);
+        }
+
+        List<CommandArg> requiredArgs = iCommand.getCommandArgs().stream().filter(CommandArg::isRequired).collect(Collectors.toList());
+        if (requiredArgs.size() > argList.size()) {
+            ShellFormatter sf = new ShellFormatter(_terminal);
+            return new CommandResult(Status.MISSING_ARGUMENTS, iCommand.getCommandName(),
+                    sf.printInColor("Arguments missing, expecting " + requiredArgs.size() + " but got " + argList.size(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)),
+                    sf.printInColor("These arguments are required: " + StringUtils.join(requiredArgs, ", "), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)));
+        }
+
+        CommandOutcome.reset();
+        Trace trace = FlightEvents.command(iCommand.getCommandName(), StringUtils.join(argList, " "),
+                iCommand instanceof AbstractDeviceCommand && !argList.isEmpty() ? argList.get(0) : null);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            String[] result = iCommand.execute(argList, _terminal);
+            success = !CommandOutcome.isFailed();
+            return new CommandResult(success ? Status.SUCCESS : Status.FAILED, iCommand.getCommandName(), result);
+        } catch (RuntimeException _ex) {
+            logger.error("Error while executing command {}", iCommand.getCommandName(), _ex);
+            ShellFormatter sf = new ShellFormatter(_terminal);
+            return new CommandResult(Status.FAILED, iCommand.getCommandName(),
+                    sf.printInColor("Error: (" + _ex.getClass().getSimpleName() + "): " + _ex.getMessage(), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)));
+        } finally {
+            CommandOutcome.reset();
+            CommandStatistics.getInstance().recordCommand(iCommand.getCommandName(), System.nanoTime() - start, success);
+            trace.end(success);
+        }
+    }
+
+    /**
+     * All registered commands.
+     *
+     * @return unmodifiable map of command name and command
+     */
+    public Map<String, ICommand> getRegisteredCommands() {
+        return commandRegistry.getRegisteredCommands();
+    }
+}
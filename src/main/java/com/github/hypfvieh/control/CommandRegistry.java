@@ -3,18 +3,20 @@ package com.github.hypfvieh.control;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.StringUtils;
+import org.jline.reader.Candidate;
 import org.jline.reader.Completer;
-import org.jline.reader.impl.completer.AggregateCompleter;
-import org.jline.reader.impl.completer.ArgumentCompleter;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
 import org.jline.reader.impl.completer.NullCompleter;
 import org.jline.terminal.Terminal;
-import org.jline.utils.AttributedString;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
 import org.slf4j.Logger;
@@ -27,11 +29,15 @@ import com.github.hypfvieh.control.commands.base.ICommand;
 import com.github.hypfvieh.control.commands.init.AbstractInitializationCommand;
 import com.github.hypfvieh.control.jline3.AnsiStringSplit;
 import com.github.hypfvieh.control.jline3.ArgumentWithDescriptionCompleter;
-import com.github.hypfvieh.control.jline3.RemoteCommandCompleter;
+import com.github.hypfvieh.control.jline3.GeneratedArgumentCompleter;
+import com.github.hypfvieh.control.jline3.NumericRangeCompleter;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
 import com.github.hypfvieh.formatter.TableColumnFormatter;
 
 /**
- * Singleton which provides access to all supported remote commands (RMI commands).
+ * Singleton which provides access to all supported remote commands (RMI commands).<br>
+ * The registry is thread-safe: modifications are serialized, lookups and completion work on immutable snapshots without locking.
  *
  * @author michaelisd
  * @since v1.0.0 - 2016-12-13
@@ -42,17 +48,20 @@ public class CommandRegistry {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private final Map<String, ICommand> supportedCommands = new HashMap<>();
+    /** Current commands and completers, replaced as a whole on every modification. */
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(0, Collections.emptyMap(), Collections.emptyMap()));
 
-    /** Create the {@link AggregateCompleter} with an empty list to allow adding entries later on. */
-    private final AggregateCompleter jlineCompleter = new AggregateCompleter(new ArrayList<>());
+    /** Completer bound to the line readers, always uses the current snapshot. */
+    private final Completer jlineCompleter = this::complete;
+
+    private final BuiltinHelpCommand helpCommand = new BuiltinHelpCommand();
 
     /**
      * Hidden constructor for singleton pattern.
      */
     private CommandRegistry() {
         // always register the help and exit commands
-        registerCommand(new BuiltinHelpCommand());
+        registerCommand(helpCommand);
         registerCommand(new ExitCommand());
     }
 
@@ -70,7 +79,7 @@ public class CommandRegistry {
      *
      * @param _command
      */
-    public void registerCommand(ICommand _command) {
+    public synchronized void registerCommand(ICommand _command) {
         if (_command == null) {
             throw new IllegalArgumentException("Null is no valid command");
         }
@@ -83,54 +92,91 @@ public class CommandRegistry {
         if (StringUtils.isBlank(_command.getCommandName())) {
             throw new IllegalArgumentException("Command '" + _command.getCommandName() + "' is no valid command name!");
         }
-        if (supportedCommands.containsKey(_command.getCommandName())) {
+
+        Snapshot current = snapshot.get();
+        if (current.commands.containsKey(_command.getCommandName())) {
             throw new IllegalArgumentException("Command '" + _command.getCommandName() + "' already registered!");
         }
-        supportedCommands.put(_command.getCommandName(), _command);
+
+        Map<String, ICommand> commands = new LinkedHashMap<>(current.commands);
+        commands.put(_command.getCommandName(), _command);
 
         if (_command.getCommandAliases() != null) {
             for (String alias : _command.getCommandAliases()) {
-                if (!supportedCommands.containsKey(alias)) {
-                    supportedCommands.put(alias, _command);
+                if (!commands.containsKey(alias)) {
+                    commands.put(alias, _command);
                 }
             }
         }
 
-        // Completer stuff:
-        // This is a bit tricky if you want to have argument completion and command completion.
-        // To achieve this behavior, we first have to create a completer for the command itself.
-        // Then we need a completer for each argument we want to be completed (one argument = one completer).
-        // The command completer and all the arguments completer have to placed inside a ArgumentCompleter object.
-        // To allow more than one command, the ArgumentCompleter object has to be put in a AggregateCompleter object.
-        // The AggregateCompleter is than bound to the LineReader of the terminal
-
-        // completer for the command
-        RemoteCommandCompleter cmdCompleter = new RemoteCommandCompleter(_command);
+        Map<String, List<Completer>> completers = new LinkedHashMap<>(current.argumentCompleters);
+        completers.put(_command.getCommandName(), createArgumentCompleters(_command));
 
-        // completer for the commands arguments
-        ArgumentCompleter argCompleter = new ArgumentCompleter();
-
-        // add the command completer to the argument completer (first parameter is the command)
-        argCompleter.getCompleters().add(cmdCompleter);
+        replaceSnapshot(current, commands, completers);
+    }
 
-        // add all completers specified by the command for this command (each completer is responsible for one argument
-        // of the command)
-        
+    /**
+     * Creates the completers for the arguments of the given command (one completer per argument).
+     *
+     * @param _command
+     * @return List, maybe empty, never null
+     */
+    private List<Completer> createArgumentCompleters(ICommand _command) {
+        List<Completer> argCompleters = new ArrayList<>();
         if (_command.getCommandArgs() != null && !_command.getCommandArgs().isEmpty()) {
             for (CommandArg arg : _command.getCommandArgs()) {
-                if (arg.isRequired()) {
-                    argCompleter.getCompleters().add(new ArgumentWithDescriptionCompleter(arg.getArguments()));
+                if (arg.isRange()) {
+                    argCompleters.add(new NumericRangeCompleter(arg));
+                } else if (!arg.isGenerateOnce()) {
+                    // values may change, always use the current values of the argument
+                    argCompleters.add(new GeneratedArgumentCompleter(arg));
+                } else if (arg.isRequired()) {
+                    argCompleters.add(new ArgumentWithDescriptionCompleter(arg.getArguments()));
                 } else if (arg.getArguments() != null && !arg.getArguments().isEmpty()) {
-                    argCompleter.getCompleters().add(new ArgumentWithDescriptionCompleter(arg.getArguments()));
+                    argCompleters.add(new ArgumentWithDescriptionCompleter(arg.getArguments()));
                 } else {
-                    argCompleter.getCompleters().add(new NullCompleter());
+                    argCompleters.add(new NullCompleter());
                 }
             }
-            argCompleter.getCompleters().add(new NullCompleter());
         }
+        return Collections.unmodifiableList(argCompleters);
+    }
 
-        // put the new argument completer in the AggregateCompleter
-        jlineCompleter.getCompleters().add(argCompleter);
+    /**
+     * Completes the given line using the current snapshot.<br>
+     * The first word is completed by the command trie (only names and aliases matching the typed prefix are returned).
+     * For all other words the command is resolved (by name, alias or unambiguous prefix) and only the
+     * completer of the corresponding argument of this command is used.
+     *
+     * @param _reader
+     * @param _line
+     * @param _candidates
+     */
+    private void complete(LineReader _reader, ParsedLine _line, List<Candidate> _candidates) {
+        Trace trace = FlightEvents.completion(_line.line());
+        try {
+            completeWord(_reader, _line, _candidates);
+        } finally {
+            trace.end(_candidates.size() + " candidates");
+        }
+    }
+
+    private void completeWord(LineReader _reader, ParsedLine _line, List<Candidate> _candidates) {
+        Snapshot current = snapshot.get();
+        if (_line.wordIndex() == 0) {
+            _candidates.addAll(current.trie.getCandidates(_line.word().substring(0, _line.wordCursor())));
+            return;
+        }
+
+        ICommand command = current.trie.resolve(_line.words().get(0));
+        if (command == null) {
+            return;
+        }
+        List<Completer> argCompleters = current.argumentCompleters.get(command.getCommandName());
+        int argIdx = _line.wordIndex() - 1;
+        if (argCompleters != null && argIdx < argCompleters.size()) {
+            argCompleters.get(argIdx).complete(_reader, _line, _candidates);
+        }
     }
 
     /**
@@ -148,25 +194,68 @@ public class CommandRegistry {
 
     /**
      * Unregister a command by name.
+     * All aliases and the completer of the command are removed as well.
      *
      * @param _commandName
      */
-    public void unregisterRemoteCommand(String _commandName) {
-        if (supportedCommands.containsKey(_commandName)) {
-            supportedCommands.remove(_commandName);
+    public synchronized void unregisterRemoteCommand(String _commandName) {
+        Snapshot current = snapshot.get();
+        ICommand command = current.commands.get(_commandName);
+        if (command != null) {
+            Map<String, ICommand> commands = new LinkedHashMap<>(current.commands);
+            commands.values().removeIf(c -> c == command);
+
+            Map<String, List<Completer>> completers = new LinkedHashMap<>(current.argumentCompleters);
+            completers.remove(command.getCommandName());
+
+            replaceSnapshot(current, commands, completers);
             logger.debug("Removed registered command {} from command registry", _commandName);
         } else {
             logger.debug("Could not remove command {}, not registered", _commandName);
         }
     }
 
+    /**
+     * Publish a new snapshot with the given commands and completers.
+     * Must only be called by the (synchronized) modifying methods.
+     *
+     * @param _current snapshot the modification is based on
+     * @param _commands new commands
+     * @param _completers new completers
+     */
+    private void replaceSnapshot(Snapshot _current, Map<String, ICommand> _commands, Map<String, List<Completer>> _completers) {
+        snapshot.set(new Snapshot(_current.version + 1, _commands, _completers));
+        helpCommand.invalidate();
+    }
+
     /**
      * Returns a unmodifiable map of all registered commands.
+     * The map is a snapshot and will not reflect later modifications of the registry.
      *
      * @return
      */
     public Map<String, ICommand> getRegisteredCommands() {
-        return Collections.unmodifiableMap(supportedCommands);
+        return snapshot.get().commands;
+    }
+
+    /**
+     * Resolve a command by name, alias or unambiguous prefix (e.g. 'setB' for 'setBrightness').
+     *
+     * @param _nameOrPrefix
+     * @return command or null if no or more than one command matches
+     */
+    public ICommand resolveCommand(String _nameOrPrefix) {
+        return snapshot.get().trie.resolve(_nameOrPrefix);
+    }
+
+    /**
+     * Returns all command names and aliases starting with the given prefix.
+     *
+     * @param _prefix
+     * @return List, maybe empty, never null
+     */
+    public List<String> findMatchingCommandNames(String _prefix) {
+        return snapshot.get().trie.findMatchingNames(_prefix);
     }
 
     /**
@@ -178,6 +267,28 @@ public class CommandRegistry {
         return jlineCompleter;
     }
 
+    /**
+     * Immutable view of all registered commands and their completers.
+     * Modifications of the registry create a new snapshot which replaces the current one atomically,
+     * so lookups and completion never require locking.
+     */
+    private static final class Snapshot {
+        private final long                         version;
+        /** Commands by name and alias. */
+        private final Map<String, ICommand>        commands;
+        /** Argument completers by command name. */
+        private final Map<String, List<Completer>> argumentCompleters;
+        /** Prefix tree over all command names and aliases. */
+        private final CommandTrie                  trie;
+
+        Snapshot(long _version, Map<String, ICommand> _commands, Map<String, List<Completer>> _argumentCompleters) {
+            version = _version;
+            commands = Collections.unmodifiableMap(new LinkedHashMap<>(_commands));
+            argumentCompleters = Collections.unmodifiableMap(new LinkedHashMap<>(_argumentCompleters));
+            trie = new CommandTrie(commands);
+        }
+    }
+
     /**
      * Built-in 'help' command to display all known commands.
      *
@@ -200,23 +311,53 @@ public class CommandRegistry {
         private final int HDR_DESCRIPTION_LEN = ICommand.DEFAULT_SHELL_WIDTH - HDR_COMMAND_LEN - HDR_ALIASES_LEN
                 - HDR_ARGUMENTS_LEN - (3 * HDR_SPACER.length());
 
+        /** Rendered help table, key is snapshot version, terminal type and width. */
+        private final Map<String, String[]> renderedTables = new ConcurrentHashMap<>();
+
         @Override
         public String[] execute(List<String> _arguments, Terminal _terminal) {
             // show additional help if argument is set and contains a valid command
+            Snapshot commands = snapshot.get();
             List<String> text = new ArrayList<>();
             if (_arguments != null && _arguments.size() == 1) {
-                if (supportedCommands.containsKey(_arguments.get(0))) {
-                    return supportedCommands.get(_arguments.get(0)).getHelpText(_terminal);
+                ICommand command = commands.trie.resolve(_arguments.get(0));
+                if (command != null) {
+                    return command.getHelpText(_terminal);
                 } else {
                     text.add("");
                     text.add("Unknown command " + _arguments.get(0));
                 }
             }
 
+            // the version is part of the key, so a table rendered while the commands changed will never be used
+            String cacheKey = commands.version + ":" + (_terminal == null ? "" : _terminal.getType() + ":" + _terminal.getWidth());
+            String[] table = renderedTables.computeIfAbsent(cacheKey, k -> renderTable(commands.commands, _terminal));
+
+            if (text.isEmpty()) {
+                return table.clone();
+            }
+            text.addAll(Arrays.asList(table));
+            return text.toArray(new String[] {});
+        }
+
+        /**
+         * Drop all rendered help tables, must be called whenever the registered commands change.
+         */
+        void invalidate() {
+            renderedTables.clear();
+        }
+
+        private String[] renderTable(Map<String, ICommand> _commands, Terminal _terminal) {
+            List<String> text = new ArrayList<>();
+
             TableColumnFormatter tableColumnFormatter = new TableColumnFormatter(AnsiStringSplit::smartWordSplit,
                     HDR_SPACER.charAt(0), HDR_COMMAND_LEN, HDR_ALIASES_LEN, HDR_ARGUMENTS_LEN, HDR_DESCRIPTION_LEN);
             ShellFormatter formatter = new ShellFormatter(_terminal);
 
+            AttributedStyle cyan = AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN);
+            AttributedStyle yellow = AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW);
+            AttributedStyle blue = AttributedStyle.DEFAULT.foreground(AttributedStyle.BLUE);
+
             text.add("");
             text.add("Supported Commands:");
             text.add(tableColumnFormatter.fillLine('='));
@@ -224,7 +365,7 @@ public class CommandRegistry {
             text.add(tableColumnFormatter.formatLine(HDR_COMMAND, HDR_ALIASES, HDR_ARGUMENTS, HDR_DESCRIPTION));
             text.add(tableColumnFormatter.fillLine('-'));
 
-            for (Entry<String, ICommand> entry : supportedCommands.entrySet()) {
+            for (Entry<String, ICommand> entry : _commands.entrySet()) {
 
                 String[] aliases = entry.getValue().getCommandAliases();
 
@@ -233,38 +374,26 @@ public class CommandRegistry {
                     continue;
                 }
 
+                // the splitter of the table formatter takes care of the color escape sequences
                 AttributedStringBuilder commandName = new AttributedStringBuilder();
-                commandName.style(AttributedStyle.DEFAULT.foreground(AttributedStyle.CYAN));
+                commandName.style(cyan);
                 commandName.append(entry.getKey());
 
-                // take care of color
-                String formattedCommandName = formatter.rightPad(commandName, HDR_COMMAND_LEN);
-
-                String cAliases = "";
-                AttributedStyle yellow = AttributedStyle.DEFAULT.foreground(AttributedStyle.YELLOW);
+                AttributedStringBuilder cAliases = new AttributedStringBuilder();
                 if (aliases != null && aliases.length > 0) {
+                    cAliases.style(yellow).append("[");
                     for (int i = 0; i < aliases.length; i++) {
-                        if (i == 0) {
-                            cAliases += new AttributedString("[", yellow).toAnsi(_terminal);
-                        }
-
-                        cAliases += new AttributedString(aliases[i],
-                                AttributedStyle.DEFAULT.foreground(AttributedStyle.BLUE)).toAnsi(_terminal);
-
-                        if (i == aliases.length - 1) {
-                            cAliases += new AttributedString("]", yellow).toAnsi(_terminal);
-                        } else {
-                            cAliases += new AttributedString(", ", yellow).toAnsi(_terminal);
+                        if (i > 0) {
+                            cAliases.style(yellow).append(", ");
                         }
+                        cAliases.style(blue).append(aliases[i]);
                     }
+                    cAliases.style(yellow).append("]");
                 }
 
-                String paddedCommand = StringUtils.rightPad(commandName.toString(), HDR_COMMAND_LEN);
-                String line = tableColumnFormatter.formatLine(paddedCommand, cAliases,
+                String line = tableColumnFormatter.formatLine(formatter.print(commandName), formatter.print(cAliases),
                         StringUtils.join(", ", entry.getValue().getCommandArgs()), entry.getValue().getDescription());
 
-                line = line.replace(paddedCommand, formattedCommandName);
-
                 text.add(line);
 
                 text.add("");
@@ -292,7 +421,7 @@ public class CommandRegistry {
 
         @Override
         public List<CommandArg> getCommandArgs() {
-            return Arrays.asList(new CommandArg("command", true));
+            return Arrays.asList(new CommandArg("command", false));
         }
 
         @Override
@@ -0,0 +1,73 @@
+package com.github.hypfvieh.control;
+
+/**
+ * Result of a dispatched command line.
+ */
+public class CommandResult {
+
+    /**
+     * Status of a dispatched command line.
+     */
+    public enum Status {
+        /** Nothing to do (blank line). */
+        EMPTY(0),
+        /** Command executed successfully. */
+        SUCCESS(0),
+        /** Command executed but reported an error. */
+        FAILED(1),
+        /** Command could not be executed because of missing arguments. */
+        MISSING_ARGUMENTS(2),
+        /** No command with the given name found. */
+        UNKNOWN_COMMAND(2),
+        /** More than one command matches the given prefix. */
+        AMBIGUOUS_COMMAND(2);
+
+        private final int exitCode;
+
+        Status(int _exitCode) {
+            exitCode = _exitCode;
+        }
+
+        /**
+         * Process exit code used for this status in batch mode.
+         * @return int
+         */
+        public int getExitCode() {
+            return exitCode;
+        }
+    }
+
+    private final Status   status;
+    private final String   commandName;
+    private final String[] lines;
+
+    public CommandResult(Status _status, String _commandName, String... _lines) {
+        status = _status;
+        commandName = _commandName;
+        lines = _lines == null ? new String[0] : _lines;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Name of the executed command (the resolved name, not the alias or prefix given by the user).
+     * @return name or null if no command was resolved
+     */
+    public String getCommandName() {
+        return commandName;
+    }
+
+    /**
+     * Output of the command.
+     * @return array, maybe empty, never null
+     */
+    public String[] getLines() {
+        return lines;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.SUCCESS || status == Status.EMPTY;
+    }
+}
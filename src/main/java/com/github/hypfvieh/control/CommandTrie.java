@@ -0,0 +1,157 @@
+package com.github.hypfvieh.control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.jline.reader.Candidate;
+import org.jline.utils.AttributedString;
+
+import com.github.hypfvieh.control.commands.base.ICommand;
+
+/**
+ * Immutable prefix tree over all command names and aliases.<br>
+ * Used to resolve commands by name, alias or unambiguous prefix and to provide completion candidates
+ * for a typed prefix. All lookups only depend on the length of the given prefix, not on the number of commands.
+ */
+final class CommandTrie {
+
+    private final Node            root = new Node();
+
+    /** Candidates of all command names (without aliases), used when nothing was typed yet. */
+    private final List<Candidate> commandNameCandidates;
+
+    CommandTrie(Map<String, ICommand> _commands) {
+        List<Candidate> nameCandidates = new ArrayList<>();
+        for (Entry<String, ICommand> entry : _commands.entrySet()) {
+            Node node = root;
+            for (int i = 0; i < entry.getKey().length(); i++) {
+                node = node.children.computeIfAbsent(entry.getKey().charAt(i), c -> new Node());
+            }
+            node.command = entry.getValue();
+            node.key = entry.getKey();
+            if (entry.getKey().equals(entry.getValue().getCommandName())) {
+                nameCandidates.add(node.createCandidate());
+            }
+        }
+        root.freeze();
+        commandNameCandidates = Collections.unmodifiableList(nameCandidates);
+    }
+
+    /**
+     * Find the command for the given name or alias.
+     *
+     * @param _name command name or alias
+     * @return command or null if no command with this name is known
+     */
+    ICommand find(String _name) {
+        Node node = findNode(_name);
+        return node == null ? null : node.command;
+    }
+
+    /**
+     * Resolve the command by name, alias or unambiguous prefix.
+     * An exact match on a name or alias is always preferred.
+     *
+     * @param _nameOrPrefix command name, alias or prefix
+     * @return command or null if the prefix is unknown or ambiguous
+     */
+    ICommand resolve(String _nameOrPrefix) {
+        Node node = findNode(_nameOrPrefix);
+        if (node == null) {
+            return null;
+        }
+        return node.command != null ? node.command : node.uniqueCommand;
+    }
+
+    /**
+     * Returns all command names and aliases starting with the given prefix.
+     *
+     * @param _prefix prefix
+     * @return List, maybe empty, never null
+     */
+    List<String> findMatchingNames(String _prefix) {
+        Node node = findNode(_prefix);
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        List<String> names = new ArrayList<>(node.candidates.size());
+        for (Candidate candidate : node.candidates) {
+            names.add(candidate.value());
+        }
+        return names;
+    }
+
+    /**
+     * Returns the completion candidates for all command names and aliases starting with the given prefix.
+     * If prefix is empty, only the command names are returned.
+     *
+     * @param _prefix prefix
+     * @return List, maybe empty, never null
+     */
+    List<Candidate> getCandidates(String _prefix) {
+        if (_prefix == null || _prefix.isEmpty()) {
+            return commandNameCandidates;
+        }
+        Node node = findNode(_prefix);
+        return node == null ? Collections.emptyList() : node.candidates;
+    }
+
+    private Node findNode(String _prefix) {
+        if (_prefix == null) {
+            return null;
+        }
+        Node node = root;
+        for (int i = 0; i < _prefix.length() && node != null; i++) {
+            node = node.children.get(_prefix.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private final Map<Character, Node> children = new HashMap<>();
+
+        /** Command ending exactly at this node (may be null). */
+        private ICommand                   command;
+        /** Name or alias ending exactly at this node (may be null). */
+        private String                     key;
+
+        /** The only command reachable from this node, null if there are multiple. */
+        private ICommand                   uniqueCommand;
+        /** Candidates for all names and aliases reachable from this node. */
+        private List<Candidate>            candidates;
+
+        private Candidate createCandidate() {
+            if (key.equals(command.getCommandName())) {
+                return new Candidate(AttributedString.stripAnsi(key), key, command.getCmdGroup(), command.getDescription(), null, null, true);
+            }
+            return new Candidate(AttributedString.stripAnsi(key), key, command.getCmdGroup(), "Alias of " + command.getCommandName(), null, null, true);
+        }
+
+        /**
+         * Precompute candidates and unique command of this node and all children.
+         */
+        private void freeze() {
+            List<Candidate> result = new ArrayList<>();
+            boolean ambiguous = false;
+            ICommand unique = command;
+            if (command != null) {
+                result.add(createCandidate());
+            }
+            for (Node child : children.values()) {
+                child.freeze();
+                result.addAll(child.candidates);
+                if (child.uniqueCommand == null || unique != null && unique != child.uniqueCommand) {
+                    ambiguous = true;
+                } else {
+                    unique = child.uniqueCommand;
+                }
+            }
+            uniqueCommand = ambiguous ? null : unique;
+            candidates = Collections.unmodifiableList(result);
+        }
+    }
+}
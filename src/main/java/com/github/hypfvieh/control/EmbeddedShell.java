@@ -9,9 +9,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
+
 import org.jline.reader.EndOfFileException;
 import org.jline.reader.LineReader;
 import org.jline.reader.LineReader.Option;
@@ -19,18 +22,36 @@ import org.jline.reader.LineReaderBuilder;
 import org.jline.reader.UserInterruptException;
 import org.jline.terminal.Attributes;
 import org.jline.terminal.Attributes.OutputFlag;
+import org.jline.terminal.Size;
 import org.jline.terminal.Terminal;
 import org.jline.terminal.TerminalBuilder;
 import org.jline.utils.AttributedStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.CancelJobCommand;
+import com.github.hypfvieh.control.commands.JobsCommand;
+import com.github.hypfvieh.control.commands.WaitJobCommand;
 import com.github.hypfvieh.control.commands.base.ICommand;
 import com.github.hypfvieh.control.commands.init.AbstractDeInitializationCommand;
 import com.github.hypfvieh.control.commands.init.AbstractInitializationCommand;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+import com.github.hypfvieh.control.jobs.Job;
+import com.github.hypfvieh.control.jobs.JobManager;
 
 public class EmbeddedShell implements Closeable {
+    /** Command lines ending with this suffix are executed in background. */
+    private static final String BACKGROUND_SUFFIX  = "&";
+
+    /** Terminal type used for sessions not using the system terminal (e.g. network sessions). */
+    private static final String REMOTE_TERMINAL_TYPE = "xterm-256color";
+    private static final int    REMOTE_TERMINAL_HEIGHT = 24;
+
+    /** Job manager of each open session, the job control commands are shared and look up the manager by terminal. */
+    private static final Map<Terminal, JobManager> SESSION_JOB_MANAGERS = new ConcurrentHashMap<>();
+    private static boolean          jobCommandsRegistered;
+
     private final Logger       logger                   = LoggerFactory.getLogger(this.getClass());
     private LineReader         reader;
     private Terminal           terminal;
@@ -40,6 +61,11 @@ public class EmbeddedShell implements Closeable {
     private OutputStream       errStream;
     
     private CommandRegistry    commandRegistry = CommandRegistry.getInstance();
+    private CommandDispatcher  dispatcher      = new CommandDispatcher(commandRegistry);
+    /** Background jobs of this session, cancelled when the session is closed. */
+    private final JobManager   jobManager      = new JobManager(dispatcher);
+    /** Elapsed time of the last command, shown as right prompt. */
+    private String             rightPrompt;
     private AbstractDeInitializationCommand deInitCommand;
     
     public EmbeddedShell(InputStream _inStream, OutputStream _outStream, OutputStream _errStream) {
@@ -67,7 +93,7 @@ public class EmbeddedShell implements Closeable {
         
         try {
             String readline;
-            while ((readline = reader.readLine(prompt)) != null) {
+            while ((readline = reader.readLine(prompt, rightPrompt, (Character) null, null)) != null) {
                 handleUserInput(readline);
             }
 
@@ -89,7 +115,19 @@ public class EmbeddedShell implements Closeable {
      * @throws IOException
      */
     public void initialize(AbstractInitializationCommand _initCommand, AbstractDeInitializationCommand _deinitCommand) throws IOException {
-        createAndConfigureTerminal();
+        initialize(createAndConfigureTerminal(), _initCommand, _deinitCommand);
+    }
+
+    /**
+     * Initialize the shell using an already configured terminal and optionally run the given init command.
+     *
+     * @param _terminal terminal to use
+     * @param _initCommand
+     * @param _deinitCommand
+     * @throws IOException
+     */
+    void initialize(Terminal _terminal, AbstractInitializationCommand _initCommand, AbstractDeInitializationCommand _deinitCommand) throws IOException {
+        terminal = _terminal;
 
         reader = LineReaderBuilder.builder()
                 .terminal(terminal)
@@ -103,47 +141,87 @@ public class EmbeddedShell implements Closeable {
             deInitCommand = _deinitCommand;
         }
 
+        ShellOutput.register(terminal, reader);
+        // job control is only available in the interactive shell
+        SESSION_JOB_MANAGERS.put(terminal, jobManager);
+        registerJobCommands(commandRegistry);
+
         if (_initCommand != null) {
             printToConsole(_initCommand.execute(null, terminal));
         }
     }
 
+    private static synchronized void registerJobCommands(CommandRegistry _registry) {
+        if (!jobCommandsRegistered) {
+            _registry.registerCommand(new JobsCommand(EmbeddedShell::getJobManager));
+            _registry.registerCommand(new WaitJobCommand(EmbeddedShell::getJobManager));
+            _registry.registerCommand(new CancelJobCommand(EmbeddedShell::getJobManager));
+            jobCommandsRegistered = true;
+        }
+    }
+
+    /**
+     * Job manager of the session using the given terminal.
+     * @param _terminal terminal passed to the command
+     * @return job manager or null if the command was not executed by an interactive shell session
+     */
+    private static JobManager getJobManager(Terminal _terminal) {
+        return _terminal == null ? null : SESSION_JOB_MANAGERS.get(_terminal);
+    }
+
     /**
      * Prints and flushes the stream to show output on console.
      * @param _lines
      */
     private void printToConsole(String... _lines) {
         if (_lines != null) {
-            for (String line : _lines) {
-                terminal.writer().println(line);
+            Trace trace = FlightEvents.terminalFlush(_lines.length);
+            synchronized (terminal) {
+                for (String line : _lines) {
+                    terminal.writer().println(line);
+                }
+                terminal.flush();
             }
-            terminal.flush();
+            trace.end(true);
         }
     }
 
-    
     /**
      * Creates a {@link Terminal} instance and configures the environment and key mapping settings.
      *
+     * @return configured terminal
      * @throws IOException
      */
-    void createAndConfigureTerminal() throws IOException {
+    Terminal createAndConfigureTerminal() throws IOException {
 
-        terminal = TerminalBuilder.builder()
+        Terminal term;
+        if (getInStream() == System.in && getOutStream() == System.out) {
+            term = TerminalBuilder.builder()
                 .system(true)
                 .streams(getInStream(), getOutStream())
                 .signalHandler(Terminal.SignalHandler.SIG_IGN)
                 .nativeSignals(true)
                 .build();
+        } else {
+            // e.g. network session, size can not be queried from the remote side
+            term = TerminalBuilder.builder()
+                .system(false)
+                .streams(getInStream(), getOutStream())
+                .type(REMOTE_TERMINAL_TYPE)
+                .size(new Size(ICommand.DEFAULT_SHELL_WIDTH, REMOTE_TERMINAL_HEIGHT))
+                .signalHandler(Terminal.SignalHandler.SIG_IGN)
+                .build();
+        }
 
-        Attributes attr = terminal.getAttributes();
+        Attributes attr = term.getAttributes();
 
         // enable output processing (required for all output flags)
         attr.setOutputFlag(OutputFlag.OPOST, true);
         // map newline to carriage return + newline
         attr.setOutputFlag(OutputFlag.ONLCR, true);
 
-        terminal.setAttributes(attr);
+        term.setAttributes(attr);
+        return term;
     }
 
 
@@ -153,39 +231,44 @@ public class EmbeddedShell implements Closeable {
      * @param _msg
      * @throws InterruptedIOException
      */
-    private void handleUserInput(String _msg) throws InterruptedIOException {
-        if (_msg == null) {
+    void handleUserInput(String _msg) throws InterruptedIOException {
+        String trimmed = StringUtils.trim(_msg);
+        if (trimmed != null && trimmed.length() > 1 && trimmed.endsWith(BACKGROUND_SUFFIX)) {
+            runInBackground(trimmed.substring(0, trimmed.length() - BACKGROUND_SUFFIX.length()).trim());
             return;
         }
-        _msg = StringUtils.trim(_msg);
-
-        // parse given command
-        String[] split = StringUtils.split(_msg, " ");
-        if ((split != null) && (split.length >= 1)) {
-            List<String> argList = new ArrayList<>();
-            if (split.length > 1) {
-                List<String> splitArgsList = Arrays.asList(split);
-                argList = splitArgsList.subList(1, splitArgsList.size());
-            }
-
-            String[] result = null;
-            Map<String, ICommand> registeredCommands = CommandRegistry.getInstance().getRegisteredCommands();
-            if (registeredCommands.containsKey(split[0])) {
-                ICommand iCommand = registeredCommands.get(split[0]);
-                List<CommandArg> requiredArgs = iCommand.getCommandArgs().stream().filter(a -> !a.isRequired()).collect(Collectors.toList());
-                if (requiredArgs.size() > split.length -1) {
-                    ShellFormatter sf = new ShellFormatter(terminal);
-                    printToConsole(sf.printInColor("Arguments missing, expecting " + requiredArgs.size() + " but got " + (split.length-1), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)),
-                            sf.printInColor("These arguments are required: " + StringUtils.join(requiredArgs, ", "), AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)));
-                } else {
-                    result = registeredCommands.get(split[0]).execute(argList, terminal);
-                }
-            } else {
-                printToConsole("Unknown command: " + split[0]);
-            }
+        long start = System.nanoTime();
+        CommandResult result = dispatcher.dispatch(_msg, terminal);
+        if (result.getStatus() != CommandResult.Status.EMPTY) {
+            rightPrompt = formatElapsed(System.nanoTime() - start);
+        }
+        printToConsole(result.getLines());
+    }
 
-            printToConsole(result);
+    private String formatElapsed(long _elapsedNanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(_elapsedNanos);
+        String elapsed = millis < 1000 ? millis + " ms" : String.format("%.1f s", millis / 1000d);
+        return new ShellFormatter(terminal).printInColor(elapsed, AttributedStyle.DEFAULT.faint());
+    }
 
+    /**
+     * Executes the given command line as background job, the result is printed above the prompt as soon as the job has finished.<br>
+     * The job does not get the terminal, so any progress output of the command is part of its result.
+     *
+     * @param _commandLine command line without trailing '&'
+     */
+    private void runInBackground(String _commandLine) {
+        ShellFormatter sf = new ShellFormatter(terminal);
+        try {
+            Job job = jobManager.submit(_commandLine, null, j -> {
+                List<String> lines = new ArrayList<>();
+                lines.add(sf.printInColor(j.toString(), AttributedStyle.DEFAULT.foreground(j.getState() == Job.State.DONE ? AttributedStyle.GREEN : AttributedStyle.RED)));
+                lines.addAll(Arrays.asList(j.getResult().getLines()));
+                ShellOutput.printAbove(terminal, lines.toArray(new String[0]));
+            });
+            printToConsole("[" + job.getId() + "] " + _commandLine);
+        } catch (RejectedExecutionException _ex) {
+            printToConsole(sf.printInColor("Too many background jobs, try again later", AttributedStyle.DEFAULT.foreground(AttributedStyle.RED)));
         }
     }
 
@@ -203,6 +286,11 @@ public class EmbeddedShell implements Closeable {
 
     @Override
     public void close() throws IOException {
+        if (terminal != null) {
+            SESSION_JOB_MANAGERS.remove(terminal);
+            ShellOutput.unregister(terminal);
+        }
+        jobManager.shutdown();
         if (deInitCommand != null) {
             printToConsole(deInitCommand.execute(null, terminal));
         }
@@ -0,0 +1,59 @@
+package com.github.hypfvieh.control;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jline.reader.LineReader;
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+
+/**
+ * Prints lines to the terminal of an interactive shell session at any time.<br>
+ * If the session is reading a line, the lines are printed above the prompt and the prompt and the line being
+ * edited are drawn again below them (see {@link LineReader#printAbove(String)}).
+ * Can be used by any thread, e.g. for progress output of commands or results of background jobs.
+ */
+public final class ShellOutput {
+
+    /** Line reader of each open shell session. */
+    private static final Map<Terminal, LineReader> SESSION_READERS = new ConcurrentHashMap<>();
+
+    private ShellOutput() {
+    }
+
+    static void register(Terminal _terminal, LineReader _reader) {
+        SESSION_READERS.put(_terminal, _reader);
+    }
+
+    static void unregister(Terminal _terminal) {
+        SESSION_READERS.remove(_terminal);
+    }
+
+    /**
+     * Print the given lines above the prompt of the shell session using the terminal.<br>
+     * Terminals without shell session (e.g. in batch mode) just get the lines printed.
+     *
+     * @param _terminal terminal
+     * @param _lines lines to print
+     */
+    public static void printAbove(Terminal _terminal, String... _lines) {
+        if (_terminal == null || _lines == null || _lines.length == 0) {
+            return;
+        }
+        Trace trace = FlightEvents.terminalFlush(_lines.length);
+        LineReader reader = SESSION_READERS.get(_terminal);
+        synchronized (_terminal) {
+            if (reader != null) {
+                reader.printAbove(String.join(System.lineSeparator(), _lines));
+            } else {
+                for (String line : _lines) {
+                    _terminal.writer().println(line);
+                }
+                _terminal.flush();
+            }
+        }
+        trace.end(true);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.jobs.Job;
+import com.github.hypfvieh.control.jobs.JobManager;
+import com.github.hypfvieh.util.TypeUtil;
+
+public class CancelJobCommand extends AbstractCommand {
+
+    private final Function<Terminal, JobManager> jobManagers;
+
+    /**
+     * @param _jobManagers returns the job manager of the session using the given terminal, null if there is none
+     */
+    public CancelJobCommand(Function<Terminal, JobManager> _jobManagers) {
+        jobManagers = _jobManagers;
+    }
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+
+        if (_arguments == null || _arguments.isEmpty()) {
+            return printError(formatter, "Job id is required!");
+        }
+
+        JobManager jobManager = jobManagers.apply(_terminal);
+        if (jobManager == null) {
+            return printError(formatter, JobsCommand.NO_SESSION_MSG);
+        }
+
+        Job job = jobManager.getJob(TypeUtil.defaultIfNotInteger(_arguments.get(0), -1));
+        if (job == null) {
+            return printError(formatter, "No job with id " + _arguments.get(0) + " found.");
+        }
+
+        if (!job.cancel()) {
+            return printError(formatter, "Job " + job.getId() + " has already finished");
+        }
+        return printSuccess(formatter, job.toString());
+    }
+
+    @Override
+    public String getCommandName() {
+        return "cancel";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        return Arrays.asList(new CommandArg("jobId", true));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Cancel the given background job, a running command is interrupted.";
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager.ConnectionInfo;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+
+public class ConnectionsCommand extends AbstractDeviceCommand {
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        DeviceConnectionManager manager = DeviceConnectionManager.getInstance();
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "status" : _arguments.get(0);
+
+        if ("warmup".equals(operation)) {
+            if (_arguments.size() < 2) {
+                return printError(formatter, "Devices to connect required (MAC address, 'all', list or pattern)");
+            }
+            if (manager.getMaxConnections() <= 0) {
+                return printError(formatter, "Connection pool is disabled (" + DeviceConnectionManager.MAX_CONNECTIONS_PROPERTY + "=0)");
+            }
+            return executeOnDevices(formatter, _arguments.get(1),
+                    d -> manager.warmUp(d) ? DeviceResult.success("Connected") : DeviceResult.failure("Could not connect"));
+        } else if ("close".equals(operation)) {
+            manager.closeAll();
+            return printSuccess(formatter, "All devices disconnected");
+        } else if ("status".equals(operation)) {
+            List<String> result = new ArrayList<>();
+            result.add("");
+            List<ConnectionInfo> connections = manager.getConnections();
+            if (connections.isEmpty()) {
+                result.add("No devices connected");
+            } else {
+                long now = System.currentTimeMillis();
+                result.add(String.format("%-20s %-20s %10s %10s %8s", "MAC", "Name", "connected", "idle", "uses"));
+                for (ConnectionInfo info : connections) {
+                    result.add(String.format("%-20s %-20s %8d s %8d s %8d", info.getMacAddress(), info.getName(),
+                            TimeUnit.MILLISECONDS.toSeconds(now - info.getConnectedMillis()),
+                            TimeUnit.MILLISECONDS.toSeconds(now - info.getLastUsedMillis()), info.getUses()));
+                }
+            }
+            result.add("");
+            result.add("Connected " + connections.size() + " of max. " + manager.getMaxConnections() + " devices, idle timeout " + manager.getIdleSeconds() + " s");
+            result.add("Re-used connections: " + manager.getReused() + ", established: " + manager.getEstablished()
+                    + ", evicted: " + manager.getEvicted() + ", failed: " + manager.getFailed());
+            result.add("");
+            return result.toArray(new String[0]);
+        }
+
+        return printError(formatter, "The operation has to be either 'status', 'warmup' or 'close'");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "connections";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("status", "Show connected devices"),
+                    new ArgWithDescription("warmup", "Connect and authenticate devices"),
+                    new ArgWithDescription("close", "Disconnect all devices"));
+        });
+        return Arrays.asList(operation, createDeviceArg(false));
+    }
+
+    @Override
+    public String getCmdGroup() {
+        return "Adapter Action";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Show the devices kept connected and authenticated between commands, connect devices in advance (warmup) "
+                + "or disconnect all devices (close).";
+    }
+
+}
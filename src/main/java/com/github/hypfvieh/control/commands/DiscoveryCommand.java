@@ -0,0 +1,90 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DiscoveryService;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.util.TypeUtil;
+
+public class DiscoveryCommand extends AbstractCommand {
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        DiscoveryService service = DiscoveryService.getInstance();
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "status" : _arguments.get(0);
+
+        if ("start".equals(operation)) {
+            int scanSeconds = _arguments.size() >= 2 ? TypeUtil.defaultIfNotInteger(_arguments.get(1), -1) : Integer.getInteger(DiscoveryService.SCAN_SECONDS_PROPERTY, DiscoveryService.DEFAULT_SCAN_SECONDS);
+            int pauseSeconds = _arguments.size() >= 3 ? TypeUtil.defaultIfNotInteger(_arguments.get(2), -1) : Integer.getInteger(DiscoveryService.PAUSE_SECONDS_PROPERTY, DiscoveryService.DEFAULT_PAUSE_SECONDS);
+            try {
+                if (!service.start(scanSeconds, pauseSeconds, Integer.getInteger(DiscoveryService.MAX_AGE_SECONDS_PROPERTY, DiscoveryService.DEFAULT_MAX_AGE_SECONDS))) {
+                    return printError(formatter, "Background discovery is already running");
+                }
+            } catch (IllegalArgumentException _ex) {
+                return printError(formatter, "Scan and pause time have to be at least 1 second");
+            }
+            return printSuccess(formatter, "Background discovery started");
+        } else if ("stop".equals(operation)) {
+            if (!service.stop()) {
+                return printError(formatter, "Background discovery is not running");
+            }
+            return printSuccess(formatter, "Background discovery stopped");
+        } else if ("status".equals(operation)) {
+            List<String> result = new ArrayList<>();
+            result.add("");
+            if (service.isRunning()) {
+                result.add("Background discovery is running (scan " + service.getScanSeconds() + " s, pause "
+                        + service.getPauseSeconds() + " s, max. age " + service.getMaxAgeSeconds() + " s)");
+                result.add("Finished discovery cycles: " + service.getCycles());
+            } else {
+                result.add("Background discovery is not running");
+            }
+            result.add("Cached devices: " + DeviceCache.getInstance().getEntries().size());
+            result.add("");
+            return result.toArray(new String[0]);
+        }
+
+        return printError(formatter, "The operation has to be either 'start', 'stop' or 'status'");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "discovery";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("start", "Start background discovery"),
+                    new ArgWithDescription("stop", "Stop background discovery"),
+                    new ArgWithDescription("status", "Show background discovery status"));
+        });
+        CommandArg scanTime = new CommandArg("scanTimeInSeconds", false);
+        CommandArg pauseTime = new CommandArg("pauseTimeInSeconds", false);
+
+        return Arrays.asList(operation, scanTime, pauseTime);
+    }
+
+    @Override
+    public String getCmdGroup() {
+        return "Adapter Action";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Start/stop continuous discovery of devices in background or show its status. "
+                + "Scan and pause time (seconds) can be given when starting.";
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceFade;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
+import com.github.hypfvieh.control.devices.ParallelDeviceExecutor;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.paulmann.features.BrightnessFeature;
+import com.github.hypfvieh.paulmann.features.FeatureIdent;
+import com.github.hypfvieh.paulmann.features.RgbFeature;
+
+public class FadeCommand extends AbstractDeviceCommand {
+    /** Longest transition, 1 hour. */
+    static final int MAX_DURATION_MILLIS = 3600000;
+
+    public FadeCommand() {
+        // a fade mostly waits for its next frame and its writes are limited by the DeviceWriteQueue,
+        // so all selected devices are faded at once to end at the same time
+        super(new ParallelDeviceExecutor(Integer.MAX_VALUE));
+    }
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+
+        if (_arguments == null || _arguments.size() < 4) {
+            return printError(formatter, "Device (MacAddress), start value, target value and duration (ms) are required! "
+                    + "Values are a brightness level (e.g. 10) or colors (e.g. 255/0/0)");
+        }
+
+        if (DeviceCache.getInstance().isEmpty()) {
+            return printError(formatter, "No suitable devices found.");
+        }
+
+        int[] from = parseValues(_arguments.get(1));
+        int[] to = parseValues(_arguments.get(2));
+        if (from == null || to == null || from.length != to.length) {
+            return printError(formatter, "Start and target value have to be both brightness levels (e.g. 10) or both colors (e.g. 255/0/0)");
+        }
+
+        int duration = parseNumber(_arguments.get(3));
+        if (duration < 1 || duration > MAX_DURATION_MILLIS) {
+            return printError(formatter, "The duration has to be between 1 and " + MAX_DURATION_MILLIS + " milliseconds");
+        }
+
+        return executeOnDevices(formatter, _arguments.get(0), device -> from.length == 1
+                ? fadeBrightness(device, from[0], to[0], duration)
+                : fadeColors(device, from, to, duration));
+    }
+
+    /**
+     * Parse a brightness level (e.g. 10) or colors (e.g. 255/0/0 or 255,0,0).
+     * @return values or null if invalid
+     */
+    private static int[] parseValues(String _str) {
+        String[] parts = StringUtils.split(_str, "/,");
+        if (parts == null || (parts.length != 1 && parts.length != 3)) {
+            return null;
+        }
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            // the range is checked against the feature
+            values[i] = parseNumber(parts[i]);
+            if (values[i] < 0) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Parse a positive number, values too large for an int are treated as invalid.
+     * @return number or -1 if invalid
+     */
+    private static int parseNumber(String _str) {
+        if (!StringUtils.isNumeric(_str)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(_str);
+        } catch (NumberFormatException _ex) {
+            return -1;
+        }
+    }
+
+    private DeviceResult fadeBrightness(AbstractPaulmannDevice _device, int _from, int _to, long _duration) {
+        BrightnessFeature feature = _device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+        if (feature == null) {
+            return DeviceResult.failure("Device does not support brightness level feature!");
+        }
+        if (Math.min(_from, _to) < feature.getMinValue() || Math.max(_from, _to) > feature.getMaxValue()) {
+            return DeviceResult.failure("Brightness values have to be between " + feature.getMinValue() + " and " + feature.getMaxValue());
+        }
+        return fade(_device, DeviceStateMirror.STATE_BRIGHTNESS, new int[] {_from}, new int[] {_to}, _duration,
+                v -> () -> feature.writeByte((byte) v[0]), "brightness from " + _from + " to " + _to);
+    }
+
+    private DeviceResult fadeColors(AbstractPaulmannDevice _device, int[] _from, int[] _to, long _duration) {
+        RgbFeature feature = _device.getFeature(FeatureIdent.PAULMANN_RGB_FEATURE);
+        if (feature == null) {
+            return DeviceResult.failure("Device does not support RGB feature!");
+        }
+        for (int i = 0; i < _from.length; i++) {
+            if (Math.min(_from[i], _to[i]) < feature.getMinValue(null) || Math.max(_from[i], _to[i]) > feature.getMaxValue(null)) {
+                return DeviceResult.failure("Color values have to be between " + feature.getMinValue(null) + " and " + feature.getMaxValue(null));
+            }
+        }
+        return fade(_device, DeviceStateMirror.STATE_RGB, _from, _to, _duration,
+                v -> () -> feature.setAllColors((byte) v[0], (byte) v[1], (byte) v[2]),
+                "colors from " + StringUtils.join(_from, '/') + " to " + StringUtils.join(_to, '/'));
+    }
+
+    private DeviceResult fade(AbstractPaulmannDevice _device, String _key, int[] _from, int[] _to, long _duration,
+            Function<int[], BooleanSupplier> _write, String _description) {
+        String mac = _device.getDevice().getAddress();
+        DeviceFade fade = new DeviceFade(mac, _key, _from, _to, _duration);
+        DeviceFade.Result result;
+        try {
+            result = fade.run(v -> {
+                BooleanSupplier write = _write.apply(v);
+                return () -> DeviceConnectionManager.getInstance().execute(_device, () -> traced("write", mac, _key, write));
+            });
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+            return DeviceResult.failure("Fading " + _description + " interrupted");
+        }
+        String stats = " in " + result.getElapsedMillis() + " ms (" + result.getWritten() + " frames, " + result.getDropped()
+                + " dropped, write latency " + result.getLatencyMillis() + " ms)";
+        if (!result.isSuccess()) {
+            return DeviceResult.failure("Could not fade " + _description + stats);
+        }
+        return DeviceResult.success("Faded " + _description + stats);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "fade";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        return Arrays.asList(createDeviceArg(), new CommandArg("from", true), new CommandArg("to", true), new CommandArg("durationMs", true));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Smoothly change brightness (e.g. 'fade <mac> 10 100 2000') or colors (e.g. 'fade <mac> 255/0/0 0/0/255 5000') "
+                + "within the given milliseconds. Use 'all', a comma-separated list or a pattern (e.g. 00:11:*) to fade multiple devices at once.";
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+
+public class FlightRecordingCommand extends AbstractCommand {
+
+    private static final String DEFAULT_SETTINGS = "default";
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        if (!FlightEvents.isAvailable()) {
+            return printError(formatter, "Flight recorder is not available in this JVM (requires Java 8u262 or newer)");
+        }
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "status" : _arguments.get(0);
+
+        if ("start".equals(operation)) {
+            Path file = _arguments.size() >= 2 ? Paths.get(_arguments.get(1))
+                    : Paths.get("paulmann-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".jfr");
+            String settings = _arguments.size() >= 3 ? _arguments.get(2) : DEFAULT_SETTINGS;
+            try {
+                if (!FlightEvents.startRecording(file.toAbsolutePath(), settings)) {
+                    return printError(formatter, "A recording is already running (" + FlightEvents.getRecordingDestination() + ")");
+                }
+            } catch (IOException _ex) {
+                return printError(formatter, "Could not start recording: " + _ex.getMessage());
+            }
+            return printSuccess(formatter, "Recording started, will be written to " + file.toAbsolutePath() + " when stopped");
+        } else if ("stop".equals(operation)) {
+            try {
+                Path file = FlightEvents.stopRecording();
+                if (file == null) {
+                    return printError(formatter, "No recording is running");
+                }
+                return printSuccess(formatter, "Recording written to " + file);
+            } catch (IOException _ex) {
+                return printError(formatter, "Could not write recording: " + _ex.getMessage());
+            }
+        } else if ("status".equals(operation)) {
+            Path file = FlightEvents.getRecordingDestination();
+            return printSuccess(formatter, file == null ? "No recording is running" : "Recording to " + file);
+        }
+
+        return printError(formatter, "The operation has to be either 'start', 'stop' or 'status'");
+    }
+
+    @Override
+    public String getCommandName() {
+        return "flightRecording";
+    }
+
+    @Override
+    public String[] getCommandAliases() {
+        return new String[] {"jfr"};
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("start", "Start recording"),
+                    new ArgWithDescription("stop", "Stop recording and write it to the file"),
+                    new ArgWithDescription("status", "Show whether a recording is running"));
+        });
+        CommandArg file = new CommandArg("file", false);
+        CommandArg settings = new CommandArg("settings", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("default", "Low overhead, suitable for production"),
+                    new ArgWithDescription("profile", "More details, higher overhead"));
+        });
+
+        return Arrays.asList(operation, file, settings);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Start/stop a Java Flight Recorder recording including events for commands, completion, "
+                + "bluetooth operations and terminal output. File and settings (default/profile) can be given when starting.";
+    }
+
+}
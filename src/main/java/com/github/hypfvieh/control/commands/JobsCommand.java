@@ -0,0 +1,59 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.jobs.Job;
+import com.github.hypfvieh.control.jobs.JobManager;
+
+public class JobsCommand extends AbstractCommand {
+
+    /** Job control is only available in interactive shell sessions. */
+    static final String NO_SESSION_MSG = "Background jobs are only available in the interactive shell";
+
+    private final Function<Terminal, JobManager> jobManagers;
+
+    /**
+     * @param _jobManagers returns the job manager of the session using the given terminal, null if there is none
+     */
+    public JobsCommand(Function<Terminal, JobManager> _jobManagers) {
+        jobManagers = _jobManagers;
+    }
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        JobManager jobManager = jobManagers.apply(_terminal);
+        if (jobManager == null) {
+            return printError(formatter, NO_SESSION_MSG);
+        }
+        List<Job> jobs = jobManager.getJobs();
+        if (jobs.isEmpty()) {
+            return printSuccess(formatter, "No background jobs");
+        }
+        List<String> result = new ArrayList<>();
+        result.add("");
+        for (Job job : jobs) {
+            result.add(job.toString());
+        }
+        result.add("");
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "jobs";
+    }
+
+    @Override
+    public String getDescription() {
+        return "List all background jobs. Append '&' to a command to run it in background.";
+    }
+
+}
@@ -4,22 +4,26 @@ import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
-import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
 import com.github.hypfvieh.control.jline3.ArgWithDescription;
 import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
 import com.github.hypfvieh.paulmann.features.AbstractByteValFeature;
 import com.github.hypfvieh.paulmann.features.OnOffFeature;
 import com.github.hypfvieh.paulmann.features.FeatureIdent;
 
-public class OnOffSwitchCommand extends AbstractCommand {
+public class OnOffSwitchCommand extends AbstractDeviceCommand {
 
     @Override
     public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
@@ -29,7 +33,7 @@ public class OnOffSwitchCommand extends AbstractCommand {
             return printError(formatter, "Device (MacAddress) and on/off/status command are required!");
         }
 
-        if (PaulmannDeviceController.getInstance().getDevices().isEmpty()) {
+        if (DeviceCache.getInstance().isEmpty()) {
             return printError(formatter, "No suitable devices found.");
         }
 
@@ -41,30 +45,37 @@ public class OnOffSwitchCommand extends AbstractCommand {
         boolean switchOn = _arguments.get(1).equals("on") ? true : false;
         boolean status = _arguments.get(1).equals("status");
 
-        AbstractPaulmannDevice device = PaulmannDeviceController.getInstance().getDevices().get(_arguments.get(0));
-        if (device == null) {
-            return printError(formatter, "No device with MAC address " + _arguments.get(0) + " found.");
-        } else {
-            OnOffFeature devFeature = device.getFeature(FeatureIdent.PAULMANN_ON_OFF_FEATURE);
-            if (devFeature != null) {
-                if (status) {
-                    int readInt = devFeature.readByte();
-                    if (readInt == AbstractByteValFeature.ERROR_RETURN) {
-                        return printError(formatter, "Could get device status");
-                    } else {
-                        return printSuccess(formatter, "Current device status: " + (readInt == 1 ? "on" : "off"));
-                    }
-                } else {
-                    if (!devFeature.toggle(switchOn)) {                       
-                        return printError(formatter, "Could not switch device " + (switchOn ? "on" : "off"));
-                    } else {
-                        return printSuccess(formatter, "Successfully switch device " + (switchOn ? "on" : "off"));
-                    }
-                }
-            } else {
-                return printError(formatter, "Device does not support on/off switch feature!");
+        return executeOnDevices(formatter, _arguments.get(0), device -> switchDevice(device, switchOn, status));
+    }
+
+    private DeviceResult switchDevice(AbstractPaulmannDevice _device, boolean _switchOn, boolean _status) {
+        OnOffFeature devFeature = _device.getFeature(FeatureIdent.PAULMANN_ON_OFF_FEATURE);
+        if (devFeature == null) {
+            return DeviceResult.failure("Device does not support on/off switch feature!");
+        }
+        if (_status) {
+            String mac = _device.getDevice().getAddress();
+            Boolean mirrored = DeviceStateMirror.getInstance().get(mac, DeviceStateMirror.STATE_ON_OFF);
+            if (mirrored != null) {
+                long age = TimeUnit.MILLISECONDS.toSeconds(DeviceStateMirror.getInstance().getAgeMillis(mac, DeviceStateMirror.STATE_ON_OFF));
+                return DeviceResult.success("Current device status: " + (mirrored ? "on" : "off") + " (known since " + age + " s)");
             }
+            AtomicInteger value = new AtomicInteger(AbstractByteValFeature.ERROR_RETURN);
+            DeviceConnectionManager.getInstance().execute(_device, () -> traced("read", mac, FeatureIdent.PAULMANN_ON_OFF_FEATURE.name(), () -> {
+                value.set(devFeature.readByte());
+                return value.get() != AbstractByteValFeature.ERROR_RETURN;
+            }));
+            int readInt = value.get();
+            if (readInt == AbstractByteValFeature.ERROR_RETURN) {
+                return DeviceResult.failure("Could get device status");
+            }
+            DeviceStateMirror.getInstance().update(mac, DeviceStateMirror.STATE_ON_OFF, readInt == 1);
+            return DeviceResult.success("Current device status: " + (readInt == 1 ? "on" : "off"));
+        }
+        if (!queueWrite(_device, DeviceStateMirror.STATE_ON_OFF, _switchOn, () -> devFeature.toggle(_switchOn))) {
+            return DeviceResult.failure("Could not switch device " + (_switchOn ? "on" : "off"));
         }
+        return DeviceResult.success("Successfully switch device " + (_switchOn ? "on" : "off"));
     }
 
     @Override
@@ -74,11 +85,7 @@ public class OnOffSwitchCommand extends AbstractCommand {
 
     @Override
     public List<CommandArg> getCommandArgs() {
-        CommandArg cmdArg = new CommandArg("deviceMacAddress", true, true, () -> {
-            return PaulmannDeviceController.getInstance().getDevices().entrySet()
-                .stream().map(e -> new ArgWithDescription(e.getKey(), e.getValue().getClass().getSimpleName()))
-                .collect(Collectors.toList());
-        });
+        CommandArg cmdArg = createDeviceArg();
 
         CommandArg cmdArgOnOff = new CommandArg("operation", true, true, () -> {
             List<ArgWithDescription> args = new ArrayList<>();
@@ -94,7 +101,8 @@ public class OnOffSwitchCommand extends AbstractCommand {
 
     @Override
     public String getDescription() {
-        return "Turn on/off switchable device or get the current switch status";
+        return "Turn on/off switchable device(s) or get the current switch status. "
+                + "Use 'all', a comma-separated list or a pattern (e.g. 00:11:*) to switch multiple devices at once.";
     }
 
 }
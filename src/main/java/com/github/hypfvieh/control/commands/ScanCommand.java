@@ -3,8 +3,16 @@ package com.github.hypfvieh.control.commands;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
-
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 import org.jline.utils.AttributedStringBuilder;
 import org.jline.utils.AttributedStyle;
@@ -12,10 +20,17 @@ import org.jline.utils.AttributedStyle;
 import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.PaulmannDeviceController.DeviceDetails;
 import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.ShellOutput;
 import com.github.hypfvieh.control.commands.base.AbstractCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.base.CommandOutcome;
 import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.devices.CachedDevice;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceSelector;
+import com.github.hypfvieh.control.devices.DiscoveryService;
 import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
 import com.github.hypfvieh.util.ConverterUtil;
 import com.github.hypfvieh.util.TypeUtil;
 
@@ -28,17 +43,29 @@ public class ScanCommand extends AbstractCommand {
 
         int timeout = 5;
         boolean showUnsupported = false;
+        String stopCondition = null;
         if (_arguments != null && !_arguments.isEmpty()) {
             timeout = TypeUtil.defaultIfNotInteger(_arguments.get(0), timeout);
             if (_arguments.size() >= 2) {
                 showUnsupported = ConverterUtil.strToBool(_arguments.get(1));
             }
+            if (_arguments.size() >= 3 && !StringUtils.isBlank(_arguments.get(2))) {
+                stopCondition = _arguments.get(2).trim();
+            }
         }
 
         List<String> resultText = new ArrayList<>();
         try {
-            PaulmannDeviceController.getInstance().scanForDevices(timeout);
-            PaulmannDeviceController.getInstance().refreshDevices();
+            // only print devices found while scanning directly if there is a terminal, otherwise add them to the result
+            Consumer<String> progress = _terminal == null ? resultText::add : line -> ShellOutput.printAbove(_terminal, line);
+            boolean stoppedEarly = scanIncremental(timeout, stopCondition, progress, formatter);
+            // device list has changed, update completion
+            CommandArg.invalidateGeneratedArguments();
+            if (stoppedEarly) {
+                progress.accept("Stop condition '" + stopCondition + "' reached, scan finished early");
+            }
+            progress.accept("");
+
             List<DeviceDetails> listAllRawDevices = PaulmannDeviceController.getInstance().listAllRawDevices(showUnsupported);
             if (listAllRawDevices.isEmpty()) {
                 resultText.add("No devices found");
@@ -49,6 +76,7 @@ public class ScanCommand extends AbstractCommand {
                 }
             }
         } catch (InterruptedException _ex) {
+            CommandOutcome.markFailed();
             sb.style(AttributedStyle.BOLD.foreground(AttributedStyle.RED));
             sb.append(wordAwareTrimToLength("Error while scanning for new devices: " + _ex.getMessage(), ICommand.DEFAULT_SHELL_WIDTH, 0));
 
@@ -58,22 +86,76 @@ public class ScanCommand extends AbstractCommand {
         return resultText.toArray(new String[]{});
     }
 
+    /**
+     * Scan for devices and report each new supported device as soon as the {@link DiscoveryService} has read it.
+     *
+     * @param _timeout maximum scan time in seconds
+     * @param _stopCondition number of devices to see during this scan or MAC address (pattern) to wait for, null to scan for the whole time
+     * @param _progress receives a line for every new device
+     * @param _formatter formatter
+     * @return true if the scan was stopped before the timeout because the stop condition was reached
+     * @throws InterruptedException if scanning was interrupted
+     */
+    private boolean scanIncremental(int _timeout, String _stopCondition, Consumer<String> _progress, ShellFormatter _formatter) throws InterruptedException {
+        Set<String> reported = new HashSet<>(DeviceCache.getInstance().getDevices().keySet());
+        int expectedCount = _stopCondition != null && StringUtils.isNumeric(_stopCondition) ? Integer.parseInt(_stopCondition) : -1;
+        long scanStart = System.currentTimeMillis();
+        int scanSeconds = Math.max(_timeout, 1);
+        AtomicBoolean stoppedEarly = new AtomicBoolean();
+
+        DiscoveryService.scan(scanSeconds, elapsedMillis -> {
+            // stop conditions only consider devices seen during this scan, not devices cached by earlier scans
+            Map<String, AbstractPaulmannDevice> seen = new TreeMap<>();
+            for (CachedDevice entry : DeviceCache.getInstance().getEntries()) {
+                boolean isNew = reported.add(entry.getMacAddress());
+                if (isNew || entry.getLastSeenMillis() >= scanStart) {
+                    seen.put(entry.getMacAddress(), entry.getDevice());
+                }
+                if (isNew) {
+                    AttributedStringBuilder sb = new AttributedStringBuilder();
+                    sb.style(AttributedStyle.DEFAULT.foreground(AttributedStyle.GREEN)).append("Found ");
+                    sb.style(AttributedStyle.DEFAULT).append(entry.getMacAddress());
+                    sb.append(" (").append(String.valueOf(entry.getDevice().getDevice().getName())).append(")");
+                    sb.append(" after ").append(String.valueOf(Math.round(elapsedMillis / 1000d))).append(" s");
+                    _progress.accept(_formatter.print(sb));
+                }
+            }
+
+            boolean reached = expectedCount >= 0 ? seen.size() >= expectedCount
+                    : _stopCondition != null && !DeviceSelector.select(_stopCondition, seen).isEmpty();
+            if (reached) {
+                stoppedEarly.set(elapsedMillis < TimeUnit.SECONDS.toMillis(scanSeconds));
+            }
+            return reached;
+        });
+        return stoppedEarly.get();
+    }
 
     @Override
     public String getDescription() {
-        return "Scan for bluetooth devices. You can specify the scan time, if none is given 5 seconds will be used.";
+        return "Scan for bluetooth devices. You can specify the scan time, if none is given 5 seconds will be used. "
+                + "Devices are shown as soon as they are found. The scan stops early if the given number of devices "
+                + "was found or a device with the given MAC address (pattern) was seen.";
     }
 
 
     @Override
     public List<CommandArg> getCommandArgs() {
         
-        CommandArg scanTimeInSecs = new CommandArg("scanTimeInSeconds", true);
-        CommandArg showUnsupported = new CommandArg("scanTimeInSeconds", true, true, () -> {
+        CommandArg scanTimeInSecs = new CommandArg("scanTimeInSeconds", false);
+        CommandArg showUnsupported = new CommandArg("showUnsupported", false, true, () -> {
             return Arrays.asList(new ArgWithDescription("true", "Show unsupported"), new ArgWithDescription("false", "Do not show unsupported (default)"));
         });
                 
-        return Arrays.asList(scanTimeInSecs, showUnsupported);
+        CommandArg stopCondition = new CommandArg("expectedDevicesOrMac", false, false, () -> {
+            List<ArgWithDescription> args = new ArrayList<>();
+            for (AbstractPaulmannDevice dev : DeviceCache.getInstance().getDevices().values()) {
+                args.add(new ArgWithDescription(dev.getDevice().getAddress(), "Stop when " + dev.getDevice().getName() + " is found"));
+            }
+            return args;
+        });
+
+        return Arrays.asList(scanTimeInSecs, showUnsupported, stopCondition);
     }
 
 
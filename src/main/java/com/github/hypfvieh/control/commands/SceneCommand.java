@@ -0,0 +1,398 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.scenes.Scene;
+import com.github.hypfvieh.control.scenes.Scene.DeviceState;
+import com.github.hypfvieh.control.scenes.SceneStore;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.paulmann.features.AbstractByteValFeature;
+import com.github.hypfvieh.paulmann.features.BrightnessFeature;
+import com.github.hypfvieh.paulmann.features.FeatureIdent;
+import com.github.hypfvieh.paulmann.features.OnOffFeature;
+import com.github.hypfvieh.paulmann.features.RgbFeature;
+
+/**
+ * Saves and applies scenes (on/off, brightness and colors of several devices).<br>
+ * When a scene is applied the first time, the features of all devices are resolved once into a {@link WritePlan},
+ * which is re-used until the scene is changed or a device is re-discovered.
+ * The devices are written in parallel, the writes of each device are executed in order.
+ */
+public class SceneCommand extends AbstractDeviceCommand {
+
+    private final ConcurrentMap<String, WritePlan> plans = new ConcurrentHashMap<>();
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        SceneStore store = SceneStore.getInstance();
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "list" : _arguments.get(0);
+
+        if ("list".equals(operation)) {
+            return listScenes(formatter, store);
+        } else if (!ShellFormatter.equalsAny(operation, "save", "apply", "delete")) {
+            return printError(formatter, "The operation has to be either 'save', 'apply', 'delete' or 'list'");
+        }
+
+        if (_arguments.size() < 2 || !SceneStore.isValidName(_arguments.get(1))) {
+            return printError(formatter, "Scene name required (letters, digits, '-' and '_')");
+        }
+        String name = _arguments.get(1);
+
+        if ("apply".equals(operation)) {
+            Scene scene = store.get(name);
+            if (scene == null) {
+                return printError(formatter, "Unknown scene " + name);
+            }
+            return applyScene(formatter, scene);
+        } else if ("delete".equals(operation)) {
+            try {
+                if (!store.delete(name)) {
+                    return printError(formatter, "Unknown scene " + name);
+                }
+            } catch (IOException _ex) {
+                logger.error("Could not delete scene {}", name, _ex);
+                return printError(formatter, "Could not delete scene " + name + ": " + _ex.getMessage());
+            }
+            plans.remove(name);
+            return printSuccess(formatter, "Scene " + name + " deleted");
+        }
+
+        if (_arguments.size() < 3) {
+            return printError(formatter, "Devices of the scene required (MAC address, 'all', list or pattern)");
+        }
+        if (DeviceCache.getInstance().isEmpty()) {
+            return printError(formatter, "No suitable devices found.");
+        }
+        Map<String, AbstractPaulmannDevice> selected = selectDevices(_arguments.get(2));
+        if (selected.isEmpty()) {
+            return printError(formatter, "No device matches " + _arguments.get(2));
+        }
+
+        if (_arguments.size() > 3) {
+            DeviceState state;
+            try {
+                state = parseState(_arguments.subList(3, _arguments.size()));
+            } catch (IllegalArgumentException _ex) {
+                return printError(formatter, _ex.getMessage());
+            }
+            Map<String, DeviceState> devices = new LinkedHashMap<>();
+            for (String mac : selected.keySet()) {
+                devices.put(mac, state);
+            }
+            return saveScene(formatter, new Scene(name, devices), null);
+        }
+
+        // no values given: save the current state of the devices
+        Map<String, DeviceState> captured = new ConcurrentHashMap<>();
+        String[] report = executeOnDevices(formatter, selected, device -> captureState(device, captured), null);
+        if (captured.isEmpty()) {
+            return printError(formatter, "State of none of the devices is known, scene " + name + " not saved");
+        }
+        return saveScene(formatter, new Scene(name, captured), report);
+    }
+
+    private String[] listScenes(ShellFormatter _formatter, SceneStore _store) {
+        List<Scene> scenes = _store.getScenes();
+        if (scenes.isEmpty()) {
+            return printSuccess(_formatter, "No scenes saved so far");
+        }
+        List<String> result = new ArrayList<>();
+        result.add("");
+        for (Scene scene : scenes) {
+            result.add(scene.getName() + " (" + scene.getDevices().size() + " devices)");
+            for (Entry<String, DeviceState> entry : scene.getDevices().entrySet()) {
+                result.add(String.format("  %-20s %s", entry.getKey(), entry.getValue()));
+            }
+        }
+        result.add("");
+        return result.toArray(new String[0]);
+    }
+
+    private String[] saveScene(ShellFormatter _formatter, Scene _scene, String[] _report) {
+        try {
+            SceneStore.getInstance().save(_scene);
+        } catch (IOException _ex) {
+            logger.error("Could not save scene {}", _scene.getName(), _ex);
+            return printError(_formatter, "Could not save scene " + _scene.getName() + ": " + _ex.getMessage());
+        }
+        plans.remove(_scene.getName());
+
+        String[] saved = printSuccess(_formatter, "Scene " + _scene.getName() + " saved with " + _scene.getDevices().size() + " devices");
+        if (_report == null) {
+            return saved;
+        }
+        List<String> result = new ArrayList<>(Arrays.asList(_report));
+        result.addAll(Arrays.asList(saved));
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Parse the values given on the command line: {@code <on|off> [brightness [red green blue]]}.
+     */
+    private static DeviceState parseState(List<String> _values) {
+        if (!ShellFormatter.equalsAny(_values.get(0), "on", "off")) {
+            throw new IllegalArgumentException("The switch instruction has to be either 'on' or 'off'");
+        }
+        if (_values.size() != 1 && _values.size() != 2 && _values.size() != 5) {
+            throw new IllegalArgumentException("Expected values: on|off [brightness [red green blue]]");
+        }
+        for (String value : _values.subList(1, _values.size())) {
+            if (StringUtils.isBlank(value) || !StringUtils.isNumeric(value)) {
+                throw new IllegalArgumentException("Brightness and color values have to be numeric");
+            }
+        }
+        Integer brightness = _values.size() > 1 ? Integer.valueOf(_values.get(1)) : null;
+        List<Integer> rgb = _values.size() > 2
+                ? Arrays.asList(Integer.valueOf(_values.get(2)), Integer.valueOf(_values.get(3)), Integer.valueOf(_values.get(4)))
+                : null;
+        return new DeviceState("on".equals(_values.get(0)), brightness, rgb);
+    }
+
+    /**
+     * Determine the current state of the device. Known values are taken from the {@link DeviceStateMirror},
+     * on/off and brightness are read from the device otherwise. Colors cannot be read, so they are only saved if known.
+     */
+    private static DeviceResult captureState(AbstractPaulmannDevice _device, Map<String, DeviceState> _captured) {
+        String mac = _device.getDevice().getAddress();
+        DeviceStateMirror mirror = DeviceStateMirror.getInstance();
+
+        Boolean on = mirror.get(mac, DeviceStateMirror.STATE_ON_OFF);
+        OnOffFeature onOff = _device.getFeature(FeatureIdent.PAULMANN_ON_OFF_FEATURE);
+        if (on == null && onOff != null) {
+            Integer value = readByte(_device, onOff, FeatureIdent.PAULMANN_ON_OFF_FEATURE);
+            on = value == null ? null : value == 1;
+            mirror.update(mac, DeviceStateMirror.STATE_ON_OFF, on);
+        }
+
+        Integer brightness = mirror.get(mac, DeviceStateMirror.STATE_BRIGHTNESS);
+        BrightnessFeature brightnessFeature = _device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+        if (brightness == null && brightnessFeature != null) {
+            brightness = readByte(_device, brightnessFeature, FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+            mirror.update(mac, DeviceStateMirror.STATE_BRIGHTNESS, brightness);
+        }
+
+        List<Integer> rgb = mirror.get(mac, DeviceStateMirror.STATE_RGB);
+
+        DeviceState state = new DeviceState(on, brightness, rgb);
+        if (state.isEmpty()) {
+            return DeviceResult.failure("Could not determine device state");
+        }
+        _captured.put(mac, state);
+        return DeviceResult.success("Saved " + state);
+    }
+
+    private static Integer readByte(AbstractPaulmannDevice _device, AbstractByteValFeature _feature, FeatureIdent _ident) {
+        String mac = _device.getDevice().getAddress();
+        AtomicInteger value = new AtomicInteger(AbstractByteValFeature.ERROR_RETURN);
+        DeviceConnectionManager.getInstance().execute(_device, () -> traced("read", mac, _ident.name(), () -> {
+            value.set(_feature.readByte());
+            return value.get() != AbstractByteValFeature.ERROR_RETURN;
+        }));
+        return value.get() == AbstractByteValFeature.ERROR_RETURN ? null : value.get();
+    }
+
+    private String[] applyScene(ShellFormatter _formatter, Scene _scene) {
+        WritePlan plan = plans.get(_scene.getName());
+        if (plan == null || !plan.isValid(_scene)) {
+            plan = new WritePlan(_scene);
+            plans.put(_scene.getName(), plan);
+        }
+        if (plan.devices.isEmpty()) {
+            return printError(_formatter, "None of the devices of scene " + _scene.getName() + " is known, scan for devices first");
+        }
+        WritePlan current = plan;
+        String[] result = executeOnDevices(_formatter, plan.devices, device -> current.apply(device), null);
+        int missing = _scene.getDevices().size() - plan.devices.size();
+        if (missing > 0) {
+            List<String> lines = new ArrayList<>(Arrays.asList(result));
+            lines.add(lines.size() - 1, missing + " devices of the scene are unknown and were skipped");
+            return lines.toArray(new String[0]);
+        }
+        return result;
+    }
+
+    @Override
+    public String getCommandName() {
+        return "scene";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("apply", "Apply a scene"),
+                    new ArgWithDescription("save", "Save a scene"),
+                    new ArgWithDescription("delete", "Delete a scene"),
+                    new ArgWithDescription("list", "Show all scenes"));
+        });
+        CommandArg sceneName = new CommandArg("sceneName", false, false, () -> {
+            List<ArgWithDescription> args = new ArrayList<>();
+            for (Scene scene : SceneStore.getInstance().getScenes()) {
+                args.add(new ArgWithDescription(scene.getName(), scene.getDevices().size() + " devices"));
+            }
+            return args;
+        });
+        CommandArg onOff = new CommandArg("onOff", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("on", "Switch devices on"),
+                    new ArgWithDescription("off", "Switch devices off"));
+        });
+        return Arrays.asList(operation, sceneName, createDeviceArg(false), onOff, new CommandArg("brightnessLevel", false),
+                new CommandArg("red-value", false), new CommandArg("green-value", false), new CommandArg("blue-value", false));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Apply a scene or save the current state (or the given on/off, brightness and colors) of the given device(s) as scene. "
+                + "Use 'all', a comma-separated list or a pattern (e.g. 00:11:*) to select the devices of the scene.";
+    }
+
+    /**
+     * Writes of a scene with all features resolved.<br>
+     * The plan is only valid as long as the scene is unchanged and the same device instances are cached.
+     */
+    private static final class WritePlan {
+        private final Scene                               scene;
+        /** Known devices of the scene. */
+        private final Map<String, AbstractPaulmannDevice> devices = new LinkedHashMap<>();
+        private final Map<String, List<WriteStep>>        steps   = new ConcurrentHashMap<>();
+        /** Values not supported by a device. */
+        private final Map<String, String>                 errors  = new ConcurrentHashMap<>();
+
+        WritePlan(Scene _scene) {
+            scene = _scene;
+            for (Entry<String, DeviceState> entry : _scene.getDevices().entrySet()) {
+                AbstractPaulmannDevice device = DeviceCache.getInstance().getDevice(entry.getKey());
+                if (device != null) {
+                    devices.put(entry.getKey(), device);
+                    steps.put(entry.getKey(), compile(entry.getKey(), device, entry.getValue()));
+                }
+            }
+        }
+
+        /**
+         * Resolve the features of the device. If the device is switched on, it is switched on first, if it is switched off
+         * it is switched off last, so brightness and colors are always written to a device which is switched on.
+         */
+        private List<WriteStep> compile(String _mac, AbstractPaulmannDevice _device, DeviceState _state) {
+            List<WriteStep> result = new ArrayList<>();
+            List<String> problems = new ArrayList<>();
+
+            WriteStep onOffStep = null;
+            if (_state.getOn() != null) {
+                OnOffFeature feature = _device.getFeature(FeatureIdent.PAULMANN_ON_OFF_FEATURE);
+                boolean on = _state.getOn();
+                if (feature == null) {
+                    problems.add("on/off not supported");
+                } else {
+                    onOffStep = new WriteStep(DeviceStateMirror.STATE_ON_OFF, on, () -> feature.toggle(on));
+                }
+            }
+            if (onOffStep != null && _state.getOn()) {
+                result.add(onOffStep);
+            }
+
+            if (_state.getBrightness() != null) {
+                BrightnessFeature feature = _device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+                int value = _state.getBrightness();
+                if (feature == null) {
+                    problems.add("brightness not supported");
+                } else if (value < feature.getMinValue() || value > feature.getMaxValue()) {
+                    problems.add("brightness " + value + " not in range " + feature.getMinValue() + "-" + feature.getMaxValue());
+                } else {
+                    result.add(new WriteStep(DeviceStateMirror.STATE_BRIGHTNESS, value, () -> feature.writeByte((byte) value)));
+                }
+            }
+
+            if (_state.getRgb() != null) {
+                RgbFeature feature = _device.getFeature(FeatureIdent.PAULMANN_RGB_FEATURE);
+                List<Integer> rgb = _state.getRgb();
+                if (feature == null) {
+                    problems.add("RGB not supported");
+                } else if (Math.min(rgb.get(0), Math.min(rgb.get(1), rgb.get(2))) < feature.getMinValue(null)
+                        || Math.max(rgb.get(0), Math.max(rgb.get(1), rgb.get(2))) > feature.getMaxValue(null)) {
+                    problems.add("colors not in range " + feature.getMinValue(null) + "-" + feature.getMaxValue(null));
+                } else {
+                    byte red = rgb.get(0).byteValue();
+                    byte green = rgb.get(1).byteValue();
+                    byte blue = rgb.get(2).byteValue();
+                    result.add(new WriteStep(DeviceStateMirror.STATE_RGB, rgb, () -> feature.setAllColors(red, green, blue)));
+                }
+            }
+
+            if (onOffStep != null && !_state.getOn()) {
+                result.add(onOffStep);
+            }
+            if (!problems.isEmpty()) {
+                errors.put(_mac, String.join(", ", problems));
+            }
+            return result;
+        }
+
+        boolean isValid(Scene _scene) {
+            if (scene != _scene) {
+                return false;
+            }
+            for (String mac : scene.getDevices().keySet()) {
+                if (DeviceCache.getInstance().getDevice(mac) != devices.get(mac)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Execute all writes of the device in order, stopping at the first failed write.
+         */
+        DeviceResult apply(AbstractPaulmannDevice _device) {
+            String mac = _device.getDevice().getAddress();
+            for (WriteStep step : steps.get(mac)) {
+                if (!queueWrite(_device, step.key, step.value, step.write)) {
+                    return DeviceResult.failure("Could not write " + step.key + " of scene " + scene.getName());
+                }
+            }
+            String problems = errors.get(mac);
+            if (problems != null) {
+                return DeviceResult.failure("Applied scene " + scene.getName() + " partially: " + problems);
+            }
+            return DeviceResult.success("Applied scene " + scene.getName() + " (" + scene.getDevices().get(mac) + ")");
+        }
+    }
+
+    /**
+     * Single write of a {@link WritePlan}.
+     */
+    private static final class WriteStep {
+        private final String          key;
+        private final Object          value;
+        private final BooleanSupplier write;
+
+        WriteStep(String _key, Object _value, BooleanSupplier _write) {
+            key = _key;
+            value = _value;
+            write = _write;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.schedule.CronExpression;
+import com.github.hypfvieh.control.schedule.ScheduleRule;
+import com.github.hypfvieh.control.schedule.Scheduler;
+import com.github.hypfvieh.control.schedule.Scheduler.RuleInfo;
+import com.github.hypfvieh.util.TypeUtil;
+
+public class ScheduleCommand extends AbstractCommand {
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        Scheduler scheduler = Scheduler.getInstance();
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "list" : _arguments.get(0);
+
+        if ("list".equals(operation)) {
+            return listRules(formatter, scheduler);
+        } else if ("remove".equals(operation)) {
+            if (_arguments.size() < 2) {
+                return printError(formatter, "Rule id is required!");
+            }
+            try {
+                if (!scheduler.remove(TypeUtil.defaultIfNotInteger(_arguments.get(1), -1))) {
+                    return printError(formatter, "No rule with id " + _arguments.get(1) + " found.");
+                }
+            } catch (IOException _ex) {
+                logger.error("Could not remove scheduled rule {}", _arguments.get(1), _ex);
+                return printError(formatter, "Could not save rules: " + _ex.getMessage());
+            }
+            return printSuccess(formatter, "Rule " + _arguments.get(1) + " removed");
+        } else if (!ShellFormatter.equalsAny(operation, "cron", "at")) {
+            return printError(formatter, "The operation has to be either 'cron', 'at', 'remove' or 'list'");
+        }
+
+        // cron: 5 fields, at: 1 field, followed by the command line
+        int timeFields = "cron".equals(operation) ? 5 : 1;
+        if (_arguments.size() < 2 + timeFields) {
+            return printError(formatter, "cron".equals(operation)
+                    ? "Expected: schedule cron <minute> <hour> <day-of-month> <month> <day-of-week> <command...>"
+                    : "Expected: schedule at <HH:mm|yyyy-MM-ddTHH:mm> <command...>");
+        }
+        List<String> commandArgs = _arguments.subList(1 + timeFields, _arguments.size());
+        ICommand command = new CommandDispatcher().getRegisteredCommands().get(commandArgs.get(0));
+        if (command == null || command instanceof ExitCommand) {
+            return printError(formatter, "Unknown or unsupported command: " + commandArgs.get(0));
+        }
+        String commandLine = command.getCommandName() + " " + String.join(" ", commandArgs.subList(1, commandArgs.size()));
+
+        ScheduleRule rule;
+        try {
+            if ("cron".equals(operation)) {
+                rule = scheduler.addCron(CronExpression.parse(String.join(" ", _arguments.subList(1, 6))), commandLine);
+            } else {
+                rule = scheduler.addAt(ScheduleRule.parseAtTime(_arguments.get(1), LocalDateTime.now()), commandLine);
+            }
+        } catch (IllegalArgumentException _ex) {
+            return printError(formatter, _ex.getMessage());
+        } catch (IOException _ex) {
+            logger.error("Could not save scheduled rule", _ex);
+            return printError(formatter, "Could not save rules: " + _ex.getMessage());
+        }
+        String msg = "Added rule " + rule;
+        if (!scheduler.isExecuting()) {
+            msg += scheduler.isStarted() ? " (rules are executed by another process)"
+                    : " (rules are only executed by the interactive shell or the daemon)";
+        }
+        return printSuccess(formatter, msg);
+    }
+
+    private String[] listRules(ShellFormatter _formatter, Scheduler _scheduler) {
+        List<RuleInfo> rules = _scheduler.getRules();
+        List<String> result = new ArrayList<>();
+        result.add("");
+        if (rules.isEmpty()) {
+            result.add("No rules scheduled");
+        } else {
+            result.add(String.format("%4s  %-28s %-17s %-17s %-8s %6s  %s", "Id", "When", "Next", "Last", "Result", "missed", "Command"));
+            for (RuleInfo info : rules) {
+                result.add(String.format("%4d  %-28s %-17s %-17s %-8s %6d  %s", info.getRule().getId(), info.getRule().getWhen(),
+                        info.getNextExecution() == null ? "-" : info.getNextExecution(),
+                        info.getLastExecution() == null ? "-" : info.getLastExecution(),
+                        info.getLastStatus() == null ? "-" : info.getLastStatus(), info.getMissed(), info.getRule().getCommandLine()));
+            }
+        }
+        result.add("");
+        if (_scheduler.isExecuting()) {
+            result.add("Executed: " + _scheduler.getExecuted() + ", missed: " + _scheduler.getMissed()
+                    + ", max. delay: " + _scheduler.getMaxDelayMillis() + " ms, misfire after " + _scheduler.getMisfireSeconds() + " s");
+        } else if (_scheduler.isStarted()) {
+            result.add("Rules are executed by another process (interactive shell or daemon)");
+        } else {
+            result.add("Scheduler not running, rules are only executed by the interactive shell or the daemon");
+        }
+        result.add("");
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "schedule";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("list", "Show all rules"),
+                    new ArgWithDescription("cron", "Execute a command repeatedly (cron expression)"),
+                    new ArgWithDescription("at", "Execute a command once (HH:mm or yyyy-MM-ddTHH:mm)"),
+                    new ArgWithDescription("remove", "Remove a rule"));
+        });
+        return Arrays.asList(operation, new CommandArg("timeOrId", false), new CommandArg("command", false));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Execute a command at given times, e.g. 'schedule cron 0 7 * * 1-5 switchOnOff all on' or "
+                + "'schedule at 22:30 scene apply off'. Rules are saved and executed by the interactive shell and the daemon.";
+    }
+
+}
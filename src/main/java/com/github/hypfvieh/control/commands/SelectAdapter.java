@@ -14,6 +14,9 @@ import com.github.hypfvieh.bluetooth.wrapper.BluetoothAdapter;
 import com.github.hypfvieh.control.ShellFormatter;
 import com.github.hypfvieh.control.commands.base.AbstractCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
 import com.github.hypfvieh.control.jline3.ArgWithDescription;
 
 public class SelectAdapter extends AbstractCommand {
@@ -33,6 +36,11 @@ public class SelectAdapter extends AbstractCommand {
         }
         try {
             DeviceManager.getInstance().setDefaultAdapter(findFirst.get());            
+            // devices of the new adapter have to be used for completion
+            DeviceConnectionManager.getInstance().closeAll();
+            DeviceCache.getInstance().clear();
+            DeviceStateMirror.getInstance().clear();
+            CommandArg.invalidateGeneratedArguments();
             return printSuccess(sf, "Adapter successfully set to " + _arguments.get(0));
         } catch (BluezDoesNotExistException _ex) {            
             return printError(sf, "Adapter with identifier '" + _arguments.get(0) + "' does not exist.");
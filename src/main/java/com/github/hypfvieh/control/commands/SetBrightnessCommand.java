@@ -3,22 +3,22 @@ package com.github.hypfvieh.control.commands;
 import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
-import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
-import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.commands.base.ValueRange;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
 import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
 import com.github.hypfvieh.paulmann.features.BrightnessFeature;
 import com.github.hypfvieh.paulmann.features.FeatureIdent;
 
-public class SetBrightnessCommand extends AbstractCommand {
+public class SetBrightnessCommand extends AbstractDeviceCommand {
 
     @Override
     public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
@@ -28,7 +28,7 @@ public class SetBrightnessCommand extends AbstractCommand {
             return printError(formatter, "Device (MacAddress) and brightness-level (10-100) are required!");
         }
 
-        if (PaulmannDeviceController.getInstance().getDevices().isEmpty()) {
+        if (DeviceCache.getInstance().isEmpty()) {
             return printError(formatter, "No suitable devices found.");
         }
 
@@ -38,27 +38,22 @@ public class SetBrightnessCommand extends AbstractCommand {
 
         int intVal = Integer.parseInt(_arguments.get(1));
 
-        AbstractPaulmannDevice device = PaulmannDeviceController.getInstance().getDevices().get(_arguments.get(0));
-        if (device == null) {
-            return printError(formatter, "No device with MAC address " + _arguments.get(0) + " found.");
-        } else {
-            BrightnessFeature devFeature = device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
-            if (devFeature != null) {
-                if (intVal > devFeature.getMaxValue()) {
-                    return printError(formatter, "Given brightness value " + intVal + " is higher than the allowed maximum of " + devFeature.getMaxValue());
-                } else if (intVal < devFeature.getMinValue()) {
-                    return printError(formatter, "Given brightness value " + intVal + " is lower than the required minimum of " + devFeature.getMinValue());
-                } else {
-                    if (!devFeature.writeByte((byte) intVal)) {
-                        return printError(formatter, "Could not change brightness level to " + intVal);
-                    } else {
-                        return printSuccess(formatter, "Successfully changed brightness level to" + intVal);
-                    }
-                }
-            } else {
-                return printError(formatter, "Device does not support brightness level feature!");
-            }
+        return executeOnDevices(formatter, _arguments.get(0), device -> setBrightness(device, intVal));
+    }
+
+    private DeviceResult setBrightness(AbstractPaulmannDevice _device, int _value) {
+        BrightnessFeature devFeature = _device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+        if (devFeature == null) {
+            return DeviceResult.failure("Device does not support brightness level feature!");
+        }
+        if (_value > devFeature.getMaxValue()) {
+            return DeviceResult.failure("Given brightness value " + _value + " is higher than the allowed maximum of " + devFeature.getMaxValue());
+        } else if (_value < devFeature.getMinValue()) {
+            return DeviceResult.failure("Given brightness value " + _value + " is lower than the required minimum of " + devFeature.getMinValue());
+        } else if (!queueWrite(_device, DeviceStateMirror.STATE_BRIGHTNESS, _value, () -> devFeature.writeByte((byte) _value))) {
+            return DeviceResult.failure("Could not change brightness level to " + _value);
         }
+        return DeviceResult.success("Successfully changed brightness level to" + _value);
     }
 
     @Override
@@ -69,22 +64,35 @@ public class SetBrightnessCommand extends AbstractCommand {
     @Override
     public List<CommandArg> getCommandArgs() {
         
-        CommandArg deviceMacAddress = new CommandArg("deviceMacAddress", true, false, () -> {
-            return PaulmannDeviceController.getInstance().getDevices().values().stream()
-                    .map(k -> new ArgWithDescription(k.getDevice().getAddress(), k.getDevice().getName()))
-                    .collect(Collectors.toList());
-        });
+        CommandArg deviceMacAddress = createDeviceArg();
         
-        CommandArg brightnessLevel = new CommandArg("brightnessLevel", true, true, () -> {
-            return IntStream.range(10, 100).mapToObj(i -> new ArgWithDescription(String.valueOf(i), null)).collect(Collectors.toList());
-        });
+        CommandArg brightnessLevel = new CommandArg("brightnessLevel", true, SetBrightnessCommand::getBrightnessRange);
         
         return Arrays.asList(deviceMacAddress, brightnessLevel);
     }
 
+    /**
+     * Range of brightness values supported by the (first) device selected by the first argument.
+     * @param _args previous arguments
+     * @return range or null if device is unknown or does not support brightness
+     */
+    private static ValueRange getBrightnessRange(List<String> _args) {
+        if (_args.isEmpty()) {
+            return null;
+        }
+        for (AbstractPaulmannDevice device : selectDevices(_args.get(0)).values()) {
+            BrightnessFeature devFeature = device.getFeature(FeatureIdent.PAULMANN_BRIGHTNESS_FEATURE);
+            if (devFeature != null) {
+                return new ValueRange(devFeature.getMinValue(), devFeature.getMaxValue());
+            }
+        }
+        return null;
+    }
+
     @Override
     public String getDescription() {
-        return "Change brightness of the given device. Values from 10-100 are allowed.";
+        return "Change brightness of the given device(s). Values from 10-100 are allowed. "
+                + "Use 'all', a comma-separated list or a pattern (e.g. 00:11:*) to change multiple devices at once.";
     }
 
 }
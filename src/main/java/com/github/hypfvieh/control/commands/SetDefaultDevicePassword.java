@@ -2,50 +2,109 @@ package com.github.hypfvieh.control.commands;
 
 import java.io.InterruptedIOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
 import com.github.hypfvieh.PasswordManager;
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
-import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.RetryPolicy;
 import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.paulmann.features.DevicePasswordFeature;
 import com.github.hypfvieh.paulmann.features.FeatureIdent;
 
-public class SetDefaultDevicePassword extends AbstractCommand {
+/**
+ * Sets the default password and rolls it out to all known devices.<br>
+ * Devices are processed in parallel, each write is verified by authenticating with the new password
+ * and retried with exponential backoff if writing or verifying fails.
+ * Writes use the connection of the {@link DeviceConnectionManager}, authenticated with the password known before,
+ * so they never race with other operations on the same device.<br>
+ * Devices which did not receive the new password keep their previous password.
+ */
+public class SetDefaultDevicePassword extends AbstractDeviceCommand {
+
+    private static final RetryPolicy RETRY_POLICY = new RetryPolicy(4, 200L, 2000L);
 
     @Override
     public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
         ShellFormatter formatter = new ShellFormatter(_terminal);
 
-        if (StringUtils.isBlank(_arguments.get(0)) || !StringUtils.isNumeric(_arguments.get(0))
+        if (_arguments == null || _arguments.isEmpty() || StringUtils.isBlank(_arguments.get(0)) || !StringUtils.isNumeric(_arguments.get(0))
                 || _arguments.get(0).length() > 4) {
             return printError(formatter, "The password should be a numeric value with a maximum of 4 digits.");
         }
 
         String password = _arguments.get(0);
-        PasswordManager.getInstance().setDefaultPassword(password);
-        
-        Map<String, AbstractPaulmannDevice> devices = PaulmannDeviceController.getInstance().getDevices();
+
+        Map<String, AbstractPaulmannDevice> devices = DeviceCache.getInstance().getDevices();
+        if (devices.isEmpty()) {
+            PasswordManager.getInstance().setDefaultPassword(password);
+            return printSuccess(formatter, "Successfully updated/set default password (no devices to update)");
+        }
+
+        // password each device has before the rollout, devices are connected using it
+        Map<String, String> previous = new HashMap<>();
+        for (String mac : devices.keySet()) {
+            previous.put(mac, PasswordManager.getInstance().getDevicePassword(mac));
+        }
+        Set<String> written = ConcurrentHashMap.newKeySet();
         try {
-            for (AbstractPaulmannDevice d : devices.values()) {
-                d.getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE).writeString(password);
-                Thread.sleep(200L);
-                d.getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE).writeString(password);
-                Thread.sleep(200L);
-                d.getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE).writeString(password);
+            // the connections stay authenticated afterwards
+            return executeOnDevices(formatter, devices, d -> RETRY_POLICY.execute(() -> writePassword(d, password, written)), _terminal);
+        } finally {
+            // devices which did not receive the new password keep the password they have
+            for (Entry<String, String> entry : previous.entrySet()) {
+                if (!written.contains(entry.getKey()) && entry.getValue() != null) {
+                    PasswordManager.getInstance().putDevicePassword(entry.getKey(), entry.getValue());
+                }
             }
-        } catch (InterruptedException _ex) {
-            // TODO Auto-generated catch block
-            _ex.printStackTrace();
+            PasswordManager.getInstance().setDefaultPassword(password);
         }
-        
-        return printSuccess(formatter, "Successfully updated/set default password");
+    }
 
+    /**
+     * Write the password to the device and verify it by authenticating with the new password.<br>
+     * The password is stored for the device as soon as it was written, so a retry connects with the new password.
+     *
+     * @param _device device
+     * @param _password password to set
+     * @param _written receives the MAC address if the password was written
+     * @return result
+     */
+    private DeviceResult writePassword(AbstractPaulmannDevice _device, String _password, Set<String> _written) {
+        DevicePasswordFeature devFeature = _device.getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE);
+        if (devFeature == null) {
+            return DeviceResult.failure("Unable to set password, wrong device class!");
+        }
+        String mac = _device.getDevice().getAddress();
+        String feature = FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE.name();
+        AtomicReference<String> error = new AtomicReference<>("Could not connect");
+        boolean success = DeviceConnectionManager.getInstance().execute(_device, () -> {
+            if (!traced("write", mac, feature, () -> devFeature.writeString(_password))) {
+                error.set("Could not write password");
+                return false;
+            }
+            PasswordManager.getInstance().putDevicePassword(mac, _password);
+            _written.add(mac);
+            if (!traced("authenticate", mac, feature, () -> devFeature.authenticate(_password))) {
+                error.set("Could not verify password");
+                return false;
+            }
+            return true;
+        });
+        return success ? DeviceResult.success("Successfully updated/set password") : DeviceResult.failure(error.get());
     }
 
     @Override
@@ -62,7 +121,7 @@ public class SetDefaultDevicePassword extends AbstractCommand {
 
     @Override
     public String getDescription() {
-        return "Setup the default password used for controlling a device if no specific password was set. Password has to be 4 digits.";
+        return "Setup the default password used for controlling a device if no specific password was set and write it to all known devices. Password has to be 4 digits.";
     }
 
 }
@@ -9,10 +9,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
 import com.github.hypfvieh.PasswordManager;
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
 import com.github.hypfvieh.control.commands.base.AbstractCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
 import com.github.hypfvieh.control.jline3.ArgWithDescription;
 import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
 import com.github.hypfvieh.paulmann.features.DevicePasswordFeature;
@@ -28,7 +30,7 @@ public class SetDevicePasswordCommand extends AbstractCommand {
             return printError(formatter, "Device (MacAddress) and password which should be set are required!");
         }
 
-        if (PaulmannDeviceController.getInstance().getDevices().isEmpty()) {
+        if (DeviceCache.getInstance().isEmpty()) {
             return printError(formatter, "No suitable devices found.");
         }
         if (StringUtils.isBlank(_arguments.get(1)) || !StringUtils.isNumeric(_arguments.get(1))
@@ -40,14 +42,17 @@ public class SetDevicePasswordCommand extends AbstractCommand {
 
         PasswordManager.getInstance().putDevicePassword(_arguments.get(0), password);
         
-        AbstractPaulmannDevice device = PaulmannDeviceController.getInstance().getDevices().get(_arguments.get(0));
+        AbstractPaulmannDevice device = DeviceCache.getInstance().getDevice(_arguments.get(0));
         if (device == null) {
             return printError(formatter, "No device with MAC address " + _arguments.get(0) + " found.");
         } else {
             DevicePasswordFeature devFeature = device
                     .getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE);
             if (devFeature != null) {
-                if (!devFeature.authenticate(password)) {
+                Trace trace = FlightEvents.bluetooth("authenticate", _arguments.get(0), FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE.name());
+                boolean authenticated = devFeature.authenticate(password);
+                trace.end(authenticated);
+                if (!authenticated) {
                     return printError(formatter, "Could not set/update password!");
                 } else {
                     return printSuccess(formatter, "Successfully updated/set password");
@@ -67,7 +72,7 @@ public class SetDevicePasswordCommand extends AbstractCommand {
     public List<CommandArg> getCommandArgs() {
         
         CommandArg deviceMacAddress = new CommandArg("deviceMacAddress", true, false, () -> {
-            return PaulmannDeviceController.getInstance().getDevices().values().stream()
+            return DeviceCache.getInstance().getDevices().values().stream()
                     .map(k -> new ArgWithDescription(k.getDevice().getAddress(), k.getDevice().getName()))
                     .collect(Collectors.toList());
         });
@@ -3,22 +3,22 @@ package com.github.hypfvieh.control.commands;
 import java.io.InterruptedIOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
-import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.AbstractDeviceCommand;
 import com.github.hypfvieh.control.commands.base.CommandArg;
-import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.commands.base.ValueRange;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
 import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
 import com.github.hypfvieh.paulmann.features.RgbFeature;
 import com.github.hypfvieh.paulmann.features.FeatureIdent;
 
-public class SetRgbCommand extends AbstractCommand {
+public class SetRgbCommand extends AbstractDeviceCommand {
 
     @Override
     public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
@@ -28,7 +28,7 @@ public class SetRgbCommand extends AbstractCommand {
             return printError(formatter, "Device (MacAddress), color level for red, green and blue (0-255) are required!");
         }
 
-        if (PaulmannDeviceController.getInstance().getDevices().isEmpty()) {
+        if (DeviceCache.getInstance().isEmpty()) {
             return printError(formatter, "No suitable devices found.");
         }
 
@@ -48,26 +48,23 @@ public class SetRgbCommand extends AbstractCommand {
         int green = Integer.parseInt(_arguments.get(2));
         int blue = Integer.parseInt(_arguments.get(3));
 
-        AbstractPaulmannDevice device = PaulmannDeviceController.getInstance().getDevices().get(_arguments.get(0));
-        if (device == null) {
-            return printError(formatter, "No device with MAC address " + _arguments.get(0) + " found.");
-        } else {
-            RgbFeature feature = device.getFeature(FeatureIdent.PAULMANN_RGB_FEATURE);
-            if (feature != null) {
-                if (feature.getMaxValue(null) < red || feature.getMaxValue(null) < green || feature.getMaxValue(null) < blue) {
-                    return printError(formatter, "One of the given color channel values (red = " + red + ", green = " + green + ", blue = " + blue + ") are higher than the allowed maximum of " + feature.getMaxValue(null));
-                } else if (red < feature.getMinValue(null) || green < feature.getMinValue(null) || blue < feature.getMinValue(null)) {
-                    return printError(formatter, "One of the given color channel values (red = " + red + ", green = " + green + ", blue = " + blue + ") are lower than the required minimum of " + feature.getMinValue(null));
-                }
-                if (!feature.setAllColors((byte) red, (byte) green, (byte) blue)) {
-                    return printError(formatter, "Could not change RGB channels to level to red = " + red + ", green = " + green + ", blue = " + blue);
-                } else {
-                    return printSuccess(formatter, "Successfully changed RGB levels to red = " + red + ", green = " + green + ", blue = " + blue);
-                }
-            } else {
-                return printError(formatter, "Device does not support RGB feature!");
-            }
+        return executeOnDevices(formatter, _arguments.get(0), device -> setColors(device, red, green, blue));
+    }
+
+    private DeviceResult setColors(AbstractPaulmannDevice _device, int _red, int _green, int _blue) {
+        RgbFeature feature = _device.getFeature(FeatureIdent.PAULMANN_RGB_FEATURE);
+        if (feature == null) {
+            return DeviceResult.failure("Device does not support RGB feature!");
+        }
+        if (feature.getMaxValue(null) < _red || feature.getMaxValue(null) < _green || feature.getMaxValue(null) < _blue) {
+            return DeviceResult.failure("One of the given color channel values (red = " + _red + ", green = " + _green + ", blue = " + _blue + ") are higher than the allowed maximum of " + feature.getMaxValue(null));
+        } else if (_red < feature.getMinValue(null) || _green < feature.getMinValue(null) || _blue < feature.getMinValue(null)) {
+            return DeviceResult.failure("One of the given color channel values (red = " + _red + ", green = " + _green + ", blue = " + _blue + ") are lower than the required minimum of " + feature.getMinValue(null));
+        }
+        if (!queueWrite(_device, DeviceStateMirror.STATE_RGB, Arrays.asList(_red, _green, _blue), () -> feature.setAllColors((byte) _red, (byte) _green, (byte) _blue))) {
+            return DeviceResult.failure("Could not change RGB channels to level to red = " + _red + ", green = " + _green + ", blue = " + _blue);
         }
+        return DeviceResult.success("Successfully changed RGB levels to red = " + _red + ", green = " + _green + ", blue = " + _blue);
     }
 
     @Override
@@ -77,30 +74,39 @@ public class SetRgbCommand extends AbstractCommand {
 
     @Override
     public List<CommandArg> getCommandArgs() {
-        CommandArg deviceMacAddress = new CommandArg("deviceMacAddress", true, false, () -> {
-            return PaulmannDeviceController.getInstance().getDevices().values().stream()
-                    .map(k -> new ArgWithDescription(k.getDevice().getAddress(), k.getDevice().getName()))
-                    .collect(Collectors.toList());
-        });
+        CommandArg deviceMacAddress = createDeviceArg();
         
-        CommandArg brightnessRed = new CommandArg("red-value", true, true, () -> {
-            return IntStream.range(0, 255).mapToObj(i -> new ArgWithDescription(String.valueOf(i), null)).collect(Collectors.toList());
-        });
+        CommandArg brightnessRed = new CommandArg("red-value", true, SetRgbCommand::getColorRange);
 
-        CommandArg brightnessGreen = new CommandArg("green-value", true, true, () -> {
-            return IntStream.range(0, 255).mapToObj(i -> new ArgWithDescription(String.valueOf(i), null)).collect(Collectors.toList());
-        });
+        CommandArg brightnessGreen = new CommandArg("green-value", true, SetRgbCommand::getColorRange);
 
-        CommandArg brightnessBlue = new CommandArg("blue-value", true, true, () -> {
-            return IntStream.range(0, 255).mapToObj(i -> new ArgWithDescription(String.valueOf(i), null)).collect(Collectors.toList());
-        });
+        CommandArg brightnessBlue = new CommandArg("blue-value", true, SetRgbCommand::getColorRange);
 
         return Arrays.asList(deviceMacAddress, brightnessRed, brightnessGreen, brightnessBlue);
     }
 
+    /**
+     * Range of color channel values supported by the (first) device selected by the first argument.
+     * @param _args previous arguments
+     * @return range or null if device is unknown or does not support RGB
+     */
+    private static ValueRange getColorRange(List<String> _args) {
+        if (_args.isEmpty()) {
+            return null;
+        }
+        for (AbstractPaulmannDevice device : selectDevices(_args.get(0)).values()) {
+            RgbFeature feature = device.getFeature(FeatureIdent.PAULMANN_RGB_FEATURE);
+            if (feature != null) {
+                return new ValueRange(feature.getMinValue(null), feature.getMaxValue(null));
+            }
+        }
+        return null;
+    }
+
     @Override
     public String getDescription() {
-        return "Set the RGB colors of the given device. Values from 0-255 are allowed.";
+        return "Set the RGB colors of the given device(s). Values from 0-255 are allowed. "
+                + "Use 'all', a comma-separated list or a pattern (e.g. 00:11:*) to change multiple devices at once.";
     }
 
 }
@@ -3,13 +3,16 @@ package com.github.hypfvieh.control.commands;
 import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.StringUtils;
 import org.jline.terminal.Terminal;
 
-import com.github.hypfvieh.PaulmannDeviceController;
 import com.github.hypfvieh.control.ShellFormatter;
 import com.github.hypfvieh.control.commands.base.AbstractCommand;
-import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.control.devices.CachedDevice;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.paulmann.features.FeatureIdent;
 
 public class ShowDevicesCommand extends AbstractCommand {
 
@@ -17,13 +20,22 @@ public class ShowDevicesCommand extends AbstractCommand {
     public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
         ShellFormatter formatter = new ShellFormatter(_terminal);
         List<String> resultText = new ArrayList<>();
-        if (PaulmannDeviceController.getInstance().getDevices().isEmpty()) {
+        List<CachedDevice> entries = DeviceCache.getInstance().getEntries();
+        if (entries.isEmpty()) {
             return printError(formatter, "No suitable devices found.");
         }
 
-        for (AbstractPaulmannDevice dev : PaulmannDeviceController.getInstance().getDevices().values()) {
-            resultText.add("\tMAC: " + dev.getDevice().getAddress());
-            resultText.add("\t" + dev.toString());
+        long now = System.currentTimeMillis();
+        for (CachedDevice dev : entries) {
+            List<String> features = new ArrayList<>();
+            for (FeatureIdent feature : dev.getFeatures()) {
+                features.add(StringUtils.removeEnd(StringUtils.removeStart(feature.name(), "PAULMANN_"), "_FEATURE"));
+            }
+            resultText.add("\tMAC: " + dev.getMacAddress());
+            resultText.add("\t" + dev.getDevice().toString());
+            resultText.add("\tClass: " + dev.getDeviceClass() + ", Features: " + StringUtils.join(features, ", "));
+            resultText.add("\tRSSI: " + (dev.getRssi() == null ? "n/a" : dev.getRssi() + " dBm")
+                    + ", last seen: " + TimeUnit.MILLISECONDS.toSeconds(now - dev.getLastSeenMillis()) + " s ago");
         }
 
         return resultText.toArray(new String[]{});
@@ -0,0 +1,83 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.stats.CommandStatistics;
+import com.github.hypfvieh.control.stats.LatencySnapshot;
+
+public class StatsCommand extends AbstractCommand {
+
+    private static final String ROW_FORMAT = "%-20s %-18s %8s %8s %10s %10s %10s %10s";
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+        CommandStatistics statistics = CommandStatistics.getInstance();
+
+        String operation = _arguments == null || _arguments.isEmpty() ? "commands" : _arguments.get(0);
+
+        List<LatencySnapshot> snapshots;
+        if ("commands".equals(operation)) {
+            snapshots = statistics.getCommands();
+        } else if ("devices".equals(operation)) {
+            snapshots = statistics.getDevices();
+        } else if ("reset".equals(operation)) {
+            statistics.reset();
+            return printSuccess(formatter, "Statistics cleared");
+        } else {
+            return printError(formatter, "The operation has to be either 'commands', 'devices' or 'reset'");
+        }
+
+        if (snapshots.isEmpty()) {
+            return printSuccess(formatter, "No " + operation + " recorded so far");
+        }
+
+        List<String> result = new ArrayList<>();
+        result.add("");
+        result.add(String.format(ROW_FORMAT, "Command", "Device", "count", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (LatencySnapshot snapshot : snapshots) {
+            result.add(String.format(ROW_FORMAT, snapshot.getCommand(), snapshot.getDevice() == null ? "-" : snapshot.getDevice(),
+                    snapshot.getCount(), snapshot.getErrors(), formatMillis(snapshot.getP50Millis()), formatMillis(snapshot.getP95Millis()),
+                    formatMillis(snapshot.getP99Millis()), formatMillis(snapshot.getMaxMillis())));
+        }
+        result.add("");
+        result.add("Total: " + statistics.getTotalCount() + " commands, " + statistics.getErrorCount() + " failed");
+        result.add("");
+        return result.toArray(new String[0]);
+    }
+
+    private static String formatMillis(double _millis) {
+        return String.format("%.1f", _millis);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "stats";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        CommandArg operation = new CommandArg("operation", false, true, () -> {
+            return Arrays.asList(new ArgWithDescription("commands", "Show latencies per command"),
+                    new ArgWithDescription("devices", "Show latencies per command and device"),
+                    new ArgWithDescription("reset", "Clear all statistics"));
+        });
+        return Arrays.asList(operation);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Show count, errors and latencies (p50/p95/p99/max) of all executed commands, "
+                + "per command or per command and device. Also available by JMX as " + CommandStatistics.OBJECT_NAME + ".";
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.jline.terminal.Terminal;
+import org.jline.terminal.Terminal.Signal;
+import org.jline.terminal.Terminal.SignalHandler;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.jobs.Job;
+import com.github.hypfvieh.control.jobs.JobManager;
+import com.github.hypfvieh.util.TypeUtil;
+
+public class WaitJobCommand extends AbstractCommand {
+
+    /** Timeout if none is given. */
+    static final int DEFAULT_TIMEOUT_SECONDS = 300;
+    static final int MAX_TIMEOUT_SECONDS     = 3600;
+
+    private final Function<Terminal, JobManager> jobManagers;
+
+    /**
+     * @param _jobManagers returns the job manager of the session using the given terminal, null if there is none
+     */
+    public WaitJobCommand(Function<Terminal, JobManager> _jobManagers) {
+        jobManagers = _jobManagers;
+    }
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        ShellFormatter formatter = new ShellFormatter(_terminal);
+
+        if (_arguments == null || _arguments.isEmpty()) {
+            return printError(formatter, "Job id is required!");
+        }
+
+        JobManager jobManager = jobManagers.apply(_terminal);
+        if (jobManager == null) {
+            return printError(formatter, JobsCommand.NO_SESSION_MSG);
+        }
+
+        Job job = jobManager.getJob(TypeUtil.defaultIfNotInteger(_arguments.get(0), -1));
+        if (job == null) {
+            return printError(formatter, "No job with id " + _arguments.get(0) + " found.");
+        }
+
+        int timeout = _arguments.size() >= 2 ? TypeUtil.defaultIfNotInteger(_arguments.get(1), -1) : DEFAULT_TIMEOUT_SECONDS;
+        if (timeout < 1 || timeout > MAX_TIMEOUT_SECONDS) {
+            return printError(formatter, "Timeout has to be between 1 and " + MAX_TIMEOUT_SECONDS + " seconds");
+        }
+
+        // the shell ignores CTRL+C, while waiting it interrupts the wait
+        Thread waitingThread = Thread.currentThread();
+        AtomicBoolean waiting = new AtomicBoolean(true);
+        AtomicBoolean stopped = new AtomicBoolean();
+        SignalHandler previousHandler = _terminal.handle(Signal.INT, signal -> {
+            synchronized (waiting) {
+                if (waiting.get()) {
+                    stopped.set(true);
+                    waitingThread.interrupt();
+                }
+            }
+        });
+        try {
+            if (!job.await(TimeUnit.SECONDS.toMillis(timeout))) {
+                return printError(formatter, "Job " + job.getId() + " did not finish within " + timeout + " seconds");
+            }
+        } catch (InterruptedException _ex) {
+            if (!stopped.get()) {
+                Thread.currentThread().interrupt();
+            }
+            return printError(formatter, (stopped.get() ? "Stopped" : "Interrupted") + " waiting for job " + job.getId());
+        } finally {
+            synchronized (waiting) {
+                waiting.set(false);
+            }
+            _terminal.handle(Signal.INT, previousHandler);
+            if (stopped.get()) {
+                // CTRL+C must not interrupt the next command or the line reader
+                Thread.interrupted();
+            }
+        }
+
+        if (job.getState() == Job.State.DONE) {
+            return printSuccess(formatter, job.toString());
+        }
+        return printError(formatter, job.toString());
+    }
+
+    @Override
+    public String getCommandName() {
+        return "wait";
+    }
+
+    @Override
+    public List<CommandArg> getCommandArgs() {
+        return Arrays.asList(new CommandArg("jobId", true), new CommandArg("timeoutInSeconds", false));
+    }
+
+    @Override
+    public String getDescription() {
+        return "Wait until the given background job has finished. Waits at most " + DEFAULT_TIMEOUT_SECONDS
+                + " seconds if no timeout is given, CTRL+C stops waiting.";
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.github.hypfvieh.control.commands;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.terminal.Terminal;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.commands.base.AbstractCommand;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
+import com.github.hypfvieh.control.devices.DeviceWriteQueue;
+import com.github.hypfvieh.control.devices.DeviceWriteQueue.Statistics;
+
+public class WriteQueueCommand extends AbstractCommand {
+
+    @Override
+    public String[] execute(List<String> _arguments, Terminal _terminal) throws InterruptedIOException {
+        List<Statistics> statistics = DeviceWriteQueue.getInstance().getStatistics();
+        if (statistics.isEmpty()) {
+            return printSuccess(new ShellFormatter(_terminal), "No writes to devices so far");
+        }
+
+        List<String> result = new ArrayList<>();
+        result.add("");
+        result.add(String.format("%-20s %10s %10s %10s", "MAC", "executed", "dropped", "pending"));
+        for (Statistics stat : statistics) {
+            result.add(String.format("%-20s %10d %10d %10d", stat.getMacAddress(), stat.getExecuted(), stat.getDropped(), stat.getPending()));
+        }
+        result.add("");
+        result.add("Dropped writes (replaced by newer writes): " + DeviceWriteQueue.getInstance().getDroppedWrites());
+        result.add("Skipped writes (device already in requested state): " + DeviceStateMirror.getInstance().getSuppressedWrites());
+        result.add("");
+        return result.toArray(new String[0]);
+    }
+
+    @Override
+    public String getCommandName() {
+        return "writeQueue";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Show the number of executed, dropped (replaced by a newer write) and pending writes per device "
+                + "and the number of writes skipped because the device already was in the requested state.";
+    }
+
+}
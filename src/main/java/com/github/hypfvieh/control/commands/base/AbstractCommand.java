@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.devices.DeviceSelector;
 import com.github.hypfvieh.util.StringUtil;
 
 public abstract class AbstractCommand implements ICommand {
@@ -20,7 +21,7 @@ public abstract class AbstractCommand implements ICommand {
     protected static final int    HDR_IDX_LEN    = 3;
     protected static final int    HDR_SPACER_LEN = HDR_SPACER.length();
 
-    protected static final String MATCH_ALL  = "all";
+    protected static final String MATCH_ALL  = DeviceSelector.MATCH_ALL;
 
     //CHECKSTYLE:OFF
     protected final Logger logger = LoggerFactory.getLogger(getClass());
@@ -57,6 +58,7 @@ public abstract class AbstractCommand implements ICommand {
     }
 
     protected String[] printError(ShellFormatter _formatter, String _msg) {
+        CommandOutcome.markFailed();
         AttributedStringBuilder sb = new AttributedStringBuilder();
 
         sb.style(AttributedStyle.BOLD.foreground(AttributedStyle.RED));
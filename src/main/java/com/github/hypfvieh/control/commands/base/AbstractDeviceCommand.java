@@ -0,0 +1,236 @@
+package com.github.hypfvieh.control.commands.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import org.jline.terminal.Terminal;
+import org.jline.utils.AttributedStringBuilder;
+import org.jline.utils.AttributedStyle;
+
+import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
+import com.github.hypfvieh.control.devices.DeviceResult;
+import com.github.hypfvieh.control.devices.DeviceSelector;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
+import com.github.hypfvieh.control.devices.DeviceWriteQueue;
+import com.github.hypfvieh.control.devices.ParallelDeviceExecutor;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+import com.github.hypfvieh.control.jline3.ArgWithDescription;
+import com.github.hypfvieh.control.stats.CommandStatistics;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+
+/**
+ * Base class for commands acting on one or more devices.<br>
+ * The device is selected by the first argument, which can be a MAC address, 'all', a comma-separated
+ * list of MAC addresses or a glob pattern (see {@link DeviceSelector}).
+ * Actions on multiple devices are executed in parallel.
+ */
+public abstract class AbstractDeviceCommand extends AbstractCommand {
+
+    private final ParallelDeviceExecutor executor;
+
+    protected AbstractDeviceCommand() {
+        this(new ParallelDeviceExecutor());
+    }
+
+    /**
+     * @param _executor executes the actions on multiple devices
+     */
+    protected AbstractDeviceCommand(ParallelDeviceExecutor _executor) {
+        executor = _executor;
+    }
+
+    /**
+     * Execute the given action on all devices matching the given selector.<br>
+     * If the selector is a single MAC address, the result is printed like any other command result.
+     * Otherwise one line per device (including the time the action took) and a summary is printed.
+     *
+     * @param _formatter formatter
+     * @param _selector device selector
+     * @param _action action to execute on each selected device
+     * @return output
+     */
+    protected String[] executeOnDevices(ShellFormatter _formatter, String _selector, Function<AbstractPaulmannDevice, DeviceResult> _action) {
+        Map<String, AbstractPaulmannDevice> selected = selectDevices(_selector);
+
+        if (!DeviceSelector.isGroup(_selector)) {
+            if (selected.isEmpty()) {
+                return printError(_formatter, "No device with MAC address " + _selector + " found.");
+            }
+            DeviceResult result = instrument(_action).apply(selected.values().iterator().next());
+            return result.isSuccess() ? printSuccess(_formatter, result.getMessage()) : printError(_formatter, result.getMessage());
+        }
+
+        if (selected.isEmpty()) {
+            return printError(_formatter, "No device matches " + _selector);
+        }
+
+        return executeOnDevices(_formatter, selected, _action, null);
+    }
+
+    /**
+     * Execute the given action on all given devices in parallel.<br>
+     * One line per device (including the time the action took) and a summary is returned.
+     * If a terminal is given, each result is also printed to the terminal as soon as the device is done,
+     * which gives a live progress report on long running operations.
+     *
+     * @param _formatter formatter
+     * @param _devices devices to process (MAC address to device)
+     * @param _action action to execute on each device
+     * @param _progressTerminal terminal to print progress to, may be null
+     * @return output
+     */
+    protected String[] executeOnDevices(ShellFormatter _formatter, Map<String, AbstractPaulmannDevice> _devices,
+            Function<AbstractPaulmannDevice, DeviceResult> _action, Terminal _progressTerminal) {
+
+        Consumer<DeviceResult> progress = null;
+        if (_progressTerminal != null) {
+            AtomicInteger done = new AtomicInteger();
+            progress = r -> {
+                _progressTerminal.writer().println(String.format("[%d/%d] ", done.incrementAndGet(), _devices.size()) + formatResult(_formatter, r));
+                _progressTerminal.writer().flush();
+            };
+        }
+
+        long start = System.nanoTime();
+        List<DeviceResult> results = executor.execute(_devices, instrument(_action), progress);
+        long elapsed = (System.nanoTime() - start) / 1000000L;
+
+        List<String> text = new ArrayList<>();
+        text.add("");
+        int success = 0;
+        for (DeviceResult result : results) {
+            // already printed as progress
+            if (_progressTerminal == null) {
+                text.add(formatResult(_formatter, result));
+            }
+            if (result.isSuccess()) {
+                success++;
+            }
+        }
+        if (success < results.size()) {
+            CommandOutcome.markFailed();
+        }
+        if (_progressTerminal == null) {
+            text.add("");
+        }
+        text.add(success + " of " + results.size() + " devices succeeded in " + elapsed + " ms");
+        text.add("");
+
+        return text.toArray(new String[0]);
+    }
+
+    /**
+     * Wraps the given action to record its latency per device in the {@link CommandStatistics}.
+     *
+     * @param _action action
+     * @return instrumented action
+     */
+    private Function<AbstractPaulmannDevice, DeviceResult> instrument(Function<AbstractPaulmannDevice, DeviceResult> _action) {
+        return device -> {
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                DeviceResult result = _action.apply(device);
+                success = result.isSuccess();
+                return result;
+            } finally {
+                CommandStatistics.getInstance().recordDevice(getCommandName(), device.getDevice().getAddress(), System.nanoTime() - start, success);
+            }
+        };
+    }
+
+    private static String formatResult(ShellFormatter _formatter, DeviceResult _result) {
+        AttributedStringBuilder sb = new AttributedStringBuilder();
+        sb.style(AttributedStyle.DEFAULT.foreground(_result.isSuccess() ? AttributedStyle.GREEN : AttributedStyle.RED));
+        sb.append(_result.toString());
+        return _formatter.print(sb);
+    }
+
+    /**
+     * Write to the device using the {@link DeviceWriteQueue} and wait for the result.<br>
+     * Pending writes with the same key are replaced by this write. The write is skipped if the
+     * {@link DeviceStateMirror} knows that the device is already in the requested state.
+     * The connection is taken from the {@link DeviceConnectionManager}.
+     *
+     * @param _device device
+     * @param _key state key (see {@link DeviceStateMirror})
+     * @param _value value written
+     * @param _write write operation
+     * @return true if the write (or a newer write replacing it) was successful or skipped
+     */
+    protected static boolean queueWrite(AbstractPaulmannDevice _device, String _key, Object _value, BooleanSupplier _write) {
+        String mac = _device.getDevice().getAddress();
+        try {
+            return DeviceWriteQueue.getInstance().write(mac, _key,
+                    () -> DeviceStateMirror.getInstance().writeIfChanged(mac, _key, _value,
+                            () -> DeviceConnectionManager.getInstance().execute(_device, () -> traced("write", mac, _key, _write))));
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Execute the given bluetooth operation and record it as flight recorder event.
+     *
+     * @param _operation operation (e.g. read, write, authenticate)
+     * @param _macAddress MAC address of the device
+     * @param _feature feature or state key
+     * @param _call operation to execute
+     * @return result of the operation
+     */
+    protected static boolean traced(String _operation, String _macAddress, String _feature, BooleanSupplier _call) {
+        Trace trace = FlightEvents.bluetooth(_operation, _macAddress, _feature);
+        boolean success = false;
+        try {
+            success = _call.getAsBoolean();
+            return success;
+        } finally {
+            trace.end(success);
+        }
+    }
+
+    /**
+     * Select all known devices matching the given selector.
+     *
+     * @param _selector device selector
+     * @return matching devices (MAC address to device), maybe empty, never null
+     */
+    protected static Map<String, AbstractPaulmannDevice> selectDevices(String _selector) {
+        return DeviceSelector.select(_selector, DeviceCache.getInstance().getDevices());
+    }
+
+    /**
+     * Creates a required device selector argument offering all known MAC addresses and 'all'.
+     *
+     * @return argument
+     */
+    protected static CommandArg createDeviceArg() {
+        return createDeviceArg(true);
+    }
+
+    /**
+     * Creates a device selector argument offering all known MAC addresses and 'all'.
+     *
+     * @param _required false if the argument is only needed for some operations of the command
+     * @return argument
+     */
+    protected static CommandArg createDeviceArg(boolean _required) {
+        return new CommandArg("deviceMacAddress", _required, false, () -> {
+            List<ArgWithDescription> args = new ArrayList<>();
+            args.add(new ArgWithDescription(MATCH_ALL, "All devices"));
+            for (AbstractPaulmannDevice dev : DeviceCache.getInstance().getDevices().values()) {
+                args.add(new ArgWithDescription(dev.getDevice().getAddress(), dev.getDevice().getName()));
+            }
+            return args;
+        });
+    }
+}
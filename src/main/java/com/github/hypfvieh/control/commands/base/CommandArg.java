@@ -4,15 +4,47 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.github.hypfvieh.control.jline3.ArgWithDescription;
 
 /**
- * Specify arguments for the command line.
+ * Specify arguments for the command line.<br>
+ * Values of arguments which are not generated once are cached for {@link #REFRESH_INTERVAL_MILLIS}.
+ * The cache is refreshed in background, callers always get the cached (maybe stale) values and are never
+ * blocked by the generator (which usually calls D-Bus).
  */
 public class CommandArg {
     static final List<CommandArg> NO_ARGS = new ArrayList<>();
+
+    /** Time after which generated argument values are refreshed. */
+    public static final long REFRESH_INTERVAL_MILLIS = 30000L;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommandArg.class);
+
+    /** Incremented on every invalidation, cached values of older generations are outdated. */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /** All arguments which have generated values, used for refreshing them on invalidation. */
+    private static final Set<CommandArg> GENERATED_ARGS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "CommandArgRefresh");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     private final String argName;
     private final boolean required;
@@ -20,7 +52,13 @@ public class CommandArg {
     
     private final Supplier<List<ArgWithDescription>> argumentGenerator;
 
+    private final Function<List<String>, ValueRange> rangeProvider;
+
     private final List<ArgWithDescription> cachedResults = new ArrayList<>();
+    private volatile boolean generated;
+
+    private volatile GeneratedValues generatedValues;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
     
     /**
      * 
@@ -35,6 +73,26 @@ public class CommandArg {
         required = _required;
         generateOnce = _generateOnce;
         argumentGenerator = _generator;        
+        rangeProvider = null;
+    }
+
+    /**
+     * Creates a numeric argument with a range of allowed values.<br>
+     * Possible values are not generated in advance, completion only creates the values matching the typed prefix.
+     *
+     * @param _argName Name of the argument
+     * @param _required argument is required
+     * @param _rangeProvider function providing the allowed range, receives all arguments given before this argument,
+     *          may return null if the range is unknown (e.g. unknown device)
+     */
+    public CommandArg(String _argName, boolean _required, Function<List<String>, ValueRange> _rangeProvider) {
+        Objects.requireNonNull(_argName);
+        Objects.requireNonNull(_rangeProvider);
+        argName = _argName;
+        required = _required;
+        generateOnce = true;
+        argumentGenerator = null;
+        rangeProvider = _rangeProvider;
     }
     
     public CommandArg(String _argName, boolean _required) {
@@ -66,7 +124,29 @@ public class CommandArg {
     }
 
     /**
-     * Returns a list with all supported argument values.
+     * Is this a numeric argument with a range of allowed values.
+     * @return true if argument is range based, false otherwise
+     */
+    public boolean isRange() {
+        return rangeProvider != null;
+    }
+
+    /**
+     * Returns the range of allowed values for a range based argument.
+     * @param _previousArgs all arguments given before this argument
+     * @return range or null if this is no range based argument or range is unknown
+     */
+    public ValueRange getValueRange(List<String> _previousArgs) {
+        return rangeProvider == null ? null : rangeProvider.apply(_previousArgs);
+    }
+
+    /**
+     * Returns a list with all supported argument values.<br>
+     * Range based arguments will always return an empty list.<br>
+     * If the values are not generated once, the cached values are returned and a background refresh is started
+     * if they are older than {@link #REFRESH_INTERVAL_MILLIS} or were invalidated.
+     * Until the first refresh is done, an empty list is returned.
+     *
      * @return List, maybe empty, never null
      */
     public List<ArgWithDescription> getArguments() {
@@ -74,12 +154,66 @@ public class CommandArg {
         if (argumentGenerator == null) {
             return Collections.unmodifiableList(cachedResults);
         }
-        if (isGenerateOnce() && cachedResults.isEmpty()) {
-            List<ArgWithDescription> generatedResults = argumentGenerator.get();
-            cachedResults.addAll(generatedResults);
+        if (isGenerateOnce()) {
+            synchronized (cachedResults) {
+                if (!generated) {
+                    List<ArgWithDescription> generatedResults = argumentGenerator.get();
+                    if (generatedResults != null) {
+                        cachedResults.addAll(generatedResults);
+                    }
+                    generated = true;
+                }
+            }
             return Collections.unmodifiableList(cachedResults);
-        } else {
-            return Collections.unmodifiableList(argumentGenerator.get());
+        }
+
+        GeneratedValues values = generatedValues;
+        if (values == null || values.isOutdated()) {
+            refreshAsync();
+        }
+        return values == null ? Collections.emptyList() : values.values;
+    }
+
+    /**
+     * Start a background refresh of the generated values, if no refresh is running already.
+     */
+    private void refreshAsync() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        GENERATED_ARGS.add(this);
+        long generation = GENERATION.get();
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    List<ArgWithDescription> result = argumentGenerator.get();
+                    generatedValues = new GeneratedValues(result == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(result)), generation);
+                } catch (RuntimeException _ex) {
+                    LOGGER.debug("Could not generate values for argument {}", argName, _ex);
+                    // keep the old values, try again after the refresh interval
+                    GeneratedValues old = generatedValues;
+                    generatedValues = new GeneratedValues(old == null ? Collections.emptyList() : old.values, generation);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException _ex) {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Marks all generated argument values as outdated and refreshes them in background.<br>
+     * Should be called whenever the source of generated values has changed (e.g. after scanning for devices).
+     */
+    public static void invalidateGeneratedArguments() {
+        GENERATION.incrementAndGet();
+        List<CommandArg> args;
+        synchronized (GENERATED_ARGS) {
+            args = new ArrayList<>(GENERATED_ARGS);
+        }
+        for (CommandArg arg : args) {
+            arg.refreshAsync();
         }
     }
 
@@ -92,6 +226,24 @@ public class CommandArg {
         
         return String.format(format, argName);
     }
-    
-    
+
+    /**
+     * Generated values and the time they were created.
+     */
+    private static final class GeneratedValues {
+        private final List<ArgWithDescription> values;
+        private final long                     createdNanos = System.nanoTime();
+        private final long                     generation;
+
+        GeneratedValues(List<ArgWithDescription> _values, long _generation) {
+            values = _values;
+            generation = _generation;
+        }
+
+        boolean isOutdated() {
+            return generation != GENERATION.get()
+                    || System.nanoTime() - createdNanos > TimeUnit.MILLISECONDS.toNanos(REFRESH_INTERVAL_MILLIS);
+        }
+    }
+
 }
@@ -0,0 +1,39 @@
+package com.github.hypfvieh.control.commands.base;
+
+/**
+ * Tracks whether the command currently executed on this thread reported an error.<br>
+ * Commands only return their output as text, this allows callers (e.g. batch mode) to
+ * distinguish successful from failed executions.
+ */
+public final class CommandOutcome {
+
+    private static final ThreadLocal<Boolean> FAILED = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    /**
+     * Hidden utility constructor.
+     */
+    private CommandOutcome() {
+    }
+
+    /**
+     * Reset the outcome, called before a command is executed.
+     */
+    public static void reset() {
+        FAILED.set(Boolean.FALSE);
+    }
+
+    /**
+     * Mark the current execution as failed.
+     */
+    public static void markFailed() {
+        FAILED.set(Boolean.TRUE);
+    }
+
+    /**
+     * Did the current execution fail.
+     * @return true if failed
+     */
+    public static boolean isFailed() {
+        return FAILED.get();
+    }
+}
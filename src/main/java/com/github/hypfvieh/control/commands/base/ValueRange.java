@@ -0,0 +1,39 @@
+package com.github.hypfvieh.control.commands.base;
+
+/**
+ * Inclusive range of allowed numeric argument values.
+ */
+public class ValueRange {
+    private final int min;
+    private final int max;
+
+    public ValueRange(int _min, int _max) {
+        if (_min > _max) {
+            throw new IllegalArgumentException("Minimum " + _min + " is greater than maximum " + _max);
+        }
+        min = _min;
+        max = _max;
+    }
+
+    public int getMin() {
+        return min;
+    }
+
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Checks if the given value is inside of this range.
+     * @param _value value to check
+     * @return true if value is between min and max (both inclusive)
+     */
+    public boolean contains(int _value) {
+        return _value >= min && _value <= max;
+    }
+
+    @Override
+    public String toString() {
+        return min + "-" + max;
+    }
+}
@@ -7,12 +7,14 @@ import org.slf4j.LoggerFactory;
 
 import com.github.hypfvieh.bluetooth.DeviceManager;
 import com.github.hypfvieh.control.ShellFormatter;
+import com.github.hypfvieh.control.devices.DeviceConnectionManager;
 
 public class ShellDeInitializeCommand extends AbstractDeInitializationCommand {
 
     @Override
     protected String[] execute(Terminal _terminal) throws InterruptedIOException {
         try {
+            DeviceConnectionManager.getInstance().closeAll();
             DeviceManager.getInstance().closeConnection();
             return printSuccess(new ShellFormatter(_terminal), "Closed bluez session");
         } catch (Exception _ex) {
@@ -0,0 +1,110 @@
+package com.github.hypfvieh.control.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Thin client sending command lines to a running {@link DaemonServer}.
+ */
+public class DaemonClient implements Closeable {
+    /** Prefix of comment lines in scripts. */
+    private static final String  COMMENT_PREFIX = "#";
+
+    private final Socket         socket;
+    private final BufferedReader reader;
+    private final BufferedWriter writer;
+    private boolean              sessionClosed;
+
+    /**
+     * Connect to the daemon on the loopback interface.
+     *
+     * @param _port port of the daemon
+     * @param _tokenFile token file written by the daemon
+     * @throws IOException if the daemon is not running or the token could not be read
+     */
+    public DaemonClient(int _port, Path _tokenFile) throws IOException {
+        String token = DaemonProtocol.readToken(_tokenFile);
+        socket = new Socket(InetAddress.getLoopbackAddress(), _port);
+        reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        writer.write(token);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Execute the given command line on the daemon.<br>
+     * Output of successful commands is written to the output stream, output of failed commands to the error stream.
+     *
+     * @param _line command line
+     * @param _outStream output stream
+     * @param _errStream error stream
+     * @return exit code of the command
+     * @throws IOException if the connection to the daemon failed
+     */
+    public int execute(String _line, PrintStream _outStream, PrintStream _errStream) throws IOException {
+        writer.write(StringUtils.replaceChars(_line, "\r\n", "  "));
+        writer.newLine();
+        writer.flush();
+
+        StringBuilder output = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(DaemonProtocol.END_OF_RESPONSE)) {
+                sessionClosed = line.endsWith(DaemonProtocol.SESSION_CLOSED);
+                int exitCode = Integer.parseInt(StringUtils.removeEnd(line.substring(DaemonProtocol.END_OF_RESPONSE.length()), DaemonProtocol.SESSION_CLOSED));
+                PrintStream stream = exitCode == 0 ? _outStream : _errStream;
+                stream.print(output);
+                stream.flush();
+                return exitCode;
+            }
+            output.append(line).append(System.lineSeparator());
+        }
+        throw new IOException("Connection closed by daemon (invalid token?)");
+    }
+
+    /**
+     * Execute all lines read from the given reader on the daemon.<br>
+     * Blank lines and lines starting with '#' are ignored. Failing lines do not stop the script,
+     * the highest exit code of all lines is returned. The 'exit' command stops the script.
+     *
+     * @param _reader reader to read the script from
+     * @param _outStream output stream
+     * @param _errStream error stream
+     * @return highest exit code of all executed lines (0 if all lines were successful)
+     * @throws IOException if reading the script or the connection to the daemon failed
+     */
+    public int runScript(BufferedReader _reader, PrintStream _outStream, PrintStream _errStream) throws IOException {
+        int exitCode = 0;
+        int lineNo = 0;
+        String line;
+        while (!sessionClosed && (line = _reader.readLine()) != null) {
+            lineNo++;
+            if (StringUtils.isBlank(line) || line.trim().startsWith(COMMENT_PREFIX)) {
+                continue;
+            }
+            int lineExitCode = execute(line, _outStream, _errStream);
+            if (lineExitCode != 0) {
+                _errStream.println("Line " + lineNo + " failed: " + line.trim());
+                exitCode = Math.max(exitCode, lineExitCode);
+            }
+        }
+        return exitCode;
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.hypfvieh.control.daemon;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.List;
+
+/**
+ * Line based protocol used between daemon and client.<br>
+ * The client sends the token of the daemon as first line, followed by one command line per request.
+ * The daemon answers each request with the output lines of the command followed by a line
+ * starting with {@link #END_OF_RESPONSE} and the exit code of the command. If the daemon closes the session
+ * (exit command), {@link #SESSION_CLOSED} is appended to this line.<br>
+ * The daemon only listens on the loopback interface. The token is created on every start of the daemon and stored in a file
+ * which is only readable by the user running the daemon, so only this user is able to send commands.
+ */
+public final class DaemonProtocol {
+    public static final String  PORT_PROPERTY       = "paulmann.daemon.port";
+    public static final int     DEFAULT_PORT        = 47110;
+
+    public static final String  TOKEN_FILE_PROPERTY = "paulmann.daemon.tokenFile";
+
+    /** Marks the end of a response, followed by the exit code. */
+    public static final String  END_OF_RESPONSE     = "\u0004";
+
+    /** Appended to the end of response line if the daemon closes the session. */
+    public static final String  SESSION_CLOSED      = " closed";
+
+    private static final int    TOKEN_BYTES         = 32;
+
+    /**
+     * Hidden utility constructor.
+     */
+    private DaemonProtocol() {
+    }
+
+    public static int getPort() {
+        return Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT);
+    }
+
+    /**
+     * File containing the token of the running daemon.
+     * @return path
+     */
+    public static Path getTokenFile() {
+        String file = System.getProperty(TOKEN_FILE_PROPERTY);
+        if (file != null) {
+            return Paths.get(file);
+        }
+        return Paths.get(System.getProperty("user.home"), ".paulmann-bt-cmdline", "daemon.token");
+    }
+
+    /**
+     * Create a new random token and store it in the token file (readable by owner only, if supported by the file system).
+     *
+     * @param _tokenFile token file
+     * @return token
+     * @throws IOException if the token file could not be written
+     */
+    static String createToken(Path _tokenFile) throws IOException {
+        byte[] random = new byte[TOKEN_BYTES];
+        new SecureRandom().nextBytes(random);
+        StringBuilder token = new StringBuilder();
+        for (byte b : random) {
+            token.append(String.format("%02x", b));
+        }
+
+        if (_tokenFile.getParent() != null) {
+            Files.createDirectories(_tokenFile.getParent());
+        }
+        Files.deleteIfExists(_tokenFile);
+        try {
+            Files.createFile(_tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException _ex) {
+            Files.createFile(_tokenFile);
+        }
+        // terminated by a line feed, so the file can be sent as first line (e.g. 'cat daemon.token | nc ...')
+        Files.write(_tokenFile, (token + "\n").getBytes(StandardCharsets.UTF_8));
+        return token.toString();
+    }
+
+    /**
+     * Read the token of the running daemon.
+     *
+     * @param _tokenFile token file
+     * @return token
+     * @throws IOException if the token file could not be read
+     */
+    public static String readToken(Path _tokenFile) throws IOException {
+        List<String> lines = Files.readAllLines(_tokenFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Token file " + _tokenFile + " is empty");
+        }
+        return lines.get(0).trim();
+    }
+
+    /**
+     * Format the line marking the end of a response.
+     * @param _exitCode exit code of the command
+     * @param _closing true if the daemon closes the session after this response
+     * @return line
+     */
+    static String endOfResponse(int _exitCode, boolean _closing) {
+        return END_OF_RESPONSE + _exitCode + (_closing ? SESSION_CLOSED : "");
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.hypfvieh.control.daemon;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+import com.github.hypfvieh.control.CommandResult;
+
+/**
+ * Accepts commands from local clients (see {@link DaemonClient}) and executes them using the {@link CommandDispatcher}.<br>
+ * Each client is served by its own thread, so several clients can execute commands at the same time.
+ * At most {@value #MAX_CLIENTS_PROPERTY} clients (default {@value #DEFAULT_MAX_CLIENTS}) are served at the same time,
+ * further clients are rejected.
+ */
+public class DaemonServer implements Closeable {
+    public static final String      MAX_CLIENTS_PROPERTY = "paulmann.daemon.maxClients";
+    public static final int         DEFAULT_MAX_CLIENTS  = 8;
+
+    /** Clients have to send the token within this time, otherwise they would block a client thread forever. */
+    private static final int        TOKEN_TIMEOUT_MILLIS = 30000;
+    private static final int        MAX_TOKEN_LENGTH     = 256;
+
+    private final Logger            logger               = LoggerFactory.getLogger(getClass());
+
+    private final int               port;
+    private final Path              tokenFile;
+    private final CommandDispatcher dispatcher;
+    private final ExecutorService   clientExecutor;
+    private final Set<Socket>       clients              = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch    terminated           = new CountDownLatch(1);
+
+    private ServerSocket            serverSocket;
+    private String                  token;
+
+    public DaemonServer(int _port, Path _tokenFile, CommandDispatcher _dispatcher) {
+        port = _port;
+        tokenFile = _tokenFile;
+        dispatcher = _dispatcher;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        clientExecutor = new ThreadPoolExecutor(0, Math.max(1, Integer.getInteger(MAX_CLIENTS_PROPERTY, DEFAULT_MAX_CLIENTS)),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "DaemonClient-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Create the token file and start accepting clients on the loopback interface.
+     *
+     * @throws IOException if the port could not be opened or the token file could not be written
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Daemon already started");
+        }
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        token = DaemonProtocol.createToken(tokenFile);
+
+        Thread acceptThread = new Thread(this::acceptClients, "DaemonAccept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("Daemon listening on {}:{}", serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+    }
+
+    /**
+     * Blocks until the daemon is closed.
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    public void awaitTermination() throws InterruptedException {
+        terminated.await();
+    }
+
+    /**
+     * Read the token line sent by the client, reading at most {@value #MAX_TOKEN_LENGTH} characters.
+     *
+     * @param _reader reader
+     * @return token without line terminator or null on end of stream or if the line is too long
+     * @throws IOException if reading fails
+     */
+    private static String readToken(Reader _reader) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = _reader.read()) != -1) {
+            if (c == '\n') {
+                return line.toString().trim();
+            } else if (line.length() >= MAX_TOKEN_LENGTH) {
+                return null;
+            }
+            line.append((char) c);
+        }
+        return null;
+    }
+
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                try {
+                    clientExecutor.execute(() -> handleClient(client));
+                } catch (RejectedExecutionException _ex) {
+                    logger.warn("Too many clients, rejecting connection");
+                    client.close();
+                }
+            } catch (SocketException _ex) {
+                // server socket closed
+                break;
+            } catch (IOException _ex) {
+                logger.warn("Could not accept client connection", _ex);
+            }
+        }
+    }
+
+    private void handleClient(Socket _client) {
+        clients.add(_client);
+        try (Socket client = _client;
+                BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+
+            client.setSoTimeout(TOKEN_TIMEOUT_MILLIS);
+            String clientToken = readToken(reader);
+            client.setSoTimeout(0);
+            if (clientToken == null || !MessageDigest.isEqual(clientToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+                logger.warn("Client sent invalid token, closing connection");
+                return;
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                CommandResult result;
+                try {
+                    result = dispatcher.dispatch(line, null);
+                } catch (InterruptedIOException _ex) {
+                    // exit command only ends the client session
+                    writer.write(DaemonProtocol.endOfResponse(0, true));
+                    writer.newLine();
+                    writer.flush();
+                    break;
+                }
+                for (String output : result.getLines()) {
+                    writer.write(output);
+                    writer.newLine();
+                }
+                writer.write(DaemonProtocol.endOfResponse(result.getStatus().getExitCode(), false));
+                writer.newLine();
+                writer.flush();
+            }
+        } catch (IOException _ex) {
+            logger.debug("Client connection failed", _ex);
+        } finally {
+            clients.remove(_client);
+        }
+    }
+
+    /**
+     * Stop accepting clients, close all client connections and remove the token file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+            for (Socket client : clients) {
+                client.close();
+            }
+            clientExecutor.shutdownNow();
+            Files.deleteIfExists(tokenFile);
+        } finally {
+            terminated.countDown();
+        }
+    }
+}
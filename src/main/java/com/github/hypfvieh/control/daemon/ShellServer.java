@@ -0,0 +1,205 @@
+package com.github.hypfvieh.control.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jline.reader.EndOfFileException;
+import org.jline.reader.UserInterruptException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.EmbeddedShell;
+
+/**
+ * Accepts interactive shell sessions on the loopback interface.<br>
+ * Each session gets its own {@link EmbeddedShell} (with its own terminal) running on its own thread,
+ * while all sessions share the registered commands and the device layer.
+ * At most {@value #MAX_SESSIONS_PROPERTY} sessions (default {@value #DEFAULT_MAX_SESSIONS}) are served at the same time.<br>
+ * Like the daemon control channel, a session has to send the daemon token first, terminated by a line feed
+ * or carriage return (sent by the enter key of terminals in raw mode).
+ * As the remote side is treated as raw terminal, clients should disable local echo and line buffering
+ * (e.g. <code>stty raw -echo; nc localhost 47111</code>).
+ */
+public class ShellServer implements Closeable {
+    public static final String     PORT_PROPERTY         = "paulmann.shell.port";
+    public static final String     MAX_SESSIONS_PROPERTY = "paulmann.shell.maxSessions";
+    public static final int        DEFAULT_MAX_SESSIONS  = 256;
+
+    /** Time a client has to send the token. */
+    private static final int       TOKEN_TIMEOUT_MILLIS  = 30000;
+    private static final int       MAX_TOKEN_LENGTH      = 256;
+
+    private final Logger           logger                = LoggerFactory.getLogger(getClass());
+
+    private final int              port;
+    private final Path             tokenFile;
+    private final String           prompt;
+    private final ExecutorService  sessionExecutor;
+    private final Set<Socket>      sessions              = ConcurrentHashMap.newKeySet();
+
+    private ServerSocket           serverSocket;
+    private String                 token;
+
+    /**
+     * @param _port port to listen on (loopback only)
+     * @param _tokenFile token file of the running daemon, clients have to send this token before the session starts
+     * @param _prompt prompt shown in each session
+     */
+    public ShellServer(int _port, Path _tokenFile, String _prompt) {
+        port = _port;
+        tokenFile = _tokenFile;
+        prompt = _prompt;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        sessionExecutor = new ThreadPoolExecutor(0, Math.max(1, Integer.getInteger(MAX_SESSIONS_PROPERTY, DEFAULT_MAX_SESSIONS)),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "ShellSession-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Start accepting sessions. The daemon has to be started before, as its token is used.
+     * @throws IOException if the port could not be opened or the token could not be read
+     */
+    public synchronized void start() throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("Shell server already started");
+        }
+        token = DaemonProtocol.readToken(tokenFile);
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+
+        Thread acceptThread = new Thread(this::acceptSessions, "ShellAccept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        logger.info("Shell server listening on {}:{}", serverSocket.getInetAddress().getHostAddress(), serverSocket.getLocalPort());
+    }
+
+    /**
+     * Number of currently connected sessions.
+     * @return count
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    private void acceptSessions() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket client = serverSocket.accept();
+                try {
+                    sessionExecutor.execute(() -> runSession(client));
+                } catch (RejectedExecutionException _ex) {
+                    logger.warn("Too many shell sessions, rejecting connection");
+                    writeQuietly(client, "Too many sessions, try again later\r\n");
+                    client.close();
+                }
+            } catch (SocketException _ex) {
+                // server socket closed
+                break;
+            } catch (IOException _ex) {
+                logger.warn("Could not accept shell session", _ex);
+            }
+        }
+    }
+
+    private void runSession(Socket _client) {
+        sessions.add(_client);
+        try (Socket client = _client) {
+            PushbackInputStream in = new PushbackInputStream(client.getInputStream());
+            OutputStream out = client.getOutputStream();
+
+            out.write("Token: ".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            client.setSoTimeout(TOKEN_TIMEOUT_MILLIS);
+            String clientToken = readLine(in);
+            client.setSoTimeout(0);
+            if (clientToken == null || !MessageDigest.isEqual(clientToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))) {
+                logger.warn("Shell session sent invalid token, closing connection");
+                out.write("Invalid token\r\n".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+
+            try (EmbeddedShell shell = new EmbeddedShell(in, out, out)) {
+                shell.initialize(null, null);
+                shell.start(prompt);
+            } catch (EndOfFileException | UserInterruptException _ex) {
+                // session terminated by CTRL+D/CTRL+C
+            }
+        } catch (IOException _ex) {
+            // InterruptedIOException is used by the exit command
+            logger.debug("Shell session ended", _ex);
+        } finally {
+            sessions.remove(_client);
+        }
+    }
+
+    /**
+     * Read a single line from the stream without buffering, so no input meant for the terminal is consumed.<br>
+     * The line may be terminated by '\n', '\r' or '\r\n'.
+     *
+     * @param _in input stream
+     * @return line without line terminator or null on end of stream or if the line is too long
+     * @throws IOException if reading fails
+     */
+    private static String readLine(PushbackInputStream _in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = _in.read()) != -1) {
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && _in.available() > 0) {
+                    int next = _in.read();
+                    if (next != '\n' && next != -1) {
+                        _in.unread(next);
+                    }
+                }
+                return new String(line.toByteArray(), StandardCharsets.UTF_8).trim();
+            } else if (line.size() >= MAX_TOKEN_LENGTH) {
+                return null;
+            }
+            line.write(b);
+        }
+        return null;
+    }
+
+    private void writeQuietly(Socket _client, String _message) {
+        try {
+            _client.getOutputStream().write(_message.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException _ex) {
+            logger.trace("Could not write to client", _ex);
+        }
+    }
+
+    /**
+     * Stop accepting sessions and close all open sessions.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Socket session : sessions) {
+            session.close();
+        }
+        sessionExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.paulmann.features.FeatureIdent;
+
+/**
+ * Immutable snapshot of a device stored in the {@link DeviceCache}.
+ */
+public final class CachedDevice {
+    private final String                 macAddress;
+    private final String                 name;
+    private final AbstractPaulmannDevice device;
+    private final String                 deviceClass;
+    private final Set<FeatureIdent>      features;
+    private final Short                  rssi;
+    private final long                   firstSeenMillis;
+    private final long                   lastSeenMillis;
+
+    CachedDevice(String _macAddress, String _name, AbstractPaulmannDevice _device, Set<FeatureIdent> _features,
+            Short _rssi, long _firstSeenMillis, long _lastSeenMillis) {
+        macAddress = _macAddress;
+        name = _name;
+        device = _device;
+        deviceClass = _device.getClass().getSimpleName();
+        features = _features;
+        rssi = _rssi;
+        firstSeenMillis = _firstSeenMillis;
+        lastSeenMillis = _lastSeenMillis;
+    }
+
+    /**
+     * Determine all features supported by the given device.
+     * @param _device device
+     * @return unmodifiable set, maybe empty
+     */
+    static Set<FeatureIdent> readFeatures(AbstractPaulmannDevice _device) {
+        Set<FeatureIdent> result = EnumSet.noneOf(FeatureIdent.class);
+        for (FeatureIdent ident : FeatureIdent.values()) {
+            if (_device.getFeature(ident) != null) {
+                result.add(ident);
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    public String getMacAddress() {
+        return macAddress;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public AbstractPaulmannDevice getDevice() {
+        return device;
+    }
+
+    /**
+     * Simple class name of the device implementation.
+     * @return String
+     */
+    public String getDeviceClass() {
+        return deviceClass;
+    }
+
+    public Set<FeatureIdent> getFeatures() {
+        return features;
+    }
+
+    public boolean hasFeature(FeatureIdent _feature) {
+        return features.contains(_feature);
+    }
+
+    /**
+     * Signal strength reported during the last discovery.
+     * @return RSSI in dBm, null if the device was not seen during the last discovery
+     */
+    public Short getRssi() {
+        return rssi;
+    }
+
+    public long getFirstSeenMillis() {
+        return firstSeenMillis;
+    }
+
+    /**
+     * Time the device was last seen during discovery (or added to the cache).
+     * @return time in millis since epoch
+     */
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + " [macAddress=" + macAddress + ", name=" + name + ", deviceClass=" + deviceClass
+                + ", features=" + features + ", rssi=" + rssi + ", lastSeenMillis=" + lastSeenMillis + "]";
+    }
+}
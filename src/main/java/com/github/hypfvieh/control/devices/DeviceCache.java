@@ -0,0 +1,177 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.PaulmannDeviceController;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+
+/**
+ * In-memory cache of all known devices, keyed by MAC address.<br>
+ * The cache is filled by scans (see {@link DiscoveryService}) and used by all commands and completers,
+ * so looking up devices does not require any D-Bus communication.
+ * Until the first scan, the cache is filled with the devices already known to the {@link PaulmannDeviceController}.
+ */
+public final class DeviceCache {
+    private static final DeviceCache                  INSTANCE = new DeviceCache();
+
+    private final Logger                              logger   = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, CachedDevice> entries  = new ConcurrentHashMap<>();
+    private volatile boolean                          populated;
+
+    private DeviceCache() {
+    }
+
+    public static DeviceCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns all cached devices sorted by MAC address.
+     * @return unmodifiable map of MAC address to device, maybe empty, never null
+     */
+    public Map<String, AbstractPaulmannDevice> getDevices() {
+        ensurePopulated();
+        Map<String, AbstractPaulmannDevice> result = new TreeMap<>();
+        for (CachedDevice entry : entries.values()) {
+            result.put(entry.getMacAddress(), entry.getDevice());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns all cached entries sorted by MAC address.
+     * @return List, maybe empty, never null
+     */
+    public List<CachedDevice> getEntries() {
+        ensurePopulated();
+        List<CachedDevice> result = new ArrayList<>(entries.values());
+        result.sort((a, b) -> a.getMacAddress().compareTo(b.getMacAddress()));
+        return result;
+    }
+
+    /**
+     * Returns the cached entry of the given MAC address.
+     * @param _macAddress MAC address
+     * @return entry or null if the device is unknown
+     */
+    public CachedDevice getEntry(String _macAddress) {
+        ensurePopulated();
+        return _macAddress == null ? null : entries.get(_macAddress);
+    }
+
+    /**
+     * Returns the device with the given MAC address.
+     * @param _macAddress MAC address
+     * @return device or null if the device is unknown
+     */
+    public AbstractPaulmannDevice getDevice(String _macAddress) {
+        CachedDevice entry = getEntry(_macAddress);
+        return entry == null ? null : entry.getDevice();
+    }
+
+    public boolean isEmpty() {
+        ensurePopulated();
+        return entries.isEmpty();
+    }
+
+    /**
+     * Update the cache with the devices known to the controller after a scan.<br>
+     * Devices reporting a signal strength were seen during the scan and get their last seen time updated.
+     * An explicit scan adds all devices returned by the controller, BlueZ clears the signal strength as soon as
+     * the discovery stops, so it cannot be used to tell which devices were found.<br>
+     * The background discovery only adds unknown devices reporting a signal strength (unless the cache is populated
+     * initially): the controller keeps reporting devices it once found, so evicted devices would be added again after every scan.
+     *
+     * @param _devices devices (MAC address to device)
+     * @param _explicitScan true if the devices were read after a scan requested by the user
+     * @return true if at least one device was added to the cache
+     */
+    public synchronized boolean update(Map<String, AbstractPaulmannDevice> _devices, boolean _explicitScan) {
+        boolean addAll = _explicitScan || !populated;
+        populated = true;
+        boolean added = false;
+        long now = System.currentTimeMillis();
+        for (Entry<String, AbstractPaulmannDevice> e : _devices.entrySet()) {
+            CachedDevice old = entries.get(e.getKey());
+            Short rssi = readRssi(e.getValue());
+            if (old == null && rssi == null && !addAll) {
+                // not seen during this background scan
+                continue;
+            }
+            long lastSeen = rssi != null || old == null ? now : old.getLastSeenMillis();
+            if (old == null || old.getDevice() != e.getValue()) {
+                entries.put(e.getKey(), new CachedDevice(e.getKey(), readName(e.getValue()), e.getValue(),
+                        CachedDevice.readFeatures(e.getValue()), rssi, old == null ? now : old.getFirstSeenMillis(), lastSeen));
+                added |= old == null;
+            } else {
+                entries.put(e.getKey(), new CachedDevice(e.getKey(), old.getName(), old.getDevice(), old.getFeatures(),
+                        rssi, old.getFirstSeenMillis(), lastSeen));
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Remove all devices which were not seen for the given time.
+     * @param _maxAgeMillis maximum age
+     * @return number of removed devices
+     */
+    public int evictOlderThan(long _maxAgeMillis) {
+        long limit = System.currentTimeMillis() - _maxAgeMillis;
+        int removed = 0;
+        for (CachedDevice entry : entries.values()) {
+            if (entry.getLastSeenMillis() < limit && entries.remove(entry.getMacAddress(), entry)) {
+                logger.debug("Evicted device {} last seen at {}", entry.getMacAddress(), entry.getLastSeenMillis());
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all devices, the cache will be populated from the controller again on next access.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        populated = false;
+    }
+
+    private void ensurePopulated() {
+        if (!populated) {
+            synchronized (this) {
+                if (!populated) {
+                    update(PaulmannDeviceController.getInstance().getDevices(), false);
+                }
+            }
+        }
+    }
+
+    private String readName(AbstractPaulmannDevice _device) {
+        try {
+            return _device.getDevice().getName();
+        } catch (RuntimeException _ex) {
+            logger.debug("Could not read name of device", _ex);
+            return null;
+        }
+    }
+
+    private Short readRssi(AbstractPaulmannDevice _device) {
+        try {
+            return _device.getDevice().getRssi();
+        } catch (RuntimeException _ex) {
+            logger.debug("Could not read RSSI of device", _ex);
+            return null;
+        }
+    }
+}
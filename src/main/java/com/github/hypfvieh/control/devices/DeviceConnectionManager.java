@@ -0,0 +1,482 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.PasswordManager;
+import com.github.hypfvieh.bluetooth.wrapper.BluetoothDevice;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+import com.github.hypfvieh.paulmann.features.DevicePasswordFeature;
+import com.github.hypfvieh.paulmann.features.FeatureIdent;
+
+/**
+ * Keeps devices connected and authenticated between commands, so consecutive operations on the same device
+ * re-use the GATT link instead of connecting and authenticating again.<br>
+ * At most {@value #MAX_CONNECTIONS_PROPERTY} devices (default {@value #DEFAULT_MAX_CONNECTIONS}, most adapters support
+ * 5 - 7 connections) are kept connected, the least recently used device is disconnected if another device is needed.
+ * Devices not used for {@value #IDLE_SECONDS_PROPERTY} seconds (default {@value #DEFAULT_IDLE_SECONDS}) are disconnected.
+ * Setting the maximum to 0 disables the pool, devices are then connected by the library on every operation.
+ * If all connected devices are in use, connecting another device waits up to {@value #WAIT_SECONDS_PROPERTY} seconds
+ * (default {@value #DEFAULT_WAIT_SECONDS}) for a device to become idle, the operation fails if none does.
+ * <p>
+ * Operations on the same device are serialized, devices in use are never disconnected.
+ */
+public final class DeviceConnectionManager {
+    public static final String                   MAX_CONNECTIONS_PROPERTY = "paulmann.connections.max";
+    public static final int                      DEFAULT_MAX_CONNECTIONS  = 5;
+    public static final String                   IDLE_SECONDS_PROPERTY    = "paulmann.connections.idleSeconds";
+    public static final int                      DEFAULT_IDLE_SECONDS     = 30;
+    public static final String                   WAIT_SECONDS_PROPERTY    = "paulmann.connections.waitSeconds";
+    public static final int                      DEFAULT_WAIT_SECONDS     = 10;
+    /** Device selector (see {@link DeviceSelector}) of devices connected on startup. */
+    public static final String                   WARMUP_PROPERTY          = "paulmann.connections.warmup";
+
+    private static final DeviceConnectionManager INSTANCE                 = new DeviceConnectionManager();
+
+    private final Logger                         logger                   = LoggerFactory.getLogger(getClass());
+
+    /** Connected devices in access order (least recently used first), guarded by this. */
+    private final LinkedHashMap<String, Connection> connections           = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentMap<String, ReentrantLock> locks              = new ConcurrentHashMap<>();
+    /** Number of devices being connected, counted as connections, guarded by this. */
+    private int                                  reserved;
+    /** Number of threads waiting for room to connect a device, guarded by this. */
+    private int                                  waiting;
+
+    private final int                            maxConnections;
+    private final long                           idleMillis;
+    private final long                           waitMillis;
+
+    private final AtomicLong                     reused                   = new AtomicLong();
+    private final AtomicLong                     established              = new AtomicLong();
+    private final AtomicLong                     evicted                  = new AtomicLong();
+    private final AtomicLong                     failed                   = new AtomicLong();
+
+    private final AtomicBoolean                  sweeperStarted           = new AtomicBoolean();
+    private final ScheduledExecutorService       sweeper                  = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "DeviceConnectionSweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DeviceConnectionManager() {
+        maxConnections = Math.max(0, Integer.getInteger(MAX_CONNECTIONS_PROPERTY, DEFAULT_MAX_CONNECTIONS));
+        idleMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Integer.getInteger(IDLE_SECONDS_PROPERTY, DEFAULT_IDLE_SECONDS)));
+        waitMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Integer.getInteger(WAIT_SECONDS_PROPERTY, DEFAULT_WAIT_SECONDS)));
+    }
+
+    public static DeviceConnectionManager getInstance() {
+        return INSTANCE;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public long getIdleSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(idleMillis);
+    }
+
+    /**
+     * Execute the given operation on the device.<br>
+     * The device is connected and authenticated first, if it is not already connected.
+     * If the operation fails, the device is disconnected, so the next operation starts with a new connection.
+     *
+     * @param _device device
+     * @param _operation operation, returns true on success
+     * @return false if the device could not be connected/authenticated or the operation failed
+     */
+    public boolean execute(AbstractPaulmannDevice _device, BooleanSupplier _operation) {
+        if (maxConnections <= 0) {
+            return _operation.getAsBoolean();
+        }
+        String mac = _device.getDevice().getAddress();
+        ReentrantLock lock = locks.computeIfAbsent(mac, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            if (!ensureConnected(mac, _device)) {
+                return false;
+            }
+            boolean success = false;
+            try {
+                success = _operation.getAsBoolean();
+            } finally {
+                if (success) {
+                    touch(mac);
+                } else {
+                    disconnect(mac);
+                }
+            }
+            return success;
+        } finally {
+            lock.unlock();
+            // the device can be disconnected now to make room for another one
+            signalWaiting();
+        }
+    }
+
+    /**
+     * Connect and authenticate the device, so the next operation does not have to wait for it.
+     *
+     * @param _device device
+     * @return true if the device is connected
+     */
+    public boolean warmUp(AbstractPaulmannDevice _device) {
+        return execute(_device, () -> true);
+    }
+
+    /**
+     * Connect and authenticate all devices matching the given selector in background.<br>
+     * At most {@link #getMaxConnections()} devices are connected.
+     *
+     * @param _selector device selector (see {@link DeviceSelector})
+     */
+    public void warmUpAsync(String _selector) {
+        Thread thread = new Thread(() -> {
+            Map<String, AbstractPaulmannDevice> devices = new LinkedHashMap<>();
+            for (Map.Entry<String, AbstractPaulmannDevice> entry : DeviceSelector.select(_selector, DeviceCache.getInstance().getDevices()).entrySet()) {
+                if (devices.size() >= maxConnections) {
+                    break;
+                }
+                devices.put(entry.getKey(), entry.getValue());
+            }
+            List<DeviceResult> results = new ParallelDeviceExecutor().execute(devices,
+                    d -> warmUp(d) ? DeviceResult.success("Connected") : DeviceResult.failure("Could not connect"));
+            logger.info("Connected {} of {} devices matching '{}'", results.stream().filter(DeviceResult::isSuccess).count(), results.size(), _selector);
+        }, "DeviceConnectionWarmUp");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private boolean ensureConnected(String _mac, AbstractPaulmannDevice _device) {
+        Connection connection;
+        synchronized (this) {
+            connection = connections.get(_mac);
+        }
+        if (connection != null) {
+            if (_device.getDevice().isConnected()) {
+                reused.incrementAndGet();
+                return true;
+            }
+            // link was lost (e.g. device switched off), connect again
+            synchronized (this) {
+                connections.remove(_mac);
+            }
+        }
+
+        if (!reserveConnection()) {
+            failed.incrementAndGet();
+            logger.debug("No connection available for {} within {} ms, all {} connections are in use", _mac, waitMillis, maxConnections);
+            return false;
+        }
+        boolean connected = false;
+        try {
+            connected = connect(_mac, _device);
+        } finally {
+            synchronized (this) {
+                reserved--;
+                if (connected) {
+                    connections.put(_mac, new Connection(_device));
+                } else {
+                    signalWaiting();
+                }
+            }
+        }
+        if (!connected) {
+            return false;
+        }
+        established.incrementAndGet();
+        startSweeper();
+        return true;
+    }
+
+    private boolean connect(String _mac, AbstractPaulmannDevice _device) {
+        BluetoothDevice btDevice = _device.getDevice();
+        Trace trace = FlightEvents.bluetooth("connect", _mac, null);
+        boolean connected = btDevice.isConnected() || btDevice.connect();
+        trace.end(connected);
+        if (!connected) {
+            failed.incrementAndGet();
+            logger.debug("Could not connect to {}", _mac);
+            return false;
+        }
+
+        String password = PasswordManager.getInstance().getDevicePassword(_mac);
+        DevicePasswordFeature passwordFeature = _device.getFeature(FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE);
+        if (password != null && passwordFeature != null) {
+            trace = FlightEvents.bluetooth("authenticate", _mac, FeatureIdent.PAULMANN_DEVICE_PASSWORD_FEATURE.name());
+            boolean authenticated = passwordFeature.authenticate(password);
+            trace.end(authenticated);
+            if (!authenticated) {
+                failed.incrementAndGet();
+                logger.debug("Could not authenticate at {}", _mac);
+                btDevice.disconnect();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reserve room for another connection, disconnecting least recently used devices if needed.<br>
+     * Devices currently in use are skipped. Eviction and reservation happen under the same lock, so devices
+     * being connected at the same time count against the maximum and do not take the same free room.
+     * If all devices are in use, waits until a device becomes idle or the wait time has elapsed.
+     *
+     * @return true if room was reserved, false if no device became idle in time
+     */
+    private boolean reserveConnection() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        while (true) {
+            List<Connection> victims = new ArrayList<>();
+            boolean success = false;
+            synchronized (this) {
+                Iterator<Map.Entry<String, Connection>> it = connections.entrySet().iterator();
+                while (connections.size() + reserved >= maxConnections && it.hasNext()) {
+                    Map.Entry<String, Connection> entry = it.next();
+                    ReentrantLock lock = locks.get(entry.getKey());
+                    if (lock != null && lock.tryLock()) {
+                        it.remove();
+                        victims.add(entry.getValue());
+                    }
+                }
+                if (connections.size() + reserved < maxConnections) {
+                    reserved++;
+                    success = true;
+                } else if (victims.isEmpty()) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    waiting++;
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException _ex) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    } finally {
+                        waiting--;
+                    }
+                }
+            }
+            for (Connection victim : victims) {
+                evicted.incrementAndGet();
+                closeConnection(victim);
+            }
+            if (success) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Wake up threads waiting for room to connect a device.
+     */
+    private synchronized void signalWaiting() {
+        if (waiting > 0) {
+            notifyAll();
+        }
+    }
+
+    private void closeConnection(Connection _connection) {
+        String mac = _connection.device.getDevice().getAddress();
+        try {
+            _connection.device.getDevice().disconnect();
+        } catch (RuntimeException _ex) {
+            logger.debug("Could not disconnect {}", mac, _ex);
+        } finally {
+            ReentrantLock lock = locks.get(mac);
+            if (lock != null && lock.isHeldByCurrentThread()) {
+                lock.unlock();
+            }
+        }
+    }
+
+    private synchronized void touch(String _mac) {
+        Connection connection = connections.get(_mac);
+        if (connection != null) {
+            connection.lastUsedMillis = System.currentTimeMillis();
+            connection.uses++;
+        }
+    }
+
+    private void disconnect(String _mac) {
+        Connection connection;
+        synchronized (this) {
+            connection = connections.remove(_mac);
+        }
+        if (connection != null) {
+            try {
+                connection.device.getDevice().disconnect();
+            } catch (RuntimeException _ex) {
+                logger.debug("Could not disconnect {}", _mac, _ex);
+            }
+        }
+    }
+
+    private void startSweeper() {
+        if (idleMillis > 0 && sweeperStarted.compareAndSet(false, true)) {
+            long period = Math.max(1000, idleMillis / 2);
+            sweeper.scheduleWithFixedDelay(this::disconnectIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Disconnect all devices not used for the idle time.
+     */
+    private void disconnectIdle() {
+        long oldest = System.currentTimeMillis() - idleMillis;
+        List<Connection> idle = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Map.Entry<String, Connection>> it = connections.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Connection> entry = it.next();
+                ReentrantLock lock = locks.get(entry.getKey());
+                if (entry.getValue().lastUsedMillis < oldest && lock != null && lock.tryLock()) {
+                    it.remove();
+                    idle.add(entry.getValue());
+                }
+            }
+        }
+        for (Connection connection : idle) {
+            logger.debug("Disconnecting idle device {}", connection.device.getDevice().getAddress());
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Disconnect all devices (e.g. before closing the bluetooth session).
+     */
+    public void closeAll() {
+        List<Connection> all;
+        synchronized (this) {
+            all = new ArrayList<>(connections.values());
+            connections.clear();
+            if (waiting > 0) {
+                notifyAll();
+            }
+        }
+        for (Connection connection : all) {
+            closeConnection(connection);
+        }
+    }
+
+    /**
+     * Snapshot of all connected devices.
+     * @return list, least recently used device first
+     */
+    public synchronized List<ConnectionInfo> getConnections() {
+        List<ConnectionInfo> result = new ArrayList<>();
+        for (Connection connection : connections.values()) {
+            result.add(new ConnectionInfo(connection.device.getDevice().getAddress(), connection.device.getDevice().getName(),
+                    connection.connectedMillis, connection.lastUsedMillis, connection.uses));
+        }
+        return result;
+    }
+
+    /**
+     * Number of operations which re-used an existing connection.
+     * @return count
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    /**
+     * Number of connections established (connected and authenticated).
+     * @return count
+     */
+    public long getEstablished() {
+        return established.get();
+    }
+
+    /**
+     * Number of devices disconnected to make room for another device.
+     * @return count
+     */
+    public long getEvicted() {
+        return evicted.get();
+    }
+
+    /**
+     * Number of failed connection or authentication attempts.
+     * @return count
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * A connected and authenticated device.
+     */
+    private static final class Connection {
+        private final AbstractPaulmannDevice device;
+        private final long                   connectedMillis = System.currentTimeMillis();
+        private volatile long                lastUsedMillis  = connectedMillis;
+        private volatile int                 uses;
+
+        Connection(AbstractPaulmannDevice _device) {
+            device = _device;
+        }
+    }
+
+    /**
+     * Immutable information about a connected device.
+     */
+    public static final class ConnectionInfo {
+        private final String macAddress;
+        private final String name;
+        private final long   connectedMillis;
+        private final long   lastUsedMillis;
+        private final int    uses;
+
+        ConnectionInfo(String _macAddress, String _name, long _connectedMillis, long _lastUsedMillis, int _uses) {
+            macAddress = _macAddress;
+            name = _name;
+            connectedMillis = _connectedMillis;
+            lastUsedMillis = _lastUsedMillis;
+            uses = _uses;
+        }
+
+        public String getMacAddress() {
+            return macAddress;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getConnectedMillis() {
+            return connectedMillis;
+        }
+
+        public long getLastUsedMillis() {
+            return lastUsedMillis;
+        }
+
+        /**
+         * Number of operations executed using this connection.
+         * @return count
+         */
+        public int getUses() {
+            return uses;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * Smooth transition of one or more values (e.g. brightness or colors) of a device within a given time.<br>
+ * The value of each frame is computed from the elapsed time, so the transition always ends in time, no matter how
+ * many frames could be written. Frames are written using the {@link DeviceWriteQueue}: a frame which is still waiting
+ * when the next frame is submitted is replaced (dropped), so a slow device never builds up a backlog.
+ * The time between two frames adapts to the measured write latency (at least {@value #MIN_FRAME_MILLIS_PROPERTY} ms,
+ * default {@value #DEFAULT_MIN_FRAME_MILLIS}), so frames are only written as fast as the device accepts them.
+ * The last frame always writes the target value, it is written one write latency before the end and is awaited.
+ */
+public final class DeviceFade {
+    public static final String MIN_FRAME_MILLIS_PROPERTY = "paulmann.fade.minFrameMillis";
+    public static final int    DEFAULT_MIN_FRAME_MILLIS  = 40;
+
+    /** Weight of the latest write in the latency average. */
+    private static final double LATENCY_WEIGHT           = 0.3;
+
+    private final String       macAddress;
+    private final String       key;
+    private final int[]        from;
+    private final int[]        to;
+    private final long         durationNanos;
+    private final long         minFrameNanos;
+
+    private volatile double    latencyNanos;
+    private int                written;
+    private int                dropped;
+
+    /**
+     * Create a transition.
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key of the written value (see {@link DeviceStateMirror}), frames with the same key replace each other
+     * @param _from start values
+     * @param _to target values (same number as start values)
+     * @param _durationMillis duration of the transition
+     */
+    public DeviceFade(String _macAddress, String _key, int[] _from, int[] _to, long _durationMillis) {
+        if (_from.length != _to.length || _from.length == 0) {
+            throw new IllegalArgumentException("Start and target need the same number of values");
+        }
+        if (_durationMillis <= 0) {
+            throw new IllegalArgumentException("Duration has to be positive");
+        }
+        macAddress = _macAddress;
+        key = _key;
+        from = _from.clone();
+        to = _to.clone();
+        durationNanos = TimeUnit.MILLISECONDS.toNanos(_durationMillis);
+        minFrameNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, Integer.getInteger(MIN_FRAME_MILLIS_PROPERTY, DEFAULT_MIN_FRAME_MILLIS)));
+        latencyNanos = minFrameNanos;
+    }
+
+    /**
+     * Execute the transition. The start values are written immediately, the target value at the end of the duration.
+     *
+     * @param _frameWriter creates the write operation for the given values
+     * @return result
+     * @throws InterruptedException if the calling thread was interrupted, the device state is unknown afterwards
+     */
+    public Result run(Function<int[], BooleanSupplier> _frameWriter) throws InterruptedException {
+        // intermediate values bypass the mirror
+        DeviceStateMirror.getInstance().update(macAddress, key, null);
+
+        long start = System.nanoTime();
+        int[] last = null;
+        AtomicBoolean lastStarted = new AtomicBoolean(true);
+        CompletableFuture<Boolean> lastFrame = null;
+
+        while (true) {
+            long now = System.nanoTime();
+            long elapsed = now - start;
+            // the target value is written early enough to be reached at the end of the duration
+            if (elapsed + (long) latencyNanos >= durationNanos) {
+                break;
+            }
+            int[] values = interpolate((double) elapsed / durationNanos);
+            if (!Arrays.equals(values, last)) {
+                if (!lastStarted.get()) {
+                    // previous frame is still waiting and will be replaced by this frame
+                    dropped++;
+                }
+                lastStarted = new AtomicBoolean();
+                lastFrame = DeviceWriteQueue.getInstance().submit(macAddress, key, measured(_frameWriter.apply(values), lastStarted));
+                written++;
+                last = values;
+            }
+            // next frame as soon as the device is expected to accept it, but not after the end
+            long frameNanos = Math.max(minFrameNanos, (long) latencyNanos);
+            long sleep = Math.min(frameNanos, durationNanos - (long) latencyNanos - (System.nanoTime() - start));
+            if (sleep > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+        }
+
+        boolean success;
+        if (last != null && Arrays.equals(last, to)) {
+            success = await(lastFrame);
+        } else {
+            if (lastFrame != null && !lastStarted.get()) {
+                dropped++;
+            }
+            BooleanSupplier finalWrite = measured(_frameWriter.apply(to.clone()), new AtomicBoolean());
+            success = await(DeviceWriteQueue.getInstance().submit(macAddress, key, finalWrite));
+            written++;
+        }
+        if (success) {
+            DeviceStateMirror.getInstance().update(macAddress, key, toMirrorValue(to));
+        }
+        return new Result(success, written, dropped, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                TimeUnit.NANOSECONDS.toMillis((long) latencyNanos));
+    }
+
+    /**
+     * Values at the given position of the transition.
+     *
+     * @param _progress 0 (start) to 1 (target)
+     * @return values
+     */
+    int[] interpolate(double _progress) {
+        double progress = Math.max(0, Math.min(1, _progress));
+        int[] result = new int[from.length];
+        for (int i = 0; i < from.length; i++) {
+            result[i] = (int) Math.round(from[i] + (to[i] - from[i]) * progress);
+        }
+        return result;
+    }
+
+    /**
+     * Wrap the write to measure its latency and to signal that it has been started.
+     */
+    private BooleanSupplier measured(BooleanSupplier _write, AtomicBoolean _started) {
+        return () -> {
+            _started.set(true);
+            long writeStart = System.nanoTime();
+            try {
+                return _write.getAsBoolean();
+            } finally {
+                long latency = System.nanoTime() - writeStart;
+                latencyNanos = latencyNanos * (1 - LATENCY_WEIGHT) + latency * LATENCY_WEIGHT;
+            }
+        };
+    }
+
+    private static boolean await(CompletableFuture<Boolean> _future) throws InterruptedException {
+        try {
+            return Boolean.TRUE.equals(_future.get());
+        } catch (ExecutionException _ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Value stored in the {@link DeviceStateMirror}: Integer for single values, List of Integer otherwise.
+     */
+    private static Object toMirrorValue(int[] _values) {
+        if (_values.length == 1) {
+            return _values[0];
+        }
+        Integer[] boxed = new Integer[_values.length];
+        for (int i = 0; i < _values.length; i++) {
+            boxed[i] = _values[i];
+        }
+        return Arrays.asList(boxed);
+    }
+
+    /**
+     * Result of a transition.
+     */
+    public static final class Result {
+        private final boolean success;
+        private final int     written;
+        private final int     dropped;
+        private final long    elapsedMillis;
+        private final long    latencyMillis;
+
+        Result(boolean _success, int _written, int _dropped, long _elapsedMillis, long _latencyMillis) {
+            success = _success;
+            written = _written;
+            dropped = _dropped;
+            elapsedMillis = _elapsedMillis;
+            latencyMillis = _latencyMillis;
+        }
+
+        /**
+         * True if the target value was written.
+         * @return true on success
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+
+        /**
+         * Number of frames submitted, including dropped frames.
+         * @return count
+         */
+        public int getWritten() {
+            return written;
+        }
+
+        /**
+         * Number of frames replaced by a newer frame before they were written.
+         * @return count
+         */
+        public int getDropped() {
+            return dropped;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Average write latency at the end of the transition.
+         * @return latency in millis
+         */
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.hypfvieh.control.devices;
+
+/**
+ * Result of an action executed on a single device.
+ */
+public class DeviceResult {
+    private final String  macAddress;
+    private final boolean success;
+    private final String  message;
+    private final long    elapsedMillis;
+
+    public DeviceResult(String _macAddress, boolean _success, String _message, long _elapsedMillis) {
+        macAddress = _macAddress;
+        success = _success;
+        message = _message;
+        elapsedMillis = _elapsedMillis;
+    }
+
+    /**
+     * Create a successful result, MAC address and timing are added by the executor.
+     * @param _message message
+     * @return result
+     */
+    public static DeviceResult success(String _message) {
+        return new DeviceResult(null, true, _message, 0);
+    }
+
+    /**
+     * Create a failed result, MAC address and timing are added by the executor.
+     * @param _message message
+     * @return result
+     */
+    public static DeviceResult failure(String _message) {
+        return new DeviceResult(null, false, _message, 0);
+    }
+
+    /**
+     * Copy of this result with the given MAC address and elapsed time.
+     * @param _macAddress MAC address of the device
+     * @param _elapsedMillis time the action took
+     * @return new result
+     */
+    public DeviceResult withTiming(String _macAddress, long _elapsedMillis) {
+        return new DeviceResult(_macAddress, success, message, _elapsedMillis);
+    }
+
+    public String getMacAddress() {
+        return macAddress;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s (%d ms): %s", success ? "[OK]  " : "[FAIL]", macAddress, elapsedMillis, message);
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Selects devices by a selector given on the command line.<br>
+ * Supported selectors:
+ * <ul>
+ * <li>a single MAC address</li>
+ * <li>'all' for all devices</li>
+ * <li>comma-separated list of MAC addresses</li>
+ * <li>glob patterns using '*' and '?' (e.g. 00:11:22:*)</li>
+ * </ul>
+ * Selectors can be combined in a comma-separated list. MAC addresses are compared ignoring case.
+ */
+public final class DeviceSelector {
+
+    /** Selector matching all devices. */
+    public static final String MATCH_ALL = "all";
+
+    private static final String SEPARATOR = ",";
+
+    /**
+     * Hidden utility constructor.
+     */
+    private DeviceSelector() {
+    }
+
+    /**
+     * Checks if the given selector may select more than one device.
+     *
+     * @param _selector selector
+     * @return true if selector is 'all', a list or a pattern
+     */
+    public static boolean isGroup(String _selector) {
+        return _selector != null && (MATCH_ALL.equalsIgnoreCase(_selector.trim())
+                || _selector.contains(SEPARATOR) || isPattern(_selector));
+    }
+
+    /**
+     * Select all devices matching the given selector.
+     *
+     * @param <T> device type
+     * @param _selector selector
+     * @param _devices all known devices (MAC address to device)
+     * @return matching devices in the order of the selector (MAC address to device), maybe empty, never null
+     */
+    public static <T> Map<String, T> select(String _selector, Map<String, T> _devices) {
+        Map<String, T> selected = new LinkedHashMap<>();
+        if (StringUtils.isBlank(_selector) || _devices == null) {
+            return selected;
+        }
+
+        for (String part : StringUtils.split(_selector, SEPARATOR)) {
+            String token = part.trim();
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (MATCH_ALL.equalsIgnoreCase(token)) {
+                selected.putAll(_devices);
+            } else if (isPattern(token)) {
+                Pattern pattern = globToPattern(token);
+                for (Entry<String, T> entry : _devices.entrySet()) {
+                    if (pattern.matcher(entry.getKey()).matches()) {
+                        selected.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            } else if (_devices.containsKey(token)) {
+                selected.put(token, _devices.get(token));
+            } else {
+                for (Entry<String, T> entry : _devices.entrySet()) {
+                    if (entry.getKey().equalsIgnoreCase(token)) {
+                        selected.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    private static boolean isPattern(String _str) {
+        return _str.indexOf('*') >= 0 || _str.indexOf('?') >= 0;
+    }
+
+    private static Pattern globToPattern(String _glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : _glob.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+    }
+}
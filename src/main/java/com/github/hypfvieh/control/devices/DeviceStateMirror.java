@@ -0,0 +1,142 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Mirror of the last known state (e.g. on/off, brightness, colors) of all devices.<br>
+ * The mirror is fed by successful writes and reads. Values older than {@value #MAX_AGE_SECONDS_PROPERTY} seconds
+ * (default {@value #DEFAULT_MAX_AGE_SECONDS}, 0 disables the mirror) are considered stale, because the device may
+ * have been changed by other means (e.g. remote control or app) in the meantime.<br>
+ * Writes which would not change a fresh mirrored value are skipped.
+ */
+public final class DeviceStateMirror {
+    public static final String                   MAX_AGE_SECONDS_PROPERTY = "paulmann.state.maxAgeSeconds";
+    public static final int                      DEFAULT_MAX_AGE_SECONDS  = 60;
+
+    /** Key of the on/off state (Boolean). */
+    public static final String                   STATE_ON_OFF             = "onoff";
+    /** Key of the brightness (Integer). */
+    public static final String                   STATE_BRIGHTNESS         = "brightness";
+    /** Key of the colors (List of red, green and blue Integer). */
+    public static final String                   STATE_RGB                = "rgb";
+
+    private static final DeviceStateMirror       INSTANCE                 = new DeviceStateMirror();
+
+    private final ConcurrentMap<String, State>   states                   = new ConcurrentHashMap<>();
+    private final AtomicLong                     suppressedWrites         = new AtomicLong();
+    private final long                           maxAgeMillis;
+
+    private DeviceStateMirror() {
+        maxAgeMillis = TimeUnit.SECONDS.toMillis(Math.max(0, Integer.getInteger(MAX_AGE_SECONDS_PROPERTY, DEFAULT_MAX_AGE_SECONDS)));
+    }
+
+    public static DeviceStateMirror getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the mirrored value if it is not stale.
+     *
+     * @param <T> type of value
+     * @param _macAddress MAC address of the device
+     * @param _key key of the value (e.g. brightness)
+     * @return value or null if unknown or stale
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String _macAddress, String _key) {
+        State state = states.get(createKey(_macAddress, _key));
+        if (state == null || System.currentTimeMillis() - state.updatedMillis > maxAgeMillis) {
+            return null;
+        }
+        return (T) state.value;
+    }
+
+    /**
+     * Age of the mirrored value.
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key of the value
+     * @return age in millis, -1 if unknown
+     */
+    public long getAgeMillis(String _macAddress, String _key) {
+        State state = states.get(createKey(_macAddress, _key));
+        return state == null ? -1 : System.currentTimeMillis() - state.updatedMillis;
+    }
+
+    /**
+     * Store a value confirmed by the device (successful write or read).
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key of the value
+     * @param _value value, null to forget the value
+     */
+    public void update(String _macAddress, String _key, Object _value) {
+        if (_value == null) {
+            states.remove(createKey(_macAddress, _key));
+        } else {
+            states.put(createKey(_macAddress, _key), new State(_value));
+        }
+    }
+
+    /**
+     * Execute the given write, unless the mirrored value is fresh and equal to the value to write.<br>
+     * On success the value is mirrored, on failure the mirrored value is removed as the device state is unknown.
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key of the value
+     * @param _value value written
+     * @param _write write operation
+     * @return true if the write was successful or skipped
+     */
+    public boolean writeIfChanged(String _macAddress, String _key, Object _value, BooleanSupplier _write) {
+        if (Objects.equals(get(_macAddress, _key), _value)) {
+            suppressedWrites.incrementAndGet();
+            return true;
+        }
+        boolean success;
+        try {
+            success = _write.getAsBoolean();
+        } catch (RuntimeException _ex) {
+            update(_macAddress, _key, null);
+            throw _ex;
+        }
+        update(_macAddress, _key, success ? _value : null);
+        return success;
+    }
+
+    /**
+     * Number of writes skipped because the device was already in the requested state.
+     * @return count
+     */
+    public long getSuppressedWrites() {
+        return suppressedWrites.get();
+    }
+
+    /**
+     * Forget all mirrored values.
+     */
+    public void clear() {
+        states.clear();
+    }
+
+    private static String createKey(String _macAddress, String _key) {
+        return _macAddress + "/" + _key;
+    }
+
+    /**
+     * Mirrored value and the time it was confirmed.
+     */
+    private static final class State {
+        private final Object value;
+        private final long   updatedMillis = System.currentTimeMillis();
+
+        State(Object _value) {
+            value = _value;
+        }
+    }
+}
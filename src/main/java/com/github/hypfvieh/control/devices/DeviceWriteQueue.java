@@ -0,0 +1,223 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Queue for writes to devices.<br>
+ * All writes to the same device are executed one after another by a single writer. Each write has a key
+ * describing what is written (e.g. brightness). If a write is submitted while another write with the same key
+ * is still pending for that device, the pending write is dropped (last write wins) and its callers receive the
+ * result of the newer write. This way a device reaches the latest requested state as fast as possible,
+ * even if requests come in faster than the device can handle them.<br>
+ * Writes to different devices are executed in parallel by up to {@value ParallelDeviceExecutor#CONCURRENCY_PROPERTY}
+ * threads.
+ */
+public final class DeviceWriteQueue {
+    private static final DeviceWriteQueue             INSTANCE = new DeviceWriteQueue();
+
+    private final Logger                              logger   = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, DeviceWriter> writers  = new ConcurrentHashMap<>();
+    private final ExecutorService                     executor;
+
+    private DeviceWriteQueue() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, Integer.getInteger(ParallelDeviceExecutor.CONCURRENCY_PROPERTY, ParallelDeviceExecutor.DEFAULT_CONCURRENCY)), r -> {
+            Thread thread = new Thread(r, "DeviceWriter-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static DeviceWriteQueue getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Queue a write to the given device.
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key describing what is written, pending writes with the same key are replaced
+     * @param _write the write operation, returns true on success
+     * @return future completed with the result of this write or the write which replaced it
+     */
+    public CompletableFuture<Boolean> submit(String _macAddress, String _key, BooleanSupplier _write) {
+        return writers.computeIfAbsent(_macAddress, DeviceWriter::new).submit(_key, _write);
+    }
+
+    /**
+     * Queue a write to the given device and wait for the result.
+     *
+     * @param _macAddress MAC address of the device
+     * @param _key key describing what is written, pending writes with the same key are replaced
+     * @param _write the write operation, returns true on success
+     * @return result of this write or the write which replaced it
+     * @throws InterruptedException if the calling thread was interrupted while waiting (the write may still happen)
+     */
+    public boolean write(String _macAddress, String _key, BooleanSupplier _write) throws InterruptedException {
+        try {
+            return submit(_macAddress, _key, _write).get();
+        } catch (ExecutionException _ex) {
+            if (_ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) _ex.getCause();
+            }
+            throw new IllegalStateException(_ex.getCause());
+        }
+    }
+
+    /**
+     * Statistics of all devices written so far, sorted by MAC address.
+     * @return List, maybe empty, never null
+     */
+    public List<Statistics> getStatistics() {
+        Map<String, Statistics> result = new TreeMap<>();
+        for (DeviceWriter writer : writers.values()) {
+            result.put(writer.macAddress, writer.getStatistics());
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Total number of writes dropped because they were replaced by a newer write.
+     * @return count
+     */
+    public long getDroppedWrites() {
+        long dropped = 0;
+        for (DeviceWriter writer : writers.values()) {
+            dropped += writer.getStatistics().getDropped();
+        }
+        return dropped;
+    }
+
+    /**
+     * Write statistics of a single device.
+     */
+    public static final class Statistics {
+        private final String macAddress;
+        private final long   executed;
+        private final long   dropped;
+        private final int    pending;
+
+        Statistics(String _macAddress, long _executed, long _dropped, int _pending) {
+            macAddress = _macAddress;
+            executed = _executed;
+            dropped = _dropped;
+            pending = _pending;
+        }
+
+        public String getMacAddress() {
+            return macAddress;
+        }
+
+        public long getExecuted() {
+            return executed;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+    }
+
+    /**
+     * Pending writes of a single device.
+     */
+    private final class DeviceWriter {
+        private final String                     macAddress;
+        private final Map<String, PendingWrite>  pending = new LinkedHashMap<>();
+        private boolean                          scheduled;
+        private long                             executed;
+        private long                             dropped;
+
+        DeviceWriter(String _macAddress) {
+            macAddress = _macAddress;
+        }
+
+        synchronized CompletableFuture<Boolean> submit(String _key, BooleanSupplier _write) {
+            PendingWrite old = pending.remove(_key);
+            CompletableFuture<Boolean> future;
+            if (old != null) {
+                dropped++;
+                future = old.future;
+                logger.trace("Dropped pending write {} to device {}", _key, macAddress);
+            } else {
+                future = new CompletableFuture<>();
+            }
+            // re-insert to keep the order of the latest requests
+            pending.put(_key, new PendingWrite(_write, future));
+
+            if (!scheduled) {
+                scheduled = true;
+                executor.execute(this::drain);
+            }
+            return future;
+        }
+
+        synchronized Statistics getStatistics() {
+            return new Statistics(macAddress, executed, dropped, pending.size());
+        }
+
+        private void drain() {
+            while (true) {
+                PendingWrite next;
+                synchronized (this) {
+                    Iterator<PendingWrite> it = pending.values().iterator();
+                    if (!it.hasNext()) {
+                        scheduled = false;
+                        return;
+                    }
+                    next = it.next();
+                    it.remove();
+                }
+                Boolean result = null;
+                RuntimeException failure = null;
+                try {
+                    result = next.write.getAsBoolean();
+                } catch (RuntimeException _ex) {
+                    logger.debug("Write to device {} failed", macAddress, _ex);
+                    failure = _ex;
+                }
+                synchronized (this) {
+                    executed++;
+                }
+                if (failure == null) {
+                    next.future.complete(result);
+                } else {
+                    next.future.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * A write waiting for execution.
+     */
+    private static final class PendingWrite {
+        private final BooleanSupplier            write;
+        private final CompletableFuture<Boolean> future;
+
+        PendingWrite(BooleanSupplier _write, CompletableFuture<Boolean> _future) {
+            write = _write;
+            future = _future;
+        }
+    }
+}
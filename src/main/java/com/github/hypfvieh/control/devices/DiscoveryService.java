@@ -0,0 +1,224 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.PaulmannDeviceController;
+import com.github.hypfvieh.bluetooth.DeviceManager;
+import com.github.hypfvieh.bluetooth.wrapper.BluetoothAdapter;
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.jfr.FlightEvents;
+import com.github.hypfvieh.control.jfr.Trace;
+import com.github.hypfvieh.paulmann.devices.AbstractPaulmannDevice;
+
+/**
+ * Optional background discovery keeping the {@link DeviceCache} up to date.<br>
+ * The service repeatedly scans for {@value #SCAN_SECONDS_PROPERTY} seconds (default {@value #DEFAULT_SCAN_SECONDS}),
+ * pauses for {@value #PAUSE_SECONDS_PROPERTY} seconds (default {@value #DEFAULT_PAUSE_SECONDS}) and removes all devices
+ * not seen for {@value #MAX_AGE_SECONDS_PROPERTY} seconds (default {@value #DEFAULT_MAX_AGE_SECONDS}, 0 disables eviction).<br>
+ * The service is started on startup if the system property {@value #ENABLED_PROPERTY} is true.
+ */
+public final class DiscoveryService {
+    public static final String            ENABLED_PROPERTY         = "paulmann.discovery.enabled";
+    public static final String            SCAN_SECONDS_PROPERTY    = "paulmann.discovery.scanSeconds";
+    public static final String            PAUSE_SECONDS_PROPERTY   = "paulmann.discovery.pauseSeconds";
+    public static final String            MAX_AGE_SECONDS_PROPERTY = "paulmann.discovery.maxAgeSeconds";
+
+    public static final int               DEFAULT_SCAN_SECONDS     = 5;
+    public static final int               DEFAULT_PAUSE_SECONDS    = 10;
+    public static final int               DEFAULT_MAX_AGE_SECONDS  = 300;
+
+    private static final DiscoveryService INSTANCE                 = new DiscoveryService();
+
+    /** Interval of reading the devices found by an explicit scan. */
+    private static final long             POLL_MILLIS              = 1000;
+
+    /** Scans must not overlap, the controller is not able to handle concurrent discoveries. */
+    private static final Object           SCAN_LOCK                = new Object();
+
+    private final Logger                  logger                   = LoggerFactory.getLogger(getClass());
+
+    private final AtomicLong              cycles                   = new AtomicLong();
+    private volatile long                 lastCycleMillis;
+
+    private ScheduledExecutorService      executor;
+    private int                           scanSeconds;
+    private int                           pauseSeconds;
+    private int                           maxAgeSeconds;
+
+    private DiscoveryService() {
+    }
+
+    public static DiscoveryService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Scan for devices and add all devices found to the {@link DeviceCache}.<br>
+     * Used by explicit scans: the discovery keeps running for the whole scan time, while the devices known to the controller
+     * are read every {@value #POLL_MILLIS} ms, so devices are reported as soon as they are found.
+     * Concurrent scans (including the background discovery) are executed one after another.
+     *
+     * @param _seconds maximum scan time
+     * @param _listener called after the devices were read, gets the elapsed time in milliseconds and returns true to stop the scan
+     * @return true if new devices were found
+     * @throws InterruptedException if scanning was interrupted
+     */
+    public static boolean scan(int _seconds, LongPredicate _listener) throws InterruptedException {
+        boolean added = false;
+        synchronized (SCAN_LOCK) {
+            Trace trace = FlightEvents.bluetooth("scan", null, null);
+            boolean success = false;
+            BluetoothAdapter adapter = DeviceManager.getInstance().getAdapter();
+            adapter.startDiscovery();
+            try {
+                long start = System.nanoTime();
+                long end = start + TimeUnit.SECONDS.toNanos(_seconds);
+                long remaining;
+                while ((remaining = end - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_MILLIS)));
+                    PaulmannDeviceController.getInstance().refreshDevices();
+                    added |= DeviceCache.getInstance().update(PaulmannDeviceController.getInstance().getDevices(), true);
+                    if (_listener.test(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))) {
+                        break;
+                    }
+                }
+                success = true;
+            } finally {
+                adapter.stopDiscovery();
+                trace.end(success);
+            }
+        }
+        return added;
+    }
+
+    private static Map<String, AbstractPaulmannDevice> scanDevices(int _seconds) throws InterruptedException {
+        synchronized (SCAN_LOCK) {
+            Trace trace = FlightEvents.bluetooth("scan", null, null);
+            boolean success = false;
+            try {
+                PaulmannDeviceController.getInstance().scanForDevices(_seconds);
+                PaulmannDeviceController.getInstance().refreshDevices();
+                Map<String, AbstractPaulmannDevice> devices = PaulmannDeviceController.getInstance().getDevices();
+                success = true;
+                return devices;
+            } finally {
+                trace.end(success);
+            }
+        }
+    }
+
+    /**
+     * Start the background discovery using the configured settings.
+     * @return true if started, false if already running
+     */
+    public boolean start() {
+        return start(Integer.getInteger(SCAN_SECONDS_PROPERTY, DEFAULT_SCAN_SECONDS),
+                Integer.getInteger(PAUSE_SECONDS_PROPERTY, DEFAULT_PAUSE_SECONDS),
+                Integer.getInteger(MAX_AGE_SECONDS_PROPERTY, DEFAULT_MAX_AGE_SECONDS));
+    }
+
+    /**
+     * Start the background discovery.
+     *
+     * @param _scanSeconds duration of each scan
+     * @param _pauseSeconds pause between two scans (at least 1 second)
+     * @param _maxAgeSeconds remove devices not seen for this time, 0 to never remove devices
+     * @return true if started, false if already running
+     */
+    public synchronized boolean start(int _scanSeconds, int _pauseSeconds, int _maxAgeSeconds) {
+        if (_scanSeconds < 1 || _pauseSeconds < 1 || _maxAgeSeconds < 0) {
+            throw new IllegalArgumentException("Invalid discovery settings: scan=" + _scanSeconds + ", pause=" + _pauseSeconds + ", maxAge=" + _maxAgeSeconds);
+        }
+        if (executor != null) {
+            return false;
+        }
+        scanSeconds = _scanSeconds;
+        pauseSeconds = _pauseSeconds;
+        maxAgeSeconds = _maxAgeSeconds;
+
+        ScheduledExecutorService newExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "DeviceDiscovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            newExecutor.scheduleWithFixedDelay(this::runCycle, 0, _pauseSeconds, TimeUnit.SECONDS);
+        } catch (RuntimeException _ex) {
+            newExecutor.shutdownNow();
+            throw _ex;
+        }
+        executor = newExecutor;
+        logger.debug("Background discovery started (scan {} s, pause {} s, max age {} s)", _scanSeconds, _pauseSeconds, _maxAgeSeconds);
+        return true;
+    }
+
+    /**
+     * Stop the background discovery, a running scan is interrupted.
+     * @return true if stopped, false if not running
+     */
+    public synchronized boolean stop() {
+        if (executor == null) {
+            return false;
+        }
+        executor.shutdownNow();
+        executor = null;
+        logger.debug("Background discovery stopped");
+        return true;
+    }
+
+    public synchronized boolean isRunning() {
+        return executor != null;
+    }
+
+    public long getCycles() {
+        return cycles.get();
+    }
+
+    /**
+     * Time the last discovery cycle finished.
+     * @return time in millis since epoch, 0 if no cycle finished yet
+     */
+    public long getLastCycleMillis() {
+        return lastCycleMillis;
+    }
+
+    public synchronized int getScanSeconds() {
+        return scanSeconds;
+    }
+
+    public synchronized int getPauseSeconds() {
+        return pauseSeconds;
+    }
+
+    public synchronized int getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    private void runCycle() {
+        try {
+            boolean changed = DeviceCache.getInstance().update(scanDevices(scanSeconds), false);
+            if (maxAgeSeconds > 0) {
+                changed |= DeviceCache.getInstance().evictOlderThan(TimeUnit.SECONDS.toMillis(maxAgeSeconds)) > 0;
+            }
+            if (changed) {
+                // device list has changed, update completion
+                CommandArg.invalidateGeneratedArguments();
+            }
+            cycles.incrementAndGet();
+            lastCycleMillis = System.currentTimeMillis();
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException _ex) {
+            // never let an exception cancel the scheduled discovery
+            logger.warn("Background discovery failed", _ex);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes an action on several devices in parallel using a limited number of threads.<br>
+ * The concurrency limit can be configured using the system property {@value #CONCURRENCY_PROPERTY}
+ * (defaults to {@value #DEFAULT_CONCURRENCY}).
+ * All instances share one pool of at most {@value #MAX_THREADS} threads, idle threads are stopped after
+ * {@value #KEEP_ALIVE_SECONDS} seconds. The concurrency limit is applied to each call. If all threads are busy,
+ * the calling thread executes the action itself.
+ */
+public class ParallelDeviceExecutor {
+    public static final String  CONCURRENCY_PROPERTY = "paulmann.device.concurrency";
+    public static final int     DEFAULT_CONCURRENCY  = 4;
+
+    private static final int    MAX_THREADS          = 64;
+    private static final long   KEEP_ALIVE_SECONDS   = 60;
+
+    private static final AtomicInteger THREAD_COUNT  = new AtomicInteger();
+
+    private static final ExecutorService EXECUTOR    = new ThreadPoolExecutor(0, MAX_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), r -> {
+                Thread thread = new Thread(r, "DeviceExecutor-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private final Logger        logger               = LoggerFactory.getLogger(getClass());
+
+    private final int           concurrency;
+
+    /**
+     * Create an executor using the configured concurrency limit.
+     */
+    public ParallelDeviceExecutor() {
+        this(Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY));
+    }
+
+    /**
+     * Create an executor using the given concurrency limit.
+     * @param _concurrency maximum number of devices processed at the same time
+     */
+    public ParallelDeviceExecutor(int _concurrency) {
+        concurrency = Math.max(1, _concurrency);
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Execute the given action on all given devices.<br>
+     * Exceptions thrown by the action are converted to failed results.
+     * If the calling thread is interrupted, all unfinished actions are cancelled and reported as failed.
+     *
+     * @param <T> device type
+     * @param _devices devices to process (MAC address to device)
+     * @param _action action to execute on each device
+     * @return one result per device in the order of the given map, including the MAC address and the elapsed time
+     */
+    public <T> List<DeviceResult> execute(Map<String, T> _devices, Function<T, DeviceResult> _action) {
+        return execute(_devices, _action, null);
+    }
+
+    /**
+     * Execute the given action on all given devices and report each result as soon as it is available.<br>
+     * The listener is called from the worker threads, but never concurrently.
+     *
+     * @param <T> device type
+     * @param _devices devices to process (MAC address to device)
+     * @param _action action to execute on each device
+     * @param _listener called with the result of each finished device, may be null
+     * @return one result per device in the order of the given map, including the MAC address and the elapsed time
+     */
+    public <T> List<DeviceResult> execute(Map<String, T> _devices, Function<T, DeviceResult> _action, Consumer<DeviceResult> _listener) {
+        Consumer<DeviceResult> listener = _listener == null ? r -> { } : synchronizedListener(_listener);
+        List<DeviceResult> results = new ArrayList<>(_devices.size());
+        if (_devices.isEmpty()) {
+            return results;
+        }
+
+        if (_devices.size() == 1) {
+            Entry<String, T> entry = _devices.entrySet().iterator().next();
+            results.add(executeTimed(entry.getKey(), entry.getValue(), _action, listener));
+            return results;
+        }
+
+        List<String> macs = new ArrayList<>(_devices.keySet());
+        List<Future<DeviceResult>> futures = new ArrayList<>(macs.size());
+        Semaphore permits = new Semaphore(Math.min(concurrency, _devices.size()));
+        try {
+            for (Entry<String, T> entry : _devices.entrySet()) {
+                permits.acquire();
+                FutureTask<DeviceResult> task = new FutureTask<>(() -> {
+                    try {
+                        return executeTimed(entry.getKey(), entry.getValue(), _action, listener);
+                    } finally {
+                        permits.release();
+                    }
+                });
+                futures.add(task);
+                EXECUTOR.execute(task);
+            }
+
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException _ex) {
+                    results.add(new DeviceResult(macs.get(i), false, String.valueOf(_ex.getCause()), 0));
+                }
+            }
+        } catch (InterruptedException _ex) {
+            Thread.currentThread().interrupt();
+            for (int i = results.size(); i < macs.size(); i++) {
+                // actions finished before the interrupt keep their result
+                Future<DeviceResult> future = i < futures.size() ? futures.get(i) : null;
+                if (future == null || future.cancel(true)) {
+                    results.add(new DeviceResult(macs.get(i), false, "Cancelled", 0));
+                } else {
+                    results.add(getFinished(macs.get(i), future));
+                }
+            }
+        }
+        return results;
+    }
+
+    private static DeviceResult getFinished(String _mac, Future<DeviceResult> _future) {
+        try {
+            // does not block, the future is done
+            return _future.get();
+        } catch (ExecutionException | InterruptedException _ex) {
+            return new DeviceResult(_mac, false, String.valueOf(_ex.getCause()), 0);
+        }
+    }
+
+    private static Consumer<DeviceResult> synchronizedListener(Consumer<DeviceResult> _listener) {
+        Object lock = new Object();
+        return r -> {
+            synchronized (lock) {
+                _listener.accept(r);
+            }
+        };
+    }
+
+    private <T> DeviceResult executeTimed(String _mac, T _device, Function<T, DeviceResult> _action, Consumer<DeviceResult> _listener) {
+        long start = System.nanoTime();
+        DeviceResult result;
+        try {
+            result = _action.apply(_device);
+            if (result == null) {
+                result = DeviceResult.failure("No result");
+            }
+        } catch (RuntimeException _ex) {
+            logger.debug("Action on device {} failed", _mac, _ex);
+            result = DeviceResult.failure(_ex.getClass().getSimpleName() + ": " + _ex.getMessage());
+        }
+        result = result.withTiming(_mac, (System.nanoTime() - start) / 1000000L);
+        try {
+            _listener.accept(result);
+        } catch (RuntimeException _ex) {
+            logger.debug("Progress listener failed for device {}", _mac, _ex);
+        }
+        return result;
+    }
+}
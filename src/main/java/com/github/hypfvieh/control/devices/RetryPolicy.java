@@ -0,0 +1,67 @@
+package com.github.hypfvieh.control.devices;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Retries a device action with exponential backoff until it succeeds or the maximum number of attempts is reached.<br>
+ * A random jitter of up to half the delay is added, so devices processed in parallel do not retry in lockstep.
+ * If the executing thread is interrupted while waiting, retrying stops and a failed result is returned.
+ */
+public class RetryPolicy {
+    private final int  maxAttempts;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+
+    /**
+     * @param _maxAttempts maximum number of attempts (including the first one)
+     * @param _initialDelayMillis delay before the first retry, doubled on every further retry
+     * @param _maxDelayMillis upper bound of the delay between two attempts
+     */
+    public RetryPolicy(int _maxAttempts, long _initialDelayMillis, long _maxDelayMillis) {
+        if (_maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one attempt is required");
+        }
+        if (_initialDelayMillis < 0 || _maxDelayMillis < _initialDelayMillis) {
+            throw new IllegalArgumentException("Invalid delay range " + _initialDelayMillis + "-" + _maxDelayMillis);
+        }
+        maxAttempts = _maxAttempts;
+        initialDelayMillis = _initialDelayMillis;
+        maxDelayMillis = _maxDelayMillis;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Execute the given action until it returns a successful result.
+     *
+     * @param _action action to execute
+     * @return last result of the action, the message contains the number of attempts if more than one was required
+     */
+    public DeviceResult execute(Supplier<DeviceResult> _action) {
+        long delay = initialDelayMillis;
+        DeviceResult result = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return DeviceResult.failure("Cancelled after " + (attempt - 1) + " attempt(s)");
+            }
+            result = _action.get();
+            if (result != null && result.isSuccess()) {
+                return attempt == 1 ? result : DeviceResult.success(result.getMessage() + " (attempt " + attempt + ")");
+            }
+            if (attempt < maxAttempts) {
+                try {
+                    Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1));
+                } catch (InterruptedException _ex) {
+                    Thread.currentThread().interrupt();
+                    return DeviceResult.failure("Cancelled after " + attempt + " attempt(s)");
+                }
+                delay = Math.min(delay * 2, maxDelayMillis);
+            }
+        }
+        String message = result == null ? "No result" : result.getMessage();
+        return DeviceResult.failure(message + " (gave up after " + maxAttempts + " attempts)");
+    }
+}
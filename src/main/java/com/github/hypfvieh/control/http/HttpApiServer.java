@@ -0,0 +1,402 @@
+package com.github.hypfvieh.control.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jline.utils.AttributedString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+import com.github.hypfvieh.control.CommandResult;
+import com.github.hypfvieh.control.CommandResult.Status;
+import com.github.hypfvieh.control.commands.base.ICommand;
+import com.github.hypfvieh.control.daemon.DaemonProtocol;
+import com.github.hypfvieh.control.devices.CachedDevice;
+import com.github.hypfvieh.control.devices.DeviceCache;
+import com.github.hypfvieh.control.devices.DeviceStateMirror;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * HTTP/JSON API for scripts and dashboards, started by the daemon if {@value #PORT_PROPERTY} is set.<br>
+ * Only listens on the loopback interface, every request has to send the daemon token as
+ * <code>Authorization: Bearer &lt;token&gt;</code> header.
+ * <ul>
+ * <li><code>GET /commands</code> - all registered commands and their arguments</li>
+ * <li><code>POST /commands/&lt;name&gt;</code> - execute a command, body: <code>["00:11:22:33:44:55", 50]</code> or <code>{"args": [...]}</code></li>
+ * <li><code>GET /devices</code> - cached devices and their last known state (no bluetooth access)</li>
+ * </ul>
+ * Commands are executed by a bounded pool of {@value #THREADS_PROPERTY} threads (default {@value #DEFAULT_THREADS}),
+ * requests exceeding the pool and its queue are answered with 503. Requests are handled by a pool large enough
+ * for all commands being executed or queued, requests exceeding it are answered with 503 before being dispatched. Commands not finished within
+ * {@value #TIMEOUT_PROPERTY} seconds (default {@value #DEFAULT_TIMEOUT_SECONDS}, can be lowered per request using
+ * <code>?timeout=&lt;seconds&gt;</code>) are interrupted and answered with 504.
+ */
+public class HttpApiServer implements Closeable {
+    public static final String      PORT_PROPERTY           = "paulmann.http.port";
+    public static final String      THREADS_PROPERTY        = "paulmann.http.threads";
+    public static final int         DEFAULT_THREADS         = 4;
+    public static final String      TIMEOUT_PROPERTY        = "paulmann.http.timeoutSeconds";
+    public static final int         DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private static final int        QUEUE_SIZE              = 32;
+    private static final int        MAX_BODY_SIZE           = 64 * 1024;
+    private static final String     COMMANDS_PATH           = "/commands";
+    private static final String     DEVICES_PATH            = "/devices";
+    private static final String     BEARER_PREFIX           = "Bearer ";
+
+    /** Set while a request rejected by the request executor is answered on the thread of the HTTP server. */
+    private static final ThreadLocal<Boolean> REJECTED      = new ThreadLocal<>();
+
+    private final Logger            logger                  = LoggerFactory.getLogger(getClass());
+
+    private final int               port;
+    private final Path              tokenFile;
+    private final CommandDispatcher dispatcher;
+    private final int               timeoutSeconds;
+
+    private HttpServer              server;
+    private ThreadPoolExecutor      requestExecutor;
+    private ThreadPoolExecutor      commandExecutor;
+    private String                  token;
+
+    public HttpApiServer(int _port, Path _tokenFile, CommandDispatcher _dispatcher) {
+        if (_dispatcher == null) {
+            throw new IllegalArgumentException("Dispatcher cannot be null");
+        }
+        port = _port;
+        tokenFile = _tokenFile;
+        dispatcher = _dispatcher;
+        timeoutSeconds = Math.max(1, Integer.getInteger(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Start accepting requests. The daemon has to be started before, as its token is used.
+     * @throws IOException if the port could not be opened or the token could not be read
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("HTTP API already started");
+        }
+        token = DaemonProtocol.readToken(tokenFile);
+
+        int commandThreads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+        commandExecutor = createExecutor("HttpCommand", commandThreads);
+
+        // each command request waits for its command, so there is one request thread for each running or queued command;
+        // the HTTP server drops requests rejected by its executor without an answer, so they are answered with 503
+        // on the thread of the HTTP server instead
+        AtomicInteger requestThreads = new AtomicInteger();
+        requestExecutor = new ThreadPoolExecutor(0, commandThreads + QUEUE_SIZE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "HttpRequest-" + requestThreads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, (r, executor) -> {
+            if (!executor.isShutdown()) {
+                REJECTED.set(Boolean.TRUE);
+                try {
+                    r.run();
+                } finally {
+                    REJECTED.remove();
+                }
+            }
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 50);
+        server.setExecutor(requestExecutor);
+        server.createContext("/", this::handle);
+        server.start();
+        logger.info("HTTP API listening on {}:{}", server.getAddress().getAddress().getHostAddress(), server.getAddress().getPort());
+    }
+
+    /**
+     * Port the server is listening on (useful if started with port 0).
+     * @return port, -1 if not started
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    private static ThreadPoolExecutor createExecutor(String _name, int _threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return new ThreadPoolExecutor(_threads, _threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), r -> {
+            Thread thread = new Thread(r, _name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void handle(HttpExchange _exchange) throws IOException {
+        try {
+            if (REJECTED.get() != null) {
+                sendError(_exchange, 503, "Too many requests");
+                return;
+            }
+            if (!isAuthorized(_exchange)) {
+                sendError(_exchange, 401, "Missing or invalid token");
+                return;
+            }
+            String path = StringUtils.removeEnd(_exchange.getRequestURI().getPath(), "/");
+            String method = _exchange.getRequestMethod();
+
+            if (COMMANDS_PATH.equals(path)) {
+                if (requireMethod(_exchange, method, "GET")) {
+                    sendJson(_exchange, 200, listCommands());
+                }
+            } else if (path.startsWith(COMMANDS_PATH + "/")) {
+                if (requireMethod(_exchange, method, "POST")) {
+                    executeCommand(_exchange, path.substring(COMMANDS_PATH.length() + 1));
+                }
+            } else if (DEVICES_PATH.equals(path)) {
+                if (requireMethod(_exchange, method, "GET")) {
+                    sendJson(_exchange, 200, listDevices());
+                }
+            } else {
+                sendError(_exchange, 404, "Not found: " + path);
+            }
+        } catch (RuntimeException _ex) {
+            logger.error("Error while handling HTTP request {}", _exchange.getRequestURI(), _ex);
+            sendError(_exchange, 500, _ex.getClass().getSimpleName() + ": " + _ex.getMessage());
+        } finally {
+            _exchange.close();
+        }
+    }
+
+    private boolean isAuthorized(HttpExchange _exchange) {
+        String header = _exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.startsWith(BEARER_PREFIX)) {
+            return false;
+        }
+        byte[] clientToken = header.substring(BEARER_PREFIX.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(clientToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean requireMethod(HttpExchange _exchange, String _method, String _expected) throws IOException {
+        if (_expected.equals(_method)) {
+            return true;
+        }
+        _exchange.getResponseHeaders().set("Allow", _expected);
+        sendError(_exchange, 405, "Method " + _method + " not allowed, use " + _expected);
+        return false;
+    }
+
+    private void executeCommand(HttpExchange _exchange, String _commandName) throws IOException {
+        List<String> args;
+        int timeout;
+        try {
+            args = Json.readArguments(readBody(_exchange));
+            timeout = getTimeout(_exchange.getRequestURI());
+        } catch (IllegalArgumentException _ex) {
+            sendError(_exchange, 400, _ex.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+        Future<CommandResult> future;
+        try {
+            future = commandExecutor.submit(() -> {
+                try {
+                    return dispatcher.dispatch(_commandName, args, null);
+                } catch (InterruptedIOException _ex) {
+                    // exit command would terminate a session, which does not exist here
+                    return new CommandResult(Status.SUCCESS, _commandName);
+                }
+            });
+        } catch (RejectedExecutionException _ex) {
+            sendError(_exchange, 503, "Too many requests");
+            return;
+        }
+
+        CommandResult result;
+        try {
+            result = future.get(timeout, TimeUnit.SECONDS);
+        } catch (TimeoutException _ex) {
+            future.cancel(true);
+            sendError(_exchange, 504, "Command " + _commandName + " did not finish within " + timeout + " seconds");
+            return;
+        } catch (InterruptedException _ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            sendError(_exchange, 503, "Server is shutting down");
+            return;
+        } catch (ExecutionException _ex) {
+            throw new IllegalStateException(_ex.getCause());
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("command", result.getCommandName() == null ? _commandName : result.getCommandName());
+        response.put("status", result.getStatus().name());
+        response.put("success", result.isSuccess());
+        response.put("exitCode", result.getStatus().getExitCode());
+        response.put("durationMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        response.put("output", stripAnsi(result.getLines()));
+        sendJson(_exchange, getHttpStatus(result.getStatus()), response);
+    }
+
+    private int getTimeout(URI _uri) {
+        String query = _uri.getQuery();
+        if (query != null) {
+            for (String param : query.split("&")) {
+                if (param.startsWith("timeout=")) {
+                    try {
+                        int timeout = Integer.parseInt(param.substring("timeout=".length()));
+                        if (timeout < 1) {
+                            throw new IllegalArgumentException("Timeout has to be at least 1 second");
+                        }
+                        return Math.min(timeout, timeoutSeconds);
+                    } catch (NumberFormatException _ex) {
+                        throw new IllegalArgumentException("Invalid timeout: " + param);
+                    }
+                }
+            }
+        }
+        return timeoutSeconds;
+    }
+
+    private static int getHttpStatus(Status _status) {
+        switch (_status) {
+            case SUCCESS:
+                return 200;
+            case UNKNOWN_COMMAND:
+                return 404;
+            case AMBIGUOUS_COMMAND:
+                return 409;
+            case MISSING_ARGUMENTS:
+            case EMPTY:
+                return 400;
+            default:
+                // command was executed but failed (e.g. device not reachable)
+                return 422;
+        }
+    }
+
+    private List<Object> listCommands() {
+        List<Object> commands = new ArrayList<>();
+        // aliases are registered with the same command instance
+        for (ICommand command : new LinkedHashSet<>(dispatcher.getRegisteredCommands().values())) {
+            Map<String, Object> cmd = new LinkedHashMap<>();
+            cmd.put("name", command.getCommandName());
+            cmd.put("aliases", command.getCommandAliases());
+            cmd.put("group", command.getCmdGroup());
+            cmd.put("description", command.getDescription());
+            List<Object> args = new ArrayList<>();
+            command.getCommandArgs().forEach(a -> {
+                Map<String, Object> arg = new LinkedHashMap<>();
+                arg.put("name", a.getArgName());
+                arg.put("required", a.isRequired());
+                args.add(arg);
+            });
+            cmd.put("args", args);
+            commands.add(cmd);
+        }
+        return commands;
+    }
+
+    private static List<Object> listDevices() {
+        DeviceStateMirror mirror = DeviceStateMirror.getInstance();
+        List<Object> devices = new ArrayList<>();
+        for (CachedDevice entry : DeviceCache.getInstance().getEntries()) {
+            Map<String, Object> dev = new LinkedHashMap<>();
+            dev.put("mac", entry.getMacAddress());
+            dev.put("name", entry.getName());
+            dev.put("class", entry.getDeviceClass());
+            dev.put("features", entry.getFeatures());
+            dev.put("rssi", entry.getRssi());
+            dev.put("firstSeen", entry.getFirstSeenMillis());
+            dev.put("lastSeen", entry.getLastSeenMillis());
+
+            Map<String, Object> state = new LinkedHashMap<>();
+            for (String key : Arrays.asList(DeviceStateMirror.STATE_ON_OFF, DeviceStateMirror.STATE_BRIGHTNESS, DeviceStateMirror.STATE_RGB)) {
+                Object value = mirror.get(entry.getMacAddress(), key);
+                if (value != null) {
+                    state.put(key, value);
+                }
+            }
+            dev.put("state", state);
+            devices.add(dev);
+        }
+        return devices;
+    }
+
+    private static List<String> stripAnsi(String[] _lines) {
+        List<String> lines = new ArrayList<>();
+        if (_lines != null) {
+            for (String line : _lines) {
+                if (line != null) {
+                    lines.add(AttributedString.stripAnsi(line));
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static String readBody(HttpExchange _exchange) throws IOException {
+        try (InputStream in = _exchange.getRequestBody()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                if (out.size() > MAX_BODY_SIZE) {
+                    throw new IllegalArgumentException("Request body exceeds " + MAX_BODY_SIZE + " bytes");
+                }
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static void sendError(HttpExchange _exchange, int _httpStatus, String _message) throws IOException {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", _message);
+        sendJson(_exchange, _httpStatus, error);
+    }
+
+    private static void sendJson(HttpExchange _exchange, int _httpStatus, Object _body) throws IOException {
+        byte[] bytes = Json.write(_body).getBytes(StandardCharsets.UTF_8);
+        _exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        _exchange.sendResponseHeaders(_httpStatus, bytes.length);
+        try (OutputStream out = _exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Stop accepting requests and interrupt all running commands.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (server != null) {
+            server.stop(0);
+            requestExecutor.shutdownNow();
+            commandExecutor.shutdownNow();
+            server = null;
+        }
+    }
+}
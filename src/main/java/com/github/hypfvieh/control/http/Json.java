@@ -0,0 +1,292 @@
+package com.github.hypfvieh.control.http;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Minimal JSON support for the HTTP API.<br>
+ * Writes maps, collections, arrays, strings, numbers, booleans and null.
+ * Reads the request body, which is either an array of arguments or an object with an "args" array.
+ */
+final class Json {
+
+    /**
+     * Hidden utility constructor.
+     */
+    private Json() {
+    }
+
+    /**
+     * Convert the given value to JSON.
+     *
+     * @param _value value
+     * @return JSON string
+     */
+    static String write(Object _value) {
+        StringBuilder sb = new StringBuilder();
+        write(sb, _value);
+        return sb.toString();
+    }
+
+    private static void write(StringBuilder _sb, Object _value) {
+        if (_value == null) {
+            _sb.append("null");
+        } else if (_value instanceof Number || _value instanceof Boolean) {
+            _sb.append(_value);
+        } else if (_value instanceof Map) {
+            _sb.append('{');
+            Iterator<? extends Entry<?, ?>> it = ((Map<?, ?>) _value).entrySet().iterator();
+            while (it.hasNext()) {
+                Entry<?, ?> entry = it.next();
+                writeString(_sb, String.valueOf(entry.getKey()));
+                _sb.append(':');
+                write(_sb, entry.getValue());
+                if (it.hasNext()) {
+                    _sb.append(',');
+                }
+            }
+            _sb.append('}');
+        } else if (_value instanceof Collection || _value instanceof Object[]) {
+            Collection<?> values = _value instanceof Collection ? (Collection<?>) _value : java.util.Arrays.asList((Object[]) _value);
+            _sb.append('[');
+            Iterator<?> it = values.iterator();
+            while (it.hasNext()) {
+                write(_sb, it.next());
+                if (it.hasNext()) {
+                    _sb.append(',');
+                }
+            }
+            _sb.append(']');
+        } else {
+            writeString(_sb, _value.toString());
+        }
+    }
+
+    private static void writeString(StringBuilder _sb, String _str) {
+        _sb.append('"');
+        for (int i = 0; i < _str.length(); i++) {
+            char c = _str.charAt(i);
+            switch (c) {
+                case '"':
+                    _sb.append("\\\"");
+                    break;
+                case '\\':
+                    _sb.append("\\\\");
+                    break;
+                case '\n':
+                    _sb.append("\\n");
+                    break;
+                case '\r':
+                    _sb.append("\\r");
+                    break;
+                case '\t':
+                    _sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        _sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        _sb.append(c);
+                    }
+            }
+        }
+        _sb.append('"');
+    }
+
+    /**
+     * Read the arguments of a command from the request body.<br>
+     * Supported formats: <code>["00:11:22:33:44:55", 50]</code> or <code>{"args": ["00:11:22:33:44:55", 50]}</code>.
+     * Numbers and booleans are converted to strings, other attributes of the object are ignored.
+     *
+     * @param _json request body, blank for no arguments
+     * @return arguments, maybe empty, never null
+     * @throws IllegalArgumentException if the body is no valid JSON or has an unsupported format
+     */
+    static List<String> readArguments(String _json) {
+        Parser parser = new Parser(_json == null ? "" : _json);
+        parser.skipWhitespace();
+        if (parser.atEnd()) {
+            return new ArrayList<>();
+        }
+        List<String> args = null;
+        if (parser.peek() == '[') {
+            args = parser.readArray();
+        } else if (parser.peek() == '{') {
+            args = parser.readArgsObject();
+        } else {
+            throw new IllegalArgumentException("Expected JSON array or object");
+        }
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Unexpected content after JSON value at position " + parser.pos);
+        }
+        return args == null ? new ArrayList<>() : args;
+    }
+
+    /**
+     * Recursive descent parser for the supported subset of JSON.
+     */
+    private static final class Parser {
+        private final String json;
+        private int          pos;
+
+        Parser(String _json) {
+            json = _json;
+        }
+
+        boolean atEnd() {
+            return pos >= json.length();
+        }
+
+        char peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return json.charAt(pos);
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        void expect(char _c) {
+            skipWhitespace();
+            if (peek() != _c) {
+                throw new IllegalArgumentException("Expected '" + _c + "' at position " + pos);
+            }
+            pos++;
+        }
+
+        List<String> readArgsObject() {
+            List<String> args = null;
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return args;
+            }
+            do {
+                skipWhitespace();
+                String key = readString();
+                expect(':');
+                skipWhitespace();
+                if ("args".equals(key)) {
+                    args = readArray();
+                } else {
+                    readValue();
+                }
+                skipWhitespace();
+            } while (peek() == ',' && pos++ >= 0);
+            expect('}');
+            return args;
+        }
+
+        List<String> readArray() {
+            List<String> values = new ArrayList<>();
+            expect('[');
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return values;
+            }
+            do {
+                skipWhitespace();
+                Object value = readValue();
+                if (value instanceof List) {
+                    throw new IllegalArgumentException("Nested arrays are not supported as arguments");
+                }
+                values.add(value == null ? null : value.toString());
+                skipWhitespace();
+            } while (peek() == ',' && pos++ >= 0);
+            expect(']');
+            return values;
+        }
+
+        Object readValue() {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            } else if (c == '[') {
+                return readArray();
+            } else if (c == '{') {
+                readArgsObject();
+                return null;
+            } else if (json.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (json.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (json.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            int start = pos;
+            while (!atEnd() && "+-0123456789.eE".indexOf(json.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + pos);
+            }
+            String number = json.substring(start, pos);
+            try {
+                Double.parseDouble(number);
+            } catch (NumberFormatException _ex) {
+                throw new IllegalArgumentException("Invalid number '" + number + "' at position " + start);
+            }
+            return number;
+        }
+
+        String readString() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (peek() != '"') {
+                char c = json.charAt(pos++);
+                if (c == '\\') {
+                    char esc = peek();
+                    pos++;
+                    switch (esc) {
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'u':
+                            if (pos + 4 > json.length()) {
+                                throw new IllegalArgumentException("Invalid unicode escape at position " + pos);
+                            }
+                            try {
+                                sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                            } catch (NumberFormatException _ex) {
+                                throw new IllegalArgumentException("Invalid unicode escape at position " + pos);
+                            }
+                            pos += 4;
+                            break;
+                        default:
+                            sb.append(esc);
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            pos++;
+            return sb.toString();
+        }
+    }
+}
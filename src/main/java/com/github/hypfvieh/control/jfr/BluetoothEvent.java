@@ -0,0 +1,13 @@
+package com.github.hypfvieh.control.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.github.hypfvieh.Bluetooth")
+@Label("Bluetooth Operation")
+@Description("D-Bus/GATT operation like scan, authenticate, read or write")
+class BluetoothEvent extends OperationEvent {
+    @Label("Operation")
+    String operation;
+}
@@ -0,0 +1,16 @@
+package com.github.hypfvieh.control.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.github.hypfvieh.Command")
+@Label("Command")
+@Description("Execution of a shell command")
+class CommandEvent extends OperationEvent {
+    @Label("Command")
+    String command;
+
+    @Label("Arguments")
+    String arguments;
+}
@@ -0,0 +1,13 @@
+package com.github.hypfvieh.control.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.github.hypfvieh.Completion")
+@Label("Completion")
+@Description("Completion request of the interactive shell")
+class CompletionEvent extends OperationEvent {
+    @Label("Line")
+    String line;
+}
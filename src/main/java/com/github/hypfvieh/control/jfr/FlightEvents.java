@@ -0,0 +1,128 @@
+package com.github.hypfvieh.control.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Java Flight Recorder events for commands, completion, bluetooth operations and terminal output.<br>
+ * The flight recorder API (jdk.jfr) is only available on Java 8u262 and newer, so it is only used if the
+ * running JVM provides it. Otherwise all methods return {@link Trace#NONE} and recordings cannot be started.
+ * If no recording is running, no event object escapes and the overhead is a single check.
+ * <p>
+ * Usage:
+ * <pre>
+ * Trace trace = FlightEvents.bluetooth("read", mac, feature);
+ * ...
+ * trace.end(success);
+ * </pre>
+ */
+public final class FlightEvents {
+    private static final Logger                LOGGER  = LoggerFactory.getLogger(FlightEvents.class);
+
+    private static final FlightRecorderBackend BACKEND = createBackend();
+
+    /**
+     * Hidden utility constructor.
+     */
+    private FlightEvents() {
+    }
+
+    private static FlightRecorderBackend createBackend() {
+        try {
+            // loaded by name, so this class can be used if the JVM does not provide the flight recorder API
+            return (FlightRecorderBackend) Class.forName(FlightEvents.class.getPackage().getName() + ".JfrBackend")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError _ex) {
+            LOGGER.debug("Flight recorder not available", _ex);
+            return null;
+        }
+    }
+
+    /**
+     * Is the flight recorder supported by this JVM.
+     * @return true if available
+     */
+    public static boolean isAvailable() {
+        return BACKEND != null;
+    }
+
+    /**
+     * Trace the execution of a command.
+     * @param _command command name
+     * @param _arguments arguments
+     * @param _device device selector (MAC address, 'all', ...) of device commands, null otherwise
+     * @return trace
+     */
+    public static Trace command(String _command, String _arguments, String _device) {
+        return BACKEND == null ? Trace.NONE : BACKEND.command(_command, _arguments, _device);
+    }
+
+    /**
+     * Trace a completion request.
+     * @param _line line to complete
+     * @return trace
+     */
+    public static Trace completion(String _line) {
+        return BACKEND == null ? Trace.NONE : BACKEND.completion(_line);
+    }
+
+    /**
+     * Trace a bluetooth (D-Bus/GATT) operation.
+     * @param _operation operation (e.g. scan, authenticate, read, write)
+     * @param _device MAC address, null if not device specific
+     * @param _feature feature or state key, null if not feature specific
+     * @return trace
+     */
+    public static Trace bluetooth(String _operation, String _device, String _feature) {
+        return BACKEND == null ? Trace.NONE : BACKEND.bluetooth(_operation, _device, _feature);
+    }
+
+    /**
+     * Trace writing and flushing output to the terminal.
+     * @param _lines number of lines written
+     * @return trace
+     */
+    public static Trace terminalFlush(int _lines) {
+        return BACKEND == null ? Trace.NONE : BACKEND.terminalFlush(_lines);
+    }
+
+    /**
+     * Start a recording which is written to the given file when stopped.
+     * @param _file destination
+     * @param _settings name of the settings (e.g. 'default' or 'profile')
+     * @return false if a recording is already running
+     * @throws IOException if the settings could not be read
+     * @throws IllegalStateException if the flight recorder is not available
+     */
+    public static boolean startRecording(Path _file, String _settings) throws IOException {
+        return requireBackend().startRecording(_file, _settings);
+    }
+
+    /**
+     * Stop the running recording and write it to its destination.
+     * @return destination or null if no recording was running
+     * @throws IOException if the recording could not be written
+     * @throws IllegalStateException if the flight recorder is not available
+     */
+    public static Path stopRecording() throws IOException {
+        return requireBackend().stopRecording();
+    }
+
+    /**
+     * Destination of the running recording.
+     * @return destination or null if no recording is running
+     */
+    public static Path getRecordingDestination() {
+        return BACKEND == null ? null : BACKEND.getRecordingDestination();
+    }
+
+    private static FlightRecorderBackend requireBackend() {
+        if (BACKEND == null) {
+            throw new IllegalStateException("Flight recorder is not available in this JVM (requires Java 8u262 or newer)");
+        }
+        return BACKEND;
+    }
+}
@@ -0,0 +1,40 @@
+package com.github.hypfvieh.control.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Creates traces and controls recordings, implemented by {@link JfrBackend} if the JVM supports the flight recorder.
+ */
+interface FlightRecorderBackend {
+
+    Trace command(String _command, String _arguments, String _device);
+
+    Trace completion(String _line);
+
+    Trace bluetooth(String _operation, String _device, String _feature);
+
+    Trace terminalFlush(int _lines);
+
+    /**
+     * Start a recording which is written to the given file when stopped.
+     * @param _file destination
+     * @param _settings name of the settings (e.g. 'default' or 'profile')
+     * @return false if a recording is already running
+     * @throws IOException if the settings could not be read
+     */
+    boolean startRecording(Path _file, String _settings) throws IOException;
+
+    /**
+     * Stop the running recording and write it to its destination.
+     * @return destination or null if no recording was running
+     * @throws IOException if the recording could not be written
+     */
+    Path stopRecording() throws IOException;
+
+    /**
+     * Destination of the running recording.
+     * @return destination or null if no recording is running
+     */
+    Path getRecordingDestination();
+}
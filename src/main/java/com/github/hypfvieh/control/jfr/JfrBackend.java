@@ -0,0 +1,115 @@
+package com.github.hypfvieh.control.jfr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * Flight recorder backend, only loaded (by name) if the JVM provides the jdk.jfr API.<br>
+ * Events are only created and started if they are enabled in a running recording.
+ */
+final class JfrBackend implements FlightRecorderBackend {
+    private Recording recording;
+    private Path      destination;
+
+    JfrBackend() {
+        if (!FlightRecorder.isAvailable()) {
+            throw new UnsupportedOperationException("Flight recorder is not available");
+        }
+    }
+
+    @Override
+    public Trace command(String _command, String _arguments, String _device) {
+        CommandEvent event = new CommandEvent();
+        if (!event.isEnabled()) {
+            return Trace.NONE;
+        }
+        event.command = _command;
+        event.arguments = _arguments;
+        event.device = _device;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Trace completion(String _line) {
+        CompletionEvent event = new CompletionEvent();
+        if (!event.isEnabled()) {
+            return Trace.NONE;
+        }
+        event.line = _line;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Trace bluetooth(String _operation, String _device, String _feature) {
+        BluetoothEvent event = new BluetoothEvent();
+        if (!event.isEnabled()) {
+            return Trace.NONE;
+        }
+        event.operation = _operation;
+        event.device = _device;
+        event.feature = _feature;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public Trace terminalFlush(int _lines) {
+        TerminalFlushEvent event = new TerminalFlushEvent();
+        if (!event.isEnabled()) {
+            return Trace.NONE;
+        }
+        event.lines = _lines;
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public synchronized boolean startRecording(Path _file, String _settings) throws IOException {
+        if (recording != null) {
+            return false;
+        }
+        Configuration configuration;
+        try {
+            configuration = Configuration.getConfiguration(_settings);
+        } catch (ParseException | IOException _ex) {
+            throw new IOException("Could not read flight recorder settings '" + _settings + "': " + _ex.getMessage(), _ex);
+        }
+        Recording rec = new Recording(configuration);
+        rec.setName("paulmann-bt-cmdline");
+        rec.setToDisk(true);
+        rec.setDestination(_file);
+        rec.start();
+        recording = rec;
+        destination = _file;
+        return true;
+    }
+
+    @Override
+    public synchronized Path stopRecording() throws IOException {
+        if (recording == null) {
+            return null;
+        }
+        Path file = destination;
+        try {
+            // the recording is written to its destination when stopped
+            recording.stop();
+        } finally {
+            recording.close();
+            recording = null;
+            destination = null;
+        }
+        return file;
+    }
+
+    @Override
+    public synchronized Path getRecordingDestination() {
+        return destination;
+    }
+}
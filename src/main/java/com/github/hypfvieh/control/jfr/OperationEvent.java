@@ -0,0 +1,27 @@
+package com.github.hypfvieh.control.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Base class of all events, every event carries device, feature and outcome.
+ */
+@Category("Paulmann")
+@StackTrace(false)
+abstract class OperationEvent extends jdk.jfr.Event implements Trace {
+    @Label("Device")
+    String device;
+
+    @Label("Feature")
+    String feature;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Override
+    public void end(String _outcome) {
+        outcome = _outcome;
+        commit();
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.hypfvieh.control.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.github.hypfvieh.TerminalFlush")
+@Label("Terminal Flush")
+@Description("Writing and flushing output to the terminal")
+class TerminalFlushEvent extends OperationEvent {
+    @Label("Lines")
+    int lines;
+}
@@ -0,0 +1,24 @@
+package com.github.hypfvieh.control.jfr;
+
+/**
+ * A running operation recorded as flight recorder event (see {@link FlightEvents}).<br>
+ * The event is committed when {@link #end(String)} is called.
+ */
+public interface Trace {
+    /** Trace used if no recording is running, ignores everything. */
+    Trace NONE = _outcome -> { };
+
+    /**
+     * Finish the operation.
+     * @param _outcome outcome (e.g. success, failure or a status)
+     */
+    void end(String _outcome);
+
+    /**
+     * Finish the operation.
+     * @param _success true if the operation was successful
+     */
+    default void end(boolean _success) {
+        end(_success ? "success" : "failure");
+    }
+}
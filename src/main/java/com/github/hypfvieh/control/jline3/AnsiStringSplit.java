@@ -5,7 +5,6 @@ import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jline.utils.AttributedString;
-import org.jline.utils.AttributedStyle;
 
 import com.github.hypfvieh.formatter.StringSplitOperator;
 import com.github.hypfvieh.util.StringUtil;
@@ -15,12 +14,18 @@ import com.github.hypfvieh.util.StringUtil;
  * of up to the given length.
  * Internally uses a word split algorithm to produce human-readable split results.
  * Compatible with the {@link StringSplitOperator} functional interface.
+ * <p>
+ * The input is parsed only once. The position of each substring is tracked with a cursor
+ * (so repeated words are mapped to the correct styles) and escape sequences are only emitted
+ * where the style changes.
  *
  * @author spannm
  * @since v8.0.9 - 2017-01-18
  */
 public class AnsiStringSplit {
 
+    private static final char ESC = '\u001B';
+
     /**
      * Hidden utility constructor.
      */
@@ -32,20 +37,43 @@ public class AnsiStringSplit {
     }
 
     public static List<String> smartWordSplit(String _ansiString, int _len, boolean _rightPad) {
+        // plain strings do not need any style handling
+        if (_ansiString != null && _ansiString.indexOf(ESC) < 0) {
+            List<String> rawStrList = StringUtil.smartWordSplit(_ansiString, _len);
+            List<String> result = new ArrayList<>(rawStrList.size());
+            for (String rawSubStr : rawStrList) {
+                result.add(_rightPad ? StringUtils.rightPad(rawSubStr, _len) : rawSubStr);
+            }
+            return result;
+        }
+
         AttributedString wholeAttrStr = AttributedString.fromAnsi(_ansiString);
-        String wholeRawStr = AttributedString.stripAnsi(_ansiString);
+        String wholeRawStr = wholeAttrStr.toString();
         List<String> rawStrList = StringUtil.smartWordSplit(wholeRawStr, _len);
-        List<String> ansiStrList = new ArrayList<>();
+        List<String> ansiStrList = new ArrayList<>(rawStrList.size());
 
+        int cursor = 0;
         for (String rawSubStr : rawStrList) {
-            // find raw substring in the complete string, after trimming the substring as it may be right-padded (with space).
-            int wordBgnIdx = wholeRawStr.indexOf(rawSubStr.trim());
-            StringBuilder sb = new StringBuilder();
-            // loop through sub string character by character
-            for (int i = 0; i < rawSubStr.length(); i++) {
-                AttributedStyle style = wholeAttrStr.styleAt(wordBgnIdx + i);
-                sb.append(new AttributedString(rawSubStr.substring(i, i + 1), style).toAnsi());
+            // substring may be padded with spaces, only the trimmed part is located in the complete string
+            String trimmed = rawSubStr.trim();
+            int wordBgnIdx = trimmed.isEmpty() ? -1 : wholeRawStr.indexOf(trimmed, cursor);
+
+            StringBuilder sb = new StringBuilder(rawSubStr.length() + 16);
+            if (wordBgnIdx < 0) {
+                // not part of the original string (e.g. inserted by the split algorithm), use it unstyled
+                sb.append(rawSubStr);
+            } else {
+                int leading = rawSubStr.indexOf(trimmed);
+                int wordEndIdx = wordBgnIdx + trimmed.length();
+
+                sb.append(rawSubStr, 0, leading);
+                // toAnsi only emits escape sequences at style boundaries and resets the style at the end
+                sb.append(wholeAttrStr.subSequence(wordBgnIdx, wordEndIdx).toAnsi());
+                sb.append(rawSubStr, leading + trimmed.length(), rawSubStr.length());
+
+                cursor = wordEndIdx;
             }
+
             if (_rightPad && rawSubStr.length() < _len) {
                 sb.append(StringUtils.repeat(' ', _len - rawSubStr.length()));
             }
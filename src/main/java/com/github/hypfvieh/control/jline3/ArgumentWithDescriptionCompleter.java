@@ -31,6 +31,16 @@ public class ArgumentWithDescriptionCompleter implements Completer {
     public void complete(LineReader _reader, final ParsedLine _commandLine, final List<Candidate> _candidates) {
         assert _commandLine != null;
         assert _candidates != null;
-        _candidates.addAll(this.candidates);
+        // only hand out candidates matching the typed prefix
+        String prefix = _commandLine.word().substring(0, _commandLine.wordCursor());
+        if (prefix.isEmpty()) {
+            _candidates.addAll(this.candidates);
+            return;
+        }
+        for (Candidate candidate : candidates) {
+            if (candidate.value().startsWith(prefix)) {
+                _candidates.add(candidate);
+            }
+        }
     }
 }
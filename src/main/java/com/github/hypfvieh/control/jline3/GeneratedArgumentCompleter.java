@@ -0,0 +1,66 @@
+package com.github.hypfvieh.control.jline3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+import org.jline.utils.AttributedString;
+
+import com.github.hypfvieh.control.commands.base.CommandArg;
+
+/**
+ * Completer for arguments with generated values which may change over time (e.g. device MAC addresses).<br>
+ * The values are taken from the (background refreshed) cache of the {@link CommandArg} on every completion,
+ * candidates are only re-created if the values have changed.
+ */
+public class GeneratedArgumentCompleter implements Completer {
+    private final CommandArg        commandArg;
+
+    private volatile CandidateCache cache = new CandidateCache(null, new ArrayList<>());
+
+    public GeneratedArgumentCompleter(CommandArg _commandArg) {
+        commandArg = _commandArg;
+        // start generating the values in background
+        commandArg.getArguments();
+    }
+
+    @Override
+    public void complete(LineReader _reader, final ParsedLine _commandLine, final List<Candidate> _candidates) {
+        assert _commandLine != null;
+        assert _candidates != null;
+
+        List<ArgWithDescription> arguments = commandArg.getArguments();
+        CandidateCache current = cache;
+        if (current.arguments != arguments) {
+            List<Candidate> candidates = new ArrayList<>(arguments.size());
+            for (ArgWithDescription arg : arguments) {
+                candidates.add(new Candidate(AttributedString.stripAnsi(arg.getArgument()), arg.getArgument(), null, arg.getHelp(), null, null, true));
+            }
+            current = new CandidateCache(arguments, candidates);
+            cache = current;
+        }
+
+        String prefix = _commandLine.word().substring(0, _commandLine.wordCursor());
+        for (Candidate candidate : current.candidates) {
+            if (candidate.value().startsWith(prefix)) {
+                _candidates.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * Candidates created for a specific list of argument values.
+     */
+    private static final class CandidateCache {
+        private final List<ArgWithDescription> arguments;
+        private final List<Candidate>          candidates;
+
+        CandidateCache(List<ArgWithDescription> _arguments, List<Candidate> _candidates) {
+            arguments = _arguments;
+            candidates = _candidates;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.hypfvieh.control.jline3;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jline.reader.Candidate;
+import org.jline.reader.Completer;
+import org.jline.reader.LineReader;
+import org.jline.reader.ParsedLine;
+
+import com.github.hypfvieh.control.commands.base.CommandArg;
+import com.github.hypfvieh.control.commands.base.ValueRange;
+
+/**
+ * Completer for numeric arguments with a range of allowed values.<br>
+ * Candidates are not created in advance, only the values of the range matching the typed prefix are generated
+ * on each completion request.
+ */
+public class NumericRangeCompleter implements Completer {
+    private final CommandArg commandArg;
+
+    public NumericRangeCompleter(CommandArg _commandArg) {
+        commandArg = _commandArg;
+    }
+
+    @Override
+    public void complete(LineReader _reader, final ParsedLine _commandLine, final List<Candidate> _candidates) {
+        assert _commandLine != null;
+        assert _candidates != null;
+
+        // all words except the command itself and the word currently completed
+        List<String> previousArgs = new ArrayList<>(_commandLine.words().subList(1, Math.max(1, _commandLine.wordIndex())));
+        ValueRange range = commandArg.getValueRange(previousArgs);
+        if (range == null) {
+            return;
+        }
+
+        String prefix = _commandLine.word().substring(0, _commandLine.wordCursor());
+        if (prefix.isEmpty()) {
+            addCandidates(range.getMin(), range.getMax(), _candidates);
+            return;
+        }
+        if (prefix.length() > 9 || !isDigits(prefix) || prefix.length() > 1 && prefix.charAt(0) == '0') {
+            return;
+        }
+
+        // values starting with the prefix are: prefix, prefix0-prefix9, prefix00-prefix99 ...
+        long from = Long.parseLong(prefix);
+        long width = 1;
+        while (from <= range.getMax()) {
+            long to = from + width - 1;
+            if (to >= range.getMin()) {
+                addCandidates((int) Math.max(from, range.getMin()), (int) Math.min(to, range.getMax()), _candidates);
+            }
+            if (from == 0) { // no other values start with 0
+                break;
+            }
+            from *= 10;
+            width *= 10;
+        }
+    }
+
+    private static void addCandidates(int _from, int _to, List<Candidate> _candidates) {
+        for (int i = _from; i <= _to; i++) {
+            String val = String.valueOf(i);
+            _candidates.add(new Candidate(val, val, null, null, null, null, true));
+        }
+    }
+
+    private static boolean isDigits(String _str) {
+        for (int i = 0; i < _str.length(); i++) {
+            if (!Character.isDigit(_str.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+package com.github.hypfvieh.control.jobs;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.github.hypfvieh.control.CommandResult;
+
+/**
+ * A command line executed in background.
+ */
+public final class Job {
+
+    /**
+     * State of a background job.
+     */
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == DONE || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final int             id;
+    private final String          commandLine;
+    private final long            submittedMillis = System.currentTimeMillis();
+    private final CountDownLatch  finished        = new CountDownLatch(1);
+
+    private volatile State        state           = State.QUEUED;
+    private volatile long         startedNanos;
+    private volatile long         elapsedMillis;
+    private volatile CommandResult result;
+    private volatile Future<?>    future;
+
+    Job(int _id, String _commandLine) {
+        id = _id;
+        commandLine = _commandLine;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    public long getSubmittedMillis() {
+        return submittedMillis;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Runtime of the job, for running jobs the time since the job was started.
+     * @return millis, 0 if not started yet
+     */
+    public long getElapsedMillis() {
+        if (state == State.RUNNING) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        }
+        return elapsedMillis;
+    }
+
+    /**
+     * Result of the command.
+     * @return result or null if job is not finished or was cancelled
+     */
+    public CommandResult getResult() {
+        return result;
+    }
+
+    /**
+     * Wait until the job has finished.
+     *
+     * @param _timeoutMillis maximum time to wait, 0 to wait forever
+     * @return true if job has finished, false if the timeout elapsed
+     * @throws InterruptedException if waiting thread was interrupted
+     */
+    public boolean await(long _timeoutMillis) throws InterruptedException {
+        if (_timeoutMillis <= 0) {
+            finished.await();
+            return true;
+        }
+        return finished.await(_timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void setFuture(Future<?> _future) {
+        future = _future;
+    }
+
+    /**
+     * Marks the job as running.
+     * @return false if the job was cancelled before it was started
+     */
+    synchronized boolean start() {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        startedNanos = System.nanoTime();
+        state = State.RUNNING;
+        return true;
+    }
+
+    /**
+     * Marks the job as finished.
+     * @param _result result of the command
+     * @return false if the job was cancelled in the meantime
+     */
+    synchronized boolean finish(CommandResult _result) {
+        if (state.isFinished()) {
+            return false;
+        }
+        elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        result = _result;
+        state = _result.isSuccess() ? State.DONE : State.FAILED;
+        finished.countDown();
+        return true;
+    }
+
+    /**
+     * Cancel the job, a running command is interrupted.
+     * @return false if the job has already finished
+     */
+    public synchronized boolean cancel() {
+        if (state.isFinished()) {
+            return false;
+        }
+        if (state == State.RUNNING) {
+            elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos);
+        }
+        state = State.CANCELLED;
+        finished.countDown();
+        Future<?> f = future;
+        if (f != null) {
+            f.cancel(true);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d] %-9s %6d ms  %s", id, state, getElapsedMillis(), commandLine);
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.hypfvieh.control.jobs;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.jline.terminal.Terminal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+import com.github.hypfvieh.control.CommandResult;
+import com.github.hypfvieh.control.CommandResult.Status;
+
+/**
+ * Executes command lines in background on a bounded thread pool.<br>
+ * At most {@value #CONCURRENCY_PROPERTY} jobs (default {@value #DEFAULT_CONCURRENCY}) are executed at the same time,
+ * up to {@value #MAX_QUEUED_JOBS} further jobs are queued. Finished jobs are kept until more than
+ * {@value #MAX_FINISHED_JOBS} finished jobs exist.<br>
+ * Each interactive shell session uses its own job manager, so sessions only see and control their own jobs.
+ */
+public class JobManager {
+    public static final String         CONCURRENCY_PROPERTY = "paulmann.jobs.concurrency";
+    public static final int            DEFAULT_CONCURRENCY  = 4;
+
+    private static final int           MAX_QUEUED_JOBS      = 32;
+    private static final int           MAX_FINISHED_JOBS    = 20;
+
+    private final Logger               logger               = LoggerFactory.getLogger(getClass());
+
+    private final CommandDispatcher    dispatcher;
+    private final ThreadPoolExecutor   executor;
+    private final AtomicInteger        nextId               = new AtomicInteger(1);
+    private final Map<Integer, Job>    jobs                 = new LinkedHashMap<>();
+
+    public JobManager(CommandDispatcher _dispatcher) {
+        dispatcher = _dispatcher;
+        int concurrency = Math.max(1, Integer.getInteger(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY));
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(MAX_QUEUED_JOBS), r -> {
+            Thread thread = new Thread(r, "Job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Execute the given command line in background.
+     *
+     * @param _commandLine command line
+     * @param _terminal terminal used for formatting, may be null
+     * @param _listener called with the job after it has finished (not called for cancelled jobs), may be null
+     * @return job
+     * @throws RejectedExecutionException if too many jobs are running or queued
+     */
+    public Job submit(String _commandLine, Terminal _terminal, Consumer<Job> _listener) {
+        Job job = new Job(nextId.getAndIncrement(), _commandLine);
+        synchronized (jobs) {
+            jobs.put(job.getId(), job);
+            removeFinishedJobs();
+        }
+        try {
+            job.setFuture(executor.submit(() -> run(job, _terminal, _listener)));
+        } catch (RejectedExecutionException _ex) {
+            synchronized (jobs) {
+                jobs.remove(job.getId());
+            }
+            throw _ex;
+        }
+        return job;
+    }
+
+    private void run(Job _job, Terminal _terminal, Consumer<Job> _listener) {
+        if (!_job.start()) {
+            return;
+        }
+        CommandResult result;
+        try {
+            result = dispatcher.dispatch(_job.getCommandLine(), _terminal);
+        } catch (InterruptedIOException _ex) {
+            result = new CommandResult(Status.FAILED, null, "Session can not be terminated from a background job");
+        }
+        if (_job.finish(result) && _listener != null) {
+            try {
+                _listener.accept(_job);
+            } catch (RuntimeException _ex) {
+                logger.debug("Job listener failed for job {}", _job.getId(), _ex);
+            }
+        }
+    }
+
+    /**
+     * Returns the job with the given id.
+     * @param _id job id
+     * @return job or null if unknown
+     */
+    public Job getJob(int _id) {
+        synchronized (jobs) {
+            return jobs.get(_id);
+        }
+    }
+
+    /**
+     * All known jobs ordered by id.
+     * @return List, maybe empty, never null
+     */
+    public List<Job> getJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Cancel all jobs and stop the executor.
+     */
+    public void shutdown() {
+        for (Job job : getJobs()) {
+            job.cancel();
+        }
+        executor.shutdownNow();
+    }
+
+    private void removeFinishedJobs() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.getState().isFinished()) {
+                finished++;
+            }
+        }
+        for (Iterator<Job> it = jobs.values().iterator(); it.hasNext() && finished > MAX_FINISHED_JOBS;) {
+            if (it.next().getState().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+}
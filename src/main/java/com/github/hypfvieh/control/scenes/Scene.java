@@ -0,0 +1,88 @@
+package com.github.hypfvieh.control.scenes;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Named set of device states, applied together by the 'scene' command.<br>
+ * Instances are immutable, changing a scene replaces the instance in the {@link SceneStore}.
+ */
+public final class Scene {
+    private final String                  name;
+    private final Map<String, DeviceState> devices;
+
+    /**
+     * Create a scene.
+     * @param _name name of the scene
+     * @param _devices MAC address to state of the device
+     */
+    public Scene(String _name, Map<String, DeviceState> _devices) {
+        name = _name;
+        devices = Collections.unmodifiableMap(new TreeMap<>(_devices));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * States of all devices of this scene.
+     * @return unmodifiable map of MAC address to state, sorted by MAC address
+     */
+    public Map<String, DeviceState> getDevices() {
+        return devices;
+    }
+
+    /**
+     * State of a single device. Values which are null are not changed when the scene is applied.
+     */
+    public static final class DeviceState {
+        private final Boolean       on;
+        private final Integer       brightness;
+        private final List<Integer> rgb;
+
+        /**
+         * Create a device state.
+         * @param _on on/off, may be null
+         * @param _brightness brightness, may be null
+         * @param _rgb red, green and blue, may be null
+         */
+        public DeviceState(Boolean _on, Integer _brightness, List<Integer> _rgb) {
+            if (_rgb != null && _rgb.size() != 3) {
+                throw new IllegalArgumentException("Exactly three color values (red, green, blue) required");
+            }
+            on = _on;
+            brightness = _brightness;
+            rgb = _rgb == null ? null : Collections.unmodifiableList(_rgb);
+        }
+
+        public Boolean getOn() {
+            return on;
+        }
+
+        public Integer getBrightness() {
+            return brightness;
+        }
+
+        public List<Integer> getRgb() {
+            return rgb;
+        }
+
+        /**
+         * True if no value is known.
+         * @return true if empty
+         */
+        public boolean isEmpty() {
+            return on == null && brightness == null && rgb == null;
+        }
+
+        @Override
+        public String toString() {
+            return (on == null ? "-" : on ? "on" : "off")
+                    + ", brightness " + (brightness == null ? "-" : brightness)
+                    + ", rgb " + (rgb == null ? "-" : rgb.get(0) + "/" + rgb.get(1) + "/" + rgb.get(2));
+        }
+    }
+}
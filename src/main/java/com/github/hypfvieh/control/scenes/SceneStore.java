@@ -0,0 +1,214 @@
+package com.github.hypfvieh.control.scenes;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.scenes.Scene.DeviceState;
+
+/**
+ * Stores all scenes in a properties file ({@value #FILE_PROPERTY}, default ~/.paulmann-bt-cmdline/scenes.properties).<br>
+ * Each device of a scene is one line: {@code <scene>.<mac>=<on|off>,<brightness>,<red>/<green>/<blue>},
+ * unknown values are written as '-'.
+ */
+public final class SceneStore {
+    public static final String                FILE_PROPERTY = "paulmann.scenes.file";
+
+    private static final Pattern              NAME_PATTERN  = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String               UNKNOWN       = "-";
+
+    private static final SceneStore           INSTANCE      = new SceneStore();
+
+    private final Logger                      logger        = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, Scene> scenes       = new ConcurrentHashMap<>();
+    private final Path                        file;
+    /** The file exists but could not be read, it must not be overwritten with the (incomplete) scenes in memory. */
+    private boolean                           loadFailed;
+
+    private SceneStore() {
+        file = Paths.get(System.getProperty(FILE_PROPERTY, System.getProperty("user.home") + "/.paulmann-bt-cmdline/scenes.properties"));
+        if (Files.exists(file)) {
+            try {
+                load();
+            } catch (IOException | RuntimeException _ex) {
+                logger.error("Could not read scenes from {}", file, _ex);
+                loadFailed = true;
+            }
+        }
+    }
+
+    public static SceneStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the scene with the given name.
+     * @param _name name
+     * @return scene or null if unknown
+     */
+    public Scene get(String _name) {
+        return _name == null ? null : scenes.get(_name);
+    }
+
+    /**
+     * Returns all scenes sorted by name.
+     * @return List, maybe empty, never null
+     */
+    public List<Scene> getScenes() {
+        return new ArrayList<>(new TreeMap<>(scenes).values());
+    }
+
+    /**
+     * Add or replace the given scene and write all scenes to disk.
+     *
+     * @param _scene scene
+     * @throws IOException if the scenes could not be written
+     */
+    public synchronized void save(Scene _scene) throws IOException {
+        if (!isValidName(_scene.getName())) {
+            throw new IllegalArgumentException("Invalid scene name: " + _scene.getName());
+        }
+        Scene previous = scenes.put(_scene.getName(), _scene);
+        try {
+            write();
+        } catch (IOException _ex) {
+            restore(_scene.getName(), previous);
+            throw _ex;
+        }
+    }
+
+    /**
+     * Remove the given scene and write all remaining scenes to disk.
+     *
+     * @param _name name of the scene
+     * @return true if the scene existed
+     * @throws IOException if the scenes could not be written
+     */
+    public synchronized boolean delete(String _name) throws IOException {
+        Scene previous = scenes.remove(_name);
+        if (previous == null) {
+            return false;
+        }
+        try {
+            write();
+        } catch (IOException _ex) {
+            restore(_name, previous);
+            throw _ex;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the given string can be used as scene name (letters, digits, '-' and '_').
+     * @param _name name
+     * @return true if valid
+     */
+    public static boolean isValidName(String _name) {
+        return _name != null && NAME_PATTERN.matcher(_name).matches();
+    }
+
+    private void restore(String _name, Scene _previous) {
+        if (_previous == null) {
+            scenes.remove(_name);
+        } else {
+            scenes.put(_name, _previous);
+        }
+    }
+
+    private void load() throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        Map<String, Map<String, DeviceState>> devicesByScene = new HashMap<>();
+        for (String key : props.stringPropertyNames()) {
+            int idx = key.indexOf('.');
+            if (idx <= 0 || !isValidName(key.substring(0, idx))) {
+                logger.warn("Ignoring invalid scene entry {}", key);
+                continue;
+            }
+            try {
+                DeviceState state = parseState(props.getProperty(key));
+                devicesByScene.computeIfAbsent(key.substring(0, idx), k -> new HashMap<>()).put(key.substring(idx + 1), state);
+            } catch (IllegalArgumentException _ex) {
+                logger.warn("Ignoring invalid scene entry {}: {}", key, _ex.getMessage());
+            }
+        }
+        for (Entry<String, Map<String, DeviceState>> entry : devicesByScene.entrySet()) {
+            scenes.put(entry.getKey(), new Scene(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    private void write() throws IOException {
+        if (loadFailed) {
+            throw new IOException("Scenes could not be read from " + file + " on startup, refusing to overwrite it");
+        }
+        Properties props = new Properties();
+        for (Scene scene : scenes.values()) {
+            for (Entry<String, DeviceState> entry : scene.getDevices().entrySet()) {
+                props.setProperty(scene.getName() + "." + entry.getKey(), formatState(entry.getValue()));
+            }
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmpFile = dir.resolve(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            props.store(writer, "Scenes of paulmann-bt-cmdline: <scene>.<mac>=<on|off>,<brightness>,<red>/<green>/<blue>");
+        }
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException _ex) {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String formatState(DeviceState _state) {
+        List<Integer> rgb = _state.getRgb();
+        return (_state.getOn() == null ? UNKNOWN : _state.getOn() ? "on" : "off")
+                + "," + (_state.getBrightness() == null ? UNKNOWN : _state.getBrightness())
+                + "," + (rgb == null ? UNKNOWN : rgb.get(0) + "/" + rgb.get(1) + "/" + rgb.get(2));
+    }
+
+    private static DeviceState parseState(String _value) {
+        String[] parts = _value.split(",", -1);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Invalid scene entry: " + _value);
+        }
+        if (!UNKNOWN.equals(parts[0]) && !"on".equals(parts[0]) && !"off".equals(parts[0])) {
+            throw new IllegalArgumentException("Invalid on/off state in scene entry: " + _value);
+        }
+        Boolean on = UNKNOWN.equals(parts[0]) ? null : "on".equals(parts[0]);
+        Integer brightness = UNKNOWN.equals(parts[1]) ? null : Integer.valueOf(parts[1]);
+        List<Integer> rgb = null;
+        if (!UNKNOWN.equals(parts[2])) {
+            String[] colors = parts[2].split("/");
+            if (colors.length != 3) {
+                throw new IllegalArgumentException("Invalid colors in scene entry: " + _value);
+            }
+            rgb = Arrays.asList(Integer.valueOf(colors[0]), Integer.valueOf(colors[1]), Integer.valueOf(colors[2]));
+        }
+        return new DeviceState(on, brightness, rgb);
+    }
+}
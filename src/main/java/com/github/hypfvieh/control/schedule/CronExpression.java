@@ -0,0 +1,142 @@
+package com.github.hypfvieh.control.schedule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.BitSet;
+
+/**
+ * Cron expression with the five fields minute, hour, day of month, month and day of week.<br>
+ * Each field supports '*', single values, ranges (1-5), lists (1,15) and steps (*&#47;15, 0-30/10).
+ * Days of week are 0-7 (0 and 7 are Sunday). As in cron, if both day of month and day of week are restricted,
+ * a day matches if either field matches.
+ */
+public final class CronExpression {
+    /** Searching the next execution is stopped after this number of years (e.g. for 30th of February). */
+    private static final int MAX_YEARS = 5;
+
+    private final String     expression;
+    private final BitSet     minutes;
+    private final BitSet     hours;
+    private final BitSet     daysOfMonth;
+    private final BitSet     months;
+    private final BitSet     daysOfWeek;
+    private final boolean    dayOfMonthRestricted;
+    private final boolean    dayOfWeekRestricted;
+
+    private CronExpression(String _expression, String[] _fields) {
+        expression = _expression;
+        minutes = parseField(_fields[0], 0, 59, "minute");
+        hours = parseField(_fields[1], 0, 23, "hour");
+        daysOfMonth = parseField(_fields[2], 1, 31, "day of month");
+        months = parseField(_fields[3], 1, 12, "month");
+        daysOfWeek = parseField(_fields[4], 0, 7, "day of week");
+        if (daysOfWeek.get(7)) {
+            daysOfWeek.set(0);
+        }
+        dayOfMonthRestricted = !"*".equals(_fields[2]);
+        dayOfWeekRestricted = !"*".equals(_fields[4]);
+    }
+
+    /**
+     * Parse the given expression.
+     *
+     * @param _expression five fields separated by blanks
+     * @return expression
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static CronExpression parse(String _expression) {
+        if (_expression == null) {
+            throw new IllegalArgumentException("Cron expression required");
+        }
+        String[] fields = _expression.trim().split("\\s+");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Cron expression needs 5 fields (minute hour day-of-month month day-of-week): " + _expression);
+        }
+        return new CronExpression(String.join(" ", fields), fields);
+    }
+
+    /**
+     * Next time matching this expression.
+     *
+     * @param _after time to start searching (exclusive)
+     * @return next matching time (seconds and nanos are zero) or null if there is no such time within the next years
+     */
+    public LocalDateTime next(LocalDateTime _after) {
+        LocalDateTime time = _after.truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        LocalDateTime limit = time.plusYears(MAX_YEARS);
+        while (time.isBefore(limit)) {
+            if (!months.get(time.getMonthValue())) {
+                time = time.withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS).plusMonths(1);
+            } else if (!matchesDay(time)) {
+                time = time.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            } else if (!hours.get(time.getHour())) {
+                time = time.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            } else if (!minutes.get(time.getMinute())) {
+                time = time.plusMinutes(1);
+            } else {
+                return time;
+            }
+        }
+        return null;
+    }
+
+    private boolean matchesDay(LocalDateTime _time) {
+        boolean dom = daysOfMonth.get(_time.getDayOfMonth());
+        // DayOfWeek: Monday = 1 ... Sunday = 7
+        boolean dow = daysOfWeek.get(_time.getDayOfWeek().getValue() % 7);
+        if (dayOfMonthRestricted && dayOfWeekRestricted) {
+            return dom || dow;
+        }
+        return dom && dow;
+    }
+
+    private static BitSet parseField(String _field, int _min, int _max, String _name) {
+        BitSet result = new BitSet(_max + 1);
+        for (String part : _field.split(",")) {
+            int step = 1;
+            String range = part;
+            int slash = part.indexOf('/');
+            if (slash >= 0) {
+                step = parseNumber(part.substring(slash + 1), 1, _max, _name);
+                range = part.substring(0, slash);
+            }
+            int from;
+            int to;
+            if ("*".equals(range)) {
+                from = _min;
+                to = _max;
+            } else if (range.indexOf('-') > 0) {
+                from = parseNumber(range.substring(0, range.indexOf('-')), _min, _max, _name);
+                to = parseNumber(range.substring(range.indexOf('-') + 1), _min, _max, _name);
+                if (from > to) {
+                    throw new IllegalArgumentException("Invalid range in " + _name + ": " + part);
+                }
+            } else {
+                from = parseNumber(range, _min, _max, _name);
+                to = slash >= 0 ? _max : from;
+            }
+            for (int i = from; i <= to; i += step) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    private static int parseNumber(String _str, int _min, int _max, String _name) {
+        int value;
+        try {
+            value = Integer.parseInt(_str);
+        } catch (NumberFormatException _ex) {
+            throw new IllegalArgumentException("Invalid " + _name + ": " + _str);
+        }
+        if (value < _min || value > _max) {
+            throw new IllegalArgumentException("Invalid " + _name + ": " + _str + " (allowed: " + _min + "-" + _max + ")");
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -0,0 +1,226 @@
+package com.github.hypfvieh.control.schedule;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Timer holding any number of timeouts using a single thread.<br>
+ * Timeouts are hashed into a ring of buckets by their deadline. The timer thread advances one bucket per tick and only
+ * looks at the timeouts of the current bucket, so the cost per tick does not depend on the total number of timeouts.
+ * Timeouts further away than one revolution of the wheel stay in their bucket for the remaining number of rounds.<br>
+ * Ticks are computed from the start time of the wheel, so they do not drift. A timeout expires at most one tick
+ * after its deadline, expired tasks are executed by the given executor and never block the timer thread.
+ */
+public final class HashedTimerWheel implements AutoCloseable {
+    private final Logger                  logger   = LoggerFactory.getLogger(getClass());
+
+    private final long                    tickNanos;
+    private final Bucket[]                buckets;
+    private final Executor                executor;
+    /** New timeouts, moved into the buckets by the timer thread. */
+    private final Queue<Timeout>          pending  = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger           size     = new AtomicInteger();
+    private final AtomicLong              expired  = new AtomicLong();
+    private final Thread                  thread;
+
+    private final long                    startNanos;
+    private volatile boolean              running  = true;
+    /** Number of ticks processed, only changed by the timer thread. */
+    private long                          tick;
+
+    /**
+     * Create and start a timer wheel.
+     *
+     * @param _tickDuration duration of one tick (resolution of the timer)
+     * @param _unit unit of tick duration
+     * @param _bucketCount number of buckets, rounded up to a power of two
+     * @param _executor executes expired tasks
+     * @param _threadName name of the timer thread
+     */
+    public HashedTimerWheel(long _tickDuration, TimeUnit _unit, int _bucketCount, Executor _executor, String _threadName) {
+        if (_tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration has to be positive");
+        }
+        if (_bucketCount <= 0 || _bucketCount > 1 << 20) {
+            throw new IllegalArgumentException("Bucket count has to be between 1 and " + (1 << 20));
+        }
+        tickNanos = _unit.toNanos(_tickDuration);
+        int count = 1;
+        while (count < _bucketCount) {
+            count <<= 1;
+        }
+        buckets = new Bucket[count];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        executor = _executor;
+
+        startNanos = System.nanoTime();
+        thread = new Thread(this::run, _threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Execute the given task after the given delay.
+     *
+     * @param _task task
+     * @param _delay delay, values below zero are treated as zero
+     * @param _unit unit of delay
+     * @return timeout, can be used to cancel the task
+     */
+    public Timeout schedule(Runnable _task, long _delay, TimeUnit _unit) {
+        if (!running) {
+            throw new RejectedExecutionException("Timer has been stopped");
+        }
+        Timeout timeout = new Timeout(_task, System.nanoTime() + Math.max(0, _unit.toNanos(_delay)));
+        size.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Number of scheduled and not yet expired or cancelled timeouts.
+     * @return count
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Number of expired timeouts since the wheel was started.
+     * @return count
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * Maximum delay between the deadline of a timeout and its expiry, without the time needed by the executor.
+     * @return resolution in millis
+     */
+    public long getTickMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(tickNanos);
+    }
+
+    /**
+     * Stop the timer thread. Timeouts which did not expire yet are discarded.
+     */
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (running) {
+            long deadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos = deadline - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException _ex) {
+                    // stopped
+                    continue;
+                }
+            }
+            transferPending();
+            expire(buckets[(int) (tick & (buckets.length - 1))], deadline);
+            tick++;
+        }
+    }
+
+    /**
+     * Move new timeouts into their buckets. Timeouts whose deadline has already passed are put into the current bucket.
+     */
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long ticks = Math.max(tick, (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos - 1);
+            timeout.remainingRounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & (buckets.length - 1))].timeouts.add(timeout);
+        }
+    }
+
+    private void expire(Bucket _bucket, long _tickDeadline) {
+        for (Iterator<Timeout> it = _bucket.timeouts.iterator(); it.hasNext();) {
+            Timeout timeout = it.next();
+            if (timeout.isCancelled()) {
+                it.remove();
+            } else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= _tickDeadline) {
+                it.remove();
+                if (timeout.state.compareAndSet(Timeout.STATE_WAITING, Timeout.STATE_EXPIRED)) {
+                    size.decrementAndGet();
+                    expired.incrementAndGet();
+                    try {
+                        executor.execute(timeout.task);
+                    } catch (RejectedExecutionException _ex) {
+                        logger.warn("Expired task rejected by executor", _ex);
+                    }
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Timeouts of one bucket, only accessed by the timer thread.
+     */
+    private static final class Bucket {
+        private final LinkedList<Timeout> timeouts = new LinkedList<>();
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public final class Timeout {
+        private static final int      STATE_WAITING   = 0;
+        private static final int      STATE_CANCELLED = 1;
+        private static final int      STATE_EXPIRED   = 2;
+
+        private final Runnable        task;
+        private final long            deadlineNanos;
+        private final AtomicInteger   state           = new AtomicInteger(STATE_WAITING);
+        /** Revolutions of the wheel until the timeout expires, only accessed by the timer thread. */
+        private long                  remainingRounds;
+
+        Timeout(Runnable _task, long _deadlineNanos) {
+            task = _task;
+            deadlineNanos = _deadlineNanos;
+        }
+
+        /**
+         * Cancel the task if it has not expired yet. The timeout is removed from its bucket when the bucket is processed.
+         * @return true if cancelled, false if already expired or cancelled
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(STATE_WAITING, STATE_CANCELLED)) {
+                size.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+    }
+}
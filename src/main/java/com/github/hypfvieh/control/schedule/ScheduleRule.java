@@ -0,0 +1,142 @@
+package com.github.hypfvieh.control.schedule;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Rule executing a command line either repeatedly (cron expression) or once (at a given time).<br>
+ * Instances are immutable.
+ */
+public final class ScheduleRule {
+    private static final String            TYPE_CRON      = "cron";
+    private static final String            TYPE_AT        = "at";
+    private static final DateTimeFormatter TIME_FORMAT    = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final int                      id;
+    private final CronExpression           cron;
+    private final LocalDateTime            at;
+    private final String                   commandLine;
+
+    private ScheduleRule(int _id, CronExpression _cron, LocalDateTime _at, String _commandLine) {
+        if (_commandLine == null || _commandLine.trim().isEmpty()) {
+            throw new IllegalArgumentException("Command line required");
+        }
+        id = _id;
+        cron = _cron;
+        at = _at;
+        commandLine = _commandLine.trim();
+    }
+
+    /**
+     * Create a rule executed whenever the given cron expression matches.
+     *
+     * @param _id id
+     * @param _cron cron expression
+     * @param _commandLine command line to execute
+     * @return rule
+     */
+    public static ScheduleRule cron(int _id, CronExpression _cron, String _commandLine) {
+        return new ScheduleRule(_id, _cron, null, _commandLine);
+    }
+
+    /**
+     * Create a rule executed once at the given time.
+     *
+     * @param _id id
+     * @param _at time of execution (seconds are ignored)
+     * @param _commandLine command line to execute
+     * @return rule
+     */
+    public static ScheduleRule at(int _id, LocalDateTime _at, String _commandLine) {
+        return new ScheduleRule(_id, null, _at.truncatedTo(ChronoUnit.MINUTES), _commandLine);
+    }
+
+    /**
+     * Parse the time of an 'at' rule: either 'HH:mm' (next occurrence of this time) or 'yyyy-MM-ddTHH:mm'.
+     *
+     * @param _time time
+     * @param _now current time
+     * @return time
+     * @throws IllegalArgumentException if the time is invalid
+     */
+    public static LocalDateTime parseAtTime(String _time, LocalDateTime _now) {
+        try {
+            if (_time.indexOf('T') > 0) {
+                return LocalDateTime.parse(_time);
+            }
+            LocalDateTime today = LocalDate.from(_now).atTime(LocalTime.parse(_time, TIME_FORMAT));
+            return today.isAfter(_now) ? today : today.plusDays(1);
+        } catch (DateTimeParseException _ex) {
+            throw new IllegalArgumentException("Invalid time (expected HH:mm or yyyy-MM-ddTHH:mm): " + _time);
+        }
+    }
+
+    /**
+     * Create a rule from its persisted form (see {@link #getWhen()}).
+     *
+     * @param _id id
+     * @param _when 'cron &lt;expression&gt;' or 'at &lt;yyyy-MM-ddTHH:mm&gt;'
+     * @param _commandLine command line to execute
+     * @return rule
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    public static ScheduleRule parse(int _id, String _when, String _commandLine) {
+        String when = _when.trim();
+        if (when.startsWith(TYPE_CRON + " ")) {
+            return cron(_id, CronExpression.parse(when.substring(TYPE_CRON.length())), _commandLine);
+        } else if (when.startsWith(TYPE_AT + " ")) {
+            try {
+                return at(_id, LocalDateTime.parse(when.substring(TYPE_AT.length()).trim()), _commandLine);
+            } catch (DateTimeParseException _ex) {
+                throw new IllegalArgumentException("Invalid time: " + when);
+            }
+        }
+        throw new IllegalArgumentException("Invalid rule: " + when);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    /**
+     * True if the rule is executed only once.
+     * @return true for 'at' rules
+     */
+    public boolean isOnce() {
+        return at != null;
+    }
+
+    /**
+     * Time of the rule, e.g. 'cron 0 7 * * 1-5' or 'at 2024-12-24T18:00'.
+     * @return String
+     */
+    public String getWhen() {
+        return cron != null ? TYPE_CRON + " " + cron : TYPE_AT + " " + at;
+    }
+
+    /**
+     * Next execution after the given time.
+     *
+     * @param _after time (exclusive)
+     * @return time or null if the rule is not executed anymore
+     */
+    public LocalDateTime next(LocalDateTime _after) {
+        if (cron != null) {
+            return cron.next(_after);
+        }
+        return at.isAfter(_after) ? at : null;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + id + "] " + getWhen() + ": " + commandLine;
+    }
+}
@@ -0,0 +1,597 @@
+package com.github.hypfvieh.control.schedule;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+import com.github.hypfvieh.control.CommandResult;
+import com.github.hypfvieh.control.schedule.HashedTimerWheel.Timeout;
+
+/**
+ * Executes command lines at the times given by {@link ScheduleRule}s.<br>
+ * All rules share one {@link HashedTimerWheel}, commands are executed by {@value #THREADS_PROPERTY} threads (default
+ * {@value #DEFAULT_THREADS}). Executions delayed by more than {@value #MISFIRE_SECONDS_PROPERTY} seconds (default
+ * {@value #DEFAULT_MISFIRE_SECONDS}, e.g. because the computer was suspended or all threads were busy) are skipped and
+ * counted as missed. The same applies if the previous execution of the rule has not finished yet.
+ * The next execution of a rule is always computed from its planned time, so delays do not add up.<br>
+ * Rules are stored in {@value #FILE_PROPERTY} (default ~/.paulmann-bt-cmdline/schedule.properties) and can be changed by
+ * any process (e.g. batch mode) at any time: changes lock the file (using a '.lock' file next to it), reload it and
+ * append new rules, so rules of other processes are never lost. Rules are only executed by one process: the first
+ * process calling {@link #start()} (interactive shell and daemon) executes them and checks the file for changes of
+ * other processes every {@value #RELOAD_MILLIS} ms. Other started processes take over when it exits.
+ */
+public final class Scheduler {
+    public static final String               FILE_PROPERTY            = "paulmann.schedule.file";
+    public static final String               THREADS_PROPERTY         = "paulmann.schedule.threads";
+    public static final String               MISFIRE_SECONDS_PROPERTY = "paulmann.schedule.misfireSeconds";
+
+    public static final int                  DEFAULT_THREADS          = 2;
+    public static final int                  DEFAULT_MISFIRE_SECONDS  = 60;
+
+    private static final long                TICK_MILLIS              = 100;
+    private static final int                 BUCKETS                  = 512;
+    private static final long                RELOAD_MILLIS            = 5000;
+
+    /** Byte of the lock file locked while the rules file is read or changed. */
+    private static final long                MODIFY_LOCK_POSITION     = 0;
+    /** Byte of the lock file locked as long as a process executes the rules. */
+    private static final long                EXECUTE_LOCK_POSITION    = 1;
+
+    private static final Scheduler           INSTANCE                 = new Scheduler();
+
+    private final Logger                     logger                   = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<Integer, RuleState> rules             = new ConcurrentHashMap<>();
+    private final AtomicInteger              nextId                   = new AtomicInteger(1);
+    private final AtomicLong                 executed                 = new AtomicLong();
+    private final AtomicLong                 missed                   = new AtomicLong();
+    private final AtomicLong                 maxDelayMillis           = new AtomicLong();
+    private final Path                       file;
+    private final Path                       lockFile;
+    private final long                       misfireMillis;
+
+    private HashedTimerWheel                 wheel;
+    private ThreadPoolExecutor               executor;
+    private CommandDispatcher                dispatcher;
+
+    private FileChannel                      lockChannel;
+    /** Held while this process executes the rules, null otherwise. */
+    private FileLock                         executeLock;
+    /** Modification time and size of the rules file when it was read or written by this process. */
+    private String                           fileStamp;
+    private LocalDateTime                    lastCheck;
+
+    private Scheduler() {
+        file = Paths.get(System.getProperty(FILE_PROPERTY, System.getProperty("user.home") + "/.paulmann-bt-cmdline/schedule.properties"));
+        lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        misfireMillis = TimeUnit.SECONDS.toMillis(Math.max(1, Integer.getInteger(MISFIRE_SECONDS_PROPERTY, DEFAULT_MISFIRE_SECONDS)));
+        if (Files.exists(file)) {
+            try {
+                synchronized (this) {
+                    try (FileLock lock = lockRules()) {
+                        reload();
+                    }
+                }
+            } catch (IOException _ex) {
+                logger.error("Could not read scheduled rules from {}", file, _ex);
+            }
+        }
+    }
+
+    public static Scheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start executing the rules, unless another process already executes them (in this case this process takes over
+     * as soon as the other process has stopped).<br>
+     * 'at' rules whose time has passed less than {@value #MISFIRE_SECONDS_PROPERTY} seconds ago are executed immediately,
+     * older ones are removed.
+     */
+    public synchronized void start() {
+        if (wheel != null) {
+            return;
+        }
+        dispatcher = new CommandDispatcher();
+        int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "Schedule-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        wheel = new HashedTimerWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, BUCKETS, executor, "ScheduleTimer");
+        checkRules();
+    }
+
+    /**
+     * Executed every {@value #RELOAD_MILLIS} ms: tries to become the executing process and picks up rules changed by other processes.
+     */
+    private synchronized void checkRules() {
+        if (wheel == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            if (executeLock == null) {
+                executeLock = openLockChannel().tryLock(EXECUTE_LOCK_POSITION, 1, false);
+                if (executeLock != null) {
+                    try (FileLock lock = lockRules()) {
+                        reload();
+                    }
+                    for (RuleState state : rules.values()) {
+                        // allow execution of rules missed within the grace period while not running
+                        arm(state, state.rule.isOnce() ? now.minusNanos(TimeUnit.MILLISECONDS.toNanos(misfireMillis)) : now);
+                    }
+                    logger.debug("Executing {} scheduled rules", rules.size());
+                }
+            } else if (!getFileStamp().equals(fileStamp)) {
+                List<RuleState> added;
+                try (FileLock lock = lockRules()) {
+                    added = reload();
+                }
+                for (RuleState state : added) {
+                    // executions since the last check
+                    arm(state, lastCheck);
+                }
+            }
+        } catch (IOException _ex) {
+            logger.warn("Could not check scheduled rules in {}", file, _ex);
+        }
+        lastCheck = now;
+        wheel.schedule(this::checkRules, RELOAD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop executing the rules. Running commands are interrupted.
+     */
+    public synchronized void stop() {
+        if (wheel == null) {
+            return;
+        }
+        wheel.close();
+        executor.shutdownNow();
+        wheel = null;
+        executor = null;
+        if (executeLock != null) {
+            try {
+                executeLock.release();
+            } catch (IOException _ex) {
+                logger.debug("Could not release lock of scheduled rules", _ex);
+            }
+            executeLock = null;
+        }
+        for (RuleState state : rules.values()) {
+            state.timeout = null;
+            state.nextExecution = null;
+        }
+    }
+
+    public synchronized boolean isStarted() {
+        return wheel != null;
+    }
+
+    /**
+     * True if this process executes the rules, false if it has not been started or another process executes them.
+     * @return true if executing
+     */
+    public synchronized boolean isExecuting() {
+        return executeLock != null;
+    }
+
+    /**
+     * Add a rule executing the given command line whenever the cron expression matches.
+     *
+     * @param _cron cron expression
+     * @param _commandLine command line
+     * @return rule
+     * @throws IOException if the rules could not be saved
+     */
+    public ScheduleRule addCron(CronExpression _cron, String _commandLine) throws IOException {
+        return add(id -> ScheduleRule.cron(id, _cron, _commandLine));
+    }
+
+    /**
+     * Add a rule executing the given command line once.
+     *
+     * @param _at time of execution
+     * @param _commandLine command line
+     * @return rule
+     * @throws IOException if the rules could not be saved
+     */
+    public ScheduleRule addAt(LocalDateTime _at, String _commandLine) throws IOException {
+        if (!_at.isAfter(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Time " + _at + " has already passed");
+        }
+        return add(id -> ScheduleRule.at(id, _at, _commandLine));
+    }
+
+    /**
+     * Add a rule: the current rules are loaded (the id has to be unique among the rules of all processes) and the new
+     * rule is appended to the file.
+     */
+    private synchronized ScheduleRule add(IntFunction<ScheduleRule> _ruleFactory) throws IOException {
+        ScheduleRule rule;
+        List<RuleState> added;
+        try (FileLock lock = lockRules()) {
+            added = reload();
+            rule = _ruleFactory.apply(nextId.getAndIncrement());
+            append(rule);
+        }
+        RuleState state = new RuleState(rule);
+        rules.put(rule.getId(), state);
+        added.add(state);
+        armAll(added);
+        return rule;
+    }
+
+    /**
+     * Remove the rule with the given id.
+     *
+     * @param _id id
+     * @return true if the rule existed
+     * @throws IOException if the rules could not be saved
+     */
+    public synchronized boolean remove(int _id) throws IOException {
+        List<RuleState> added;
+        RuleState state;
+        try (FileLock lock = lockRules()) {
+            added = reload();
+            state = rules.remove(_id);
+            if (state != null) {
+                cancel(state);
+                save();
+            }
+        }
+        armAll(added);
+        return state != null;
+    }
+
+    /**
+     * All rules ordered by id, including the rules added by other processes.
+     * @return List, maybe empty, never null
+     */
+    public List<RuleInfo> getRules() {
+        synchronized (this) {
+            if (executeLock == null) {
+                // executing process reloads periodically, all others only on demand
+                try (FileLock lock = lockRules()) {
+                    reload();
+                } catch (IOException _ex) {
+                    logger.warn("Could not read scheduled rules from {}", file, _ex);
+                }
+            }
+        }
+        List<RuleInfo> result = new ArrayList<>();
+        for (RuleState state : new TreeMap<>(rules).values()) {
+            result.add(new RuleInfo(state));
+        }
+        return result;
+    }
+
+    public long getExecuted() {
+        return executed.get();
+    }
+
+    public long getMissed() {
+        return missed.get();
+    }
+
+    /**
+     * Maximum delay between the planned and the actual start of a command.
+     * @return delay in millis
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis.get();
+    }
+
+    public long getMisfireSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(misfireMillis);
+    }
+
+    /**
+     * Schedule the next execution of the rule after the given time. 'at' rules without further execution are removed.
+     */
+    private synchronized void arm(RuleState _state, LocalDateTime _after) {
+        if (executeLock == null || rules.get(_state.rule.getId()) != _state) {
+            return;
+        }
+        LocalDateTime next = _state.rule.next(_after);
+        _state.nextExecution = next;
+        if (next == null) {
+            _state.timeout = null;
+            if (_state.rule.isOnce()) {
+                logger.info("Removing rule {}, it has no further execution", _state.rule);
+                try {
+                    remove(_state.rule.getId());
+                } catch (IOException _ex) {
+                    logger.error("Could not save scheduled rules to {}", file, _ex);
+                }
+            }
+            return;
+        }
+        _state.timeout = wheel.schedule(() -> execute(_state, next), toEpochMillis(next) - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void execute(RuleState _state, LocalDateTime _planned) {
+        long now = System.currentTimeMillis();
+        long delay = now - toEpochMillis(_planned);
+        if (delay < -TICK_MILLIS) {
+            // wall clock was set back, wait again
+            rescheduleAt(_state, _planned);
+            return;
+        }
+
+        // plan next execution before executing the command, so the schedule does not depend on its duration
+        boolean misfired = delay > misfireMillis;
+        arm(_state, misfired ? LocalDateTime.now() : _planned);
+
+        if (misfired || !_state.running.compareAndSet(false, true)) {
+            missed.incrementAndGet();
+            _state.missed.incrementAndGet();
+            logger.warn("Skipped rule {} planned for {} ({})", _state.rule, _planned,
+                    misfired ? "delayed by " + delay + " ms" : "previous execution still running");
+            return;
+        }
+        maxDelayMillis.accumulateAndGet(Math.max(0, delay), Math::max);
+        try {
+            CommandResult result = dispatcher.dispatch(_state.rule.getCommandLine(), null);
+            _state.lastStatus = result.getStatus().name();
+            if (!result.isSuccess()) {
+                logger.warn("Scheduled command {} failed: {}", _state.rule, String.join(" ", result.getLines()));
+            }
+        } catch (InterruptedIOException _ex) {
+            _state.lastStatus = CommandResult.Status.FAILED.name();
+            logger.warn("Scheduled command {} can not terminate a session", _state.rule);
+        } finally {
+            _state.lastExecution = _planned;
+            _state.running.set(false);
+            executed.incrementAndGet();
+        }
+    }
+
+    private void armAll(List<RuleState> _states) {
+        LocalDateTime now = LocalDateTime.now();
+        for (RuleState state : _states) {
+            arm(state, now);
+        }
+    }
+
+    private synchronized void rescheduleAt(RuleState _state, LocalDateTime _planned) {
+        if (executeLock != null && rules.get(_state.rule.getId()) == _state) {
+            _state.timeout = wheel.schedule(() -> execute(_state, _planned), toEpochMillis(_planned) - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime _time) {
+        return _time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static void cancel(RuleState _state) {
+        Timeout timeout = _state.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Lock the rules file against changes of other processes.<br>
+     * Only one thread of this process may hold the lock at the same time (guaranteed by synchronizing on this).
+     */
+    private FileLock lockRules() throws IOException {
+        return openLockChannel().lock(MODIFY_LOCK_POSITION, 1, false);
+    }
+
+    private FileChannel openLockChannel() throws IOException {
+        if (lockChannel == null || !lockChannel.isOpen()) {
+            Files.createDirectories(lockFile.toAbsolutePath().getParent());
+            lockChannel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return lockChannel;
+    }
+
+    private String getFileStamp() throws IOException {
+        if (!Files.exists(file)) {
+            return "";
+        }
+        return Files.getLastModifiedTime(file) + "/" + Files.size(file);
+    }
+
+    /**
+     * Read the rules file and replace the rules in memory by its rules. Has to be called with the rules file locked.<br>
+     * Rules added by other processes are returned and have to be armed by the caller after the file was unlocked.
+     *
+     * @return added rules, maybe empty
+     */
+    private List<RuleState> reload() throws IOException {
+        Map<Integer, ScheduleRule> loaded = new HashMap<>();
+        String stamp = getFileStamp();
+        if (!stamp.isEmpty()) {
+            Properties props = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(reader);
+            }
+            for (String key : props.stringPropertyNames()) {
+                if (!key.endsWith(".when")) {
+                    continue;
+                }
+                String id = key.substring(0, key.length() - ".when".length());
+                try {
+                    ScheduleRule rule = ScheduleRule.parse(Integer.parseInt(id), props.getProperty(key), props.getProperty(id + ".command"));
+                    loaded.put(rule.getId(), rule);
+                    nextId.accumulateAndGet(rule.getId() + 1, Math::max);
+                } catch (IllegalArgumentException _ex) {
+                    logger.warn("Ignoring invalid scheduled rule {}: {}", id, _ex.getMessage());
+                }
+            }
+        }
+        fileStamp = stamp;
+
+        // rules removed by other processes
+        for (RuleState state : new ArrayList<>(rules.values())) {
+            ScheduleRule rule = loaded.get(state.rule.getId());
+            if (rule == null || !rule.toString().equals(state.rule.toString())) {
+                rules.remove(state.rule.getId());
+                cancel(state);
+            }
+        }
+        // rules added by other processes
+        List<RuleState> added = new ArrayList<>();
+        for (ScheduleRule rule : loaded.values()) {
+            if (!rules.containsKey(rule.getId())) {
+                RuleState state = new RuleState(rule);
+                rules.put(rule.getId(), state);
+                added.add(state);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Append the given rule to the rules file. Has to be called with the rules file locked.
+     */
+    private void append(ScheduleRule _rule) throws IOException {
+        Properties props = new Properties();
+        props.setProperty(_rule.getId() + ".when", _rule.getWhen());
+        props.setProperty(_rule.getId() + ".command", _rule.getCommandLine());
+        StringWriter entries = new StringWriter();
+        props.store(entries, null);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (String line : entries.toString().split("\\R")) {
+                // skip the date comment
+                if (!line.startsWith("#")) {
+                    writer.write(line);
+                    writer.write(System.lineSeparator());
+                }
+            }
+        }
+        fileStamp = getFileStamp();
+    }
+
+    /**
+     * Write all rules to the rules file. Has to be called with the rules file locked.
+     */
+    private void save() throws IOException {
+        Properties props = new Properties();
+        for (RuleState state : rules.values()) {
+            props.setProperty(state.rule.getId() + ".when", state.rule.getWhen());
+            props.setProperty(state.rule.getId() + ".command", state.rule.getCommandLine());
+        }
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmpFile = dir.resolve(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            props.store(writer, "Scheduled commands of paulmann-bt-cmdline");
+        }
+        try {
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException _ex) {
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        fileStamp = getFileStamp();
+    }
+
+    /**
+     * Rule and its execution state.
+     */
+    private static final class RuleState {
+        private final ScheduleRule     rule;
+        private final AtomicBoolean    running = new AtomicBoolean();
+        private final AtomicLong       missed  = new AtomicLong();
+        private volatile Timeout       timeout;
+        private volatile LocalDateTime nextExecution;
+        private volatile LocalDateTime lastExecution;
+        private volatile String        lastStatus;
+
+        RuleState(ScheduleRule _rule) {
+            rule = _rule;
+        }
+    }
+
+    /**
+     * Rule and its execution state at the time this object was created.
+     */
+    public static final class RuleInfo {
+        private final ScheduleRule  rule;
+        private final LocalDateTime nextExecution;
+        private final LocalDateTime lastExecution;
+        private final String        lastStatus;
+        private final long          missed;
+
+        RuleInfo(RuleState _state) {
+            rule = _state.rule;
+            nextExecution = _state.nextExecution;
+            lastExecution = _state.lastExecution;
+            lastStatus = _state.lastStatus;
+            missed = _state.missed.get();
+        }
+
+        public ScheduleRule getRule() {
+            return rule;
+        }
+
+        /**
+         * Next execution.
+         * @return time or null if the scheduler is not started
+         */
+        public LocalDateTime getNextExecution() {
+            return nextExecution;
+        }
+
+        /**
+         * Planned time of the last execution.
+         * @return time or null if not executed yet
+         */
+        public LocalDateTime getLastExecution() {
+            return lastExecution;
+        }
+
+        /**
+         * Result of the last execution (see {@link CommandResult.Status}).
+         * @return status or null if not executed yet
+         */
+        public String getLastStatus() {
+            return lastStatus;
+        }
+
+        public long getMissed() {
+            return missed;
+        }
+    }
+}
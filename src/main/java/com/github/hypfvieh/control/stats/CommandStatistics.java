@@ -0,0 +1,135 @@
+package com.github.hypfvieh.control.stats;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Singleton recording count, errors and latencies of all executed commands, per command and per device.<br>
+ * Commands are recorded by the {@link com.github.hypfvieh.control.CommandDispatcher}, devices by
+ * {@link com.github.hypfvieh.control.commands.base.AbstractDeviceCommand}.
+ * The statistics are shown by the 'stats' command and are available by JMX as {@value #OBJECT_NAME}.
+ */
+public final class CommandStatistics implements CommandStatisticsMXBean {
+    public static final String                    OBJECT_NAME = "com.github.hypfvieh:type=CommandStatistics";
+
+    private static final CommandStatistics        INSTANCE    = new CommandStatistics();
+
+    private static final Comparator<LatencySnapshot> ORDER    = Comparator.comparing(LatencySnapshot::getCommand)
+            .thenComparing(LatencySnapshot::getDevice, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Map<String, LatencyHistogram>   commands    = new ConcurrentHashMap<>();
+    private final Map<DeviceKey, LatencyHistogram> devices    = new ConcurrentHashMap<>();
+
+    /**
+     * Hidden constructor for singleton pattern.
+     */
+    private CommandStatistics() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException _ex) {
+            Logger logger = LoggerFactory.getLogger(getClass());
+            logger.warn("Could not register command statistics MBean", _ex);
+        }
+    }
+
+    public static CommandStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Record the execution of a command.
+     *
+     * @param _command command name
+     * @param _elapsedNanos time the command took
+     * @param _success false if the command failed
+     */
+    public void recordCommand(String _command, long _elapsedNanos, boolean _success) {
+        commands.computeIfAbsent(_command, k -> new LatencyHistogram()).record(_elapsedNanos, _success);
+    }
+
+    /**
+     * Record the execution of a command on a single device.
+     *
+     * @param _command command name
+     * @param _macAddress MAC address of the device
+     * @param _elapsedNanos time the action took
+     * @param _success false if the action failed
+     */
+    public void recordDevice(String _command, String _macAddress, long _elapsedNanos, boolean _success) {
+        devices.computeIfAbsent(new DeviceKey(_command, _macAddress), k -> new LatencyHistogram()).record(_elapsedNanos, _success);
+    }
+
+    @Override
+    public List<LatencySnapshot> getCommands() {
+        List<LatencySnapshot> result = new ArrayList<>();
+        for (Entry<String, LatencyHistogram> entry : commands.entrySet()) {
+            result.add(LatencySnapshot.of(entry.getKey(), null, entry.getValue()));
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+    @Override
+    public List<LatencySnapshot> getDevices() {
+        List<LatencySnapshot> result = new ArrayList<>();
+        for (Entry<DeviceKey, LatencyHistogram> entry : devices.entrySet()) {
+            result.add(LatencySnapshot.of(entry.getKey().command, entry.getKey().macAddress, entry.getValue()));
+        }
+        result.sort(ORDER);
+        return result;
+    }
+
+    @Override
+    public long getTotalCount() {
+        return commands.values().stream().mapToLong(LatencyHistogram::getCount).sum();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return commands.values().stream().mapToLong(LatencyHistogram::getErrors).sum();
+    }
+
+    @Override
+    public void reset() {
+        commands.clear();
+        devices.clear();
+    }
+
+    /**
+     * Key of the per device statistics.
+     */
+    private static final class DeviceKey {
+        private final String command;
+        private final String macAddress;
+
+        DeviceKey(String _command, String _macAddress) {
+            command = _command;
+            macAddress = _macAddress;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * command.hashCode() + String.valueOf(macAddress).hashCode();
+        }
+
+        @Override
+        public boolean equals(Object _obj) {
+            if (!(_obj instanceof DeviceKey)) {
+                return false;
+            }
+            DeviceKey other = (DeviceKey) _obj;
+            return command.equals(other.command) && String.valueOf(macAddress).equals(String.valueOf(other.macAddress));
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.hypfvieh.control.stats;
+
+import java.util.List;
+
+/**
+ * JMX view of the {@link CommandStatistics}.<br>
+ * Registered as {@value CommandStatistics#OBJECT_NAME}.
+ */
+public interface CommandStatisticsMXBean {
+
+    /**
+     * Latencies per command.
+     * @return list, sorted by command name
+     */
+    List<LatencySnapshot> getCommands();
+
+    /**
+     * Latencies per command and device.
+     * @return list, sorted by command name and MAC address
+     */
+    List<LatencySnapshot> getDevices();
+
+    /**
+     * Number of executed commands.
+     * @return count
+     */
+    long getTotalCount();
+
+    /**
+     * Number of failed commands.
+     * @return count
+     */
+    long getErrorCount();
+
+    /**
+     * Remove all recorded values.
+     */
+    void reset();
+}
@@ -0,0 +1,117 @@
+package com.github.hypfvieh.control.stats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with a resolution of microseconds.<br>
+ * Values are sorted into logarithmic buckets (8 linear sub-buckets per power of two), so percentiles
+ * have a relative error of at most 12.5% while recording only needs a few atomic increments.
+ */
+public final class LatencyHistogram {
+    /** Number of linear sub-buckets per power of two (as bits). */
+    private static final int  SUB_BUCKET_BITS  = 3;
+    private static final int  SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int  BUCKET_COUNT     = SUB_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray buckets      = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder       count        = new LongAdder();
+    private final LongAdder       errors       = new LongAdder();
+    private final LongAdder       sumMicros    = new LongAdder();
+    private final AtomicLong      maxMicros    = new AtomicLong();
+
+    /**
+     * Record a single execution.
+     *
+     * @param _elapsedNanos time the execution took
+     * @param _success false if the execution failed
+     */
+    public void record(long _elapsedNanos, boolean _success) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(_elapsedNanos));
+        buckets.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        sumMicros.add(micros);
+        if (!_success) {
+            errors.increment();
+        }
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    static int bucketIndex(long _micros) {
+        if (_micros < SUB_BUCKET_COUNT) {
+            return (int) _micros;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(_micros);
+        int subBucket = (int) (_micros >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Highest value sorted into the given bucket.
+     * @param _index bucket index
+     * @return value in microseconds
+     */
+    static long bucketUpperBound(int _index) {
+        if (_index < SUB_BUCKET_COUNT) {
+            return _index;
+        }
+        int shift = (_index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        long subBucket = (_index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        long lower = (SUB_BUCKET_COUNT + subBucket) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Value below or equal which the given percentage of all recorded values are.
+     *
+     * @param _percentile percentile (0 - 100)
+     * @return value in microseconds, 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double _percentile) {
+        if (_percentile < 0 || _percentile > 100) {
+            throw new IllegalArgumentException("Percentile has to be between 0 and 100");
+        }
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * _percentile / 100d));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // never report more than the real maximum
+                return Math.min(bucketUpperBound(i), getMaxMicros());
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    /**
+     * Average of all recorded values.
+     * @return average in microseconds, 0 if nothing was recorded
+     */
+    public long getMeanMicros() {
+        long c = count.sum();
+        return c == 0 ? 0 : sumMicros.sum() / c;
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.hypfvieh.control.stats;
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable copy of a {@link LatencyHistogram} of a command (and optionally a device).<br>
+ * All times are given in milliseconds, also used as JMX composite data.
+ */
+public class LatencySnapshot {
+    private final String command;
+    private final String device;
+    private final long   count;
+    private final long   errors;
+    private final double meanMillis;
+    private final double p50Millis;
+    private final double p95Millis;
+    private final double p99Millis;
+    private final double maxMillis;
+
+    @ConstructorProperties({"command", "device", "count", "errors", "meanMillis", "p50Millis", "p95Millis", "p99Millis", "maxMillis"})
+    public LatencySnapshot(String _command, String _device, long _count, long _errors, double _meanMillis,
+            double _p50Millis, double _p95Millis, double _p99Millis, double _maxMillis) {
+        command = _command;
+        device = _device;
+        count = _count;
+        errors = _errors;
+        meanMillis = _meanMillis;
+        p50Millis = _p50Millis;
+        p95Millis = _p95Millis;
+        p99Millis = _p99Millis;
+        maxMillis = _maxMillis;
+    }
+
+    static LatencySnapshot of(String _command, String _device, LatencyHistogram _histogram) {
+        return new LatencySnapshot(_command, _device, _histogram.getCount(), _histogram.getErrors(),
+                toMillis(_histogram.getMeanMicros()),
+                toMillis(_histogram.getPercentileMicros(50)),
+                toMillis(_histogram.getPercentileMicros(95)),
+                toMillis(_histogram.getPercentileMicros(99)),
+                toMillis(_histogram.getMaxMicros()));
+    }
+
+    private static double toMillis(long _micros) {
+        return _micros / (double) TimeUnit.MILLISECONDS.toMicros(1);
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * MAC address of the device.
+     * @return MAC or null if this snapshot covers the whole command
+     */
+    public String getDevice() {
+        return device;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public double getMeanMillis() {
+        return meanMillis;
+    }
+
+    public double getP50Millis() {
+        return p50Millis;
+    }
+
+    public double getP95Millis() {
+        return p95Millis;
+    }
+
+    public double getP99Millis() {
+        return p99Millis;
+    }
+
+    public double getMaxMillis() {
+        return maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s%s: count=%d, errors=%d, p50=%.1f ms, p95=%.1f ms, p99=%.1f ms, max=%.1f ms",
+                command, device == null ? "" : " " + device, count, errors, p50Millis, p95Millis, p99Millis, maxMillis);
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.hypfvieh.control.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.github.hypfvieh.control.CommandDispatcher;
+
+/**
+ * Tests the HTTP API on the loopback interface using the builtin commands only (no bluetooth access).
+ */
+public class HttpApiServerTest {
+    private static final String  TOKEN = "0123456789abcdef";
+
+    private static Path          tokenFile;
+    private static HttpApiServer server;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        tokenFile = Files.createTempFile("paulmann-http-test", ".token");
+        Files.write(tokenFile, TOKEN.getBytes(StandardCharsets.UTF_8));
+        server = new HttpApiServer(0, tokenFile, new CommandDispatcher());
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() throws IOException {
+        if (server != null) {
+            server.close();
+        }
+        Files.deleteIfExists(tokenFile);
+    }
+
+    @Test
+    public void testMissingToken() throws IOException {
+        Response response = request("GET", "/commands", null, null);
+        assertEquals(401, response.status);
+        assertTrue(response.body, response.body.contains("\"error\""));
+    }
+
+    @Test
+    public void testInvalidToken() throws IOException {
+        assertEquals(401, request("GET", "/commands", null, "wrong").status);
+    }
+
+    @Test
+    public void testUnknownPath() throws IOException {
+        assertEquals(404, request("GET", "/unknown", null, TOKEN).status);
+    }
+
+    @Test
+    public void testWrongMethod() throws IOException {
+        assertEquals(405, request("POST", "/commands", "", TOKEN).status);
+        assertEquals(405, request("GET", "/commands/help", null, TOKEN).status);
+    }
+
+    @Test
+    public void testListCommands() throws IOException {
+        Response response = request("GET", "/commands", null, TOKEN);
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.startsWith("["));
+        assertTrue(response.body, response.body.contains("\"name\":\"help\""));
+        // help works without arguments, so its argument is optional
+        assertTrue(response.body, response.body.contains("\"args\":[{\"name\":\"command\",\"required\":false}]"));
+    }
+
+    @Test
+    public void testExecuteUnknownCommand() throws IOException {
+        Response response = request("POST", "/commands/doesNotExist", "[]", TOKEN);
+        assertEquals(404, response.status);
+        assertTrue(response.body, response.body.contains("\"status\":\"UNKNOWN_COMMAND\""));
+    }
+
+    @Test
+    public void testExecuteCommand() throws IOException {
+        // exit only terminates sessions, which do not exist for HTTP requests
+        Response response = request("POST", "/commands/exit", "{\"args\": []}", TOKEN);
+        assertEquals(200, response.status);
+        assertTrue(response.body, response.body.contains("\"command\":\"exit\""));
+        assertTrue(response.body, response.body.contains("\"success\":true"));
+    }
+
+    @Test
+    public void testInvalidBody() throws IOException {
+        Response response = request("POST", "/commands/exit", "[1,", TOKEN);
+        assertEquals(400, response.status);
+        assertTrue(response.body, response.body.contains("\"error\""));
+    }
+
+    @Test
+    public void testInvalidTimeout() throws IOException {
+        assertEquals(400, request("POST", "/commands/exit?timeout=0", "[]", TOKEN).status);
+        assertEquals(400, request("POST", "/commands/exit?timeout=abc", "[]", TOKEN).status);
+    }
+
+    private static Response request(String _method, String _path, String _body, String _token) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), server.getPort(), _path);
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setRequestMethod(_method);
+            if (_token != null) {
+                connection.setRequestProperty("Authorization", "Bearer " + _token);
+            }
+            if (_body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(_body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (in != null) {
+                try (InputStream stream = in) {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = stream.read(buffer)) != -1) {
+                        body.write(buffer, 0, read);
+                    }
+                }
+            }
+            return new Response(status, new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static final class Response {
+        private final int    status;
+        private final String body;
+
+        Response(int _status, String _body) {
+            status = _status;
+            body = _body;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.hypfvieh.control.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class JsonTest {
+
+    @Test
+    public void testWriteValues() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", "scan");
+        map.put("count", 3);
+        map.put("success", true);
+        map.put("missing", null);
+        map.put("list", Arrays.asList("a", 1L));
+        map.put("array", new Object[] {"b", false});
+
+        assertEquals("{\"name\":\"scan\",\"count\":3,\"success\":true,\"missing\":null,\"list\":[\"a\",1],\"array\":[\"b\",false]}",
+                Json.write(map));
+        assertEquals("[]", Json.write(new ArrayList<>()));
+        assertEquals("{}", Json.write(new LinkedHashMap<>()));
+    }
+
+    @Test
+    public void testWriteEscapesStrings() {
+        assertEquals("\"a\\\"b\\\\c\\nd\\re\\tf\\u0001\"", Json.write("a\"b\\c\nd\re\tf\u0001"));
+        assertEquals("\"\u00fc\"", Json.write("\u00fc"));
+    }
+
+    @Test
+    public void testReadArgumentArray() {
+        assertEquals(Arrays.asList("00:11:22:33:44:55", "50", "true", null),
+                Json.readArguments(" [\"00:11:22:33:44:55\", 50, true, null] "));
+        assertEquals(Arrays.asList(), Json.readArguments("[]"));
+    }
+
+    @Test
+    public void testReadArgumentObject() {
+        assertEquals(Arrays.asList("all", "on"),
+                Json.readArguments("{\"timeout\": 5, \"other\": {\"x\": [1, 2]}, \"args\": [\"all\", \"on\"]}"));
+        assertEquals(Arrays.asList(), Json.readArguments("{\"timeout\": 5}"));
+        assertEquals(Arrays.asList(), Json.readArguments("{}"));
+    }
+
+    @Test
+    public void testReadBlankBody() {
+        assertTrue(Json.readArguments(null).isEmpty());
+        assertTrue(Json.readArguments("  \n").isEmpty());
+    }
+
+    @Test
+    public void testReadEscapes() {
+        assertEquals(Arrays.asList("a\"b\\c\nd/\u00fc"), Json.readArguments("[\"a\\\"b\\\\c\\nd\\/\\u00fc\"]"));
+    }
+
+    @Test
+    public void testWrittenStringsAreReadBack() {
+        String value = "quote \" backslash \\ newline \n tab \t control \u0002";
+        List<String> args = Json.readArguments(Json.write(Arrays.asList(value)));
+        assertEquals(Arrays.asList(value), args);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsScalar() {
+        Json.readArguments("\"scan\"");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsNestedArray() {
+        Json.readArguments("[[1, 2]]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsTrailingContent() {
+        Json.readArguments("[1] [2]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsUnterminatedArray() {
+        Json.readArguments("[\"a\", ");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsInvalidNumber() {
+        Json.readArguments("[1.2.3]");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadRejectsInvalidUnicodeEscape() {
+        Json.readArguments("[\"\\u00zz\"]");
+    }
+}
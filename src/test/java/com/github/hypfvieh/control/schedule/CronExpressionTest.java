@@ -0,0 +1,89 @@
+package com.github.hypfvieh.control.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDateTime;
+
+import org.junit.Test;
+
+public class CronExpressionTest {
+
+    @Test
+    public void testNextIsAfterGivenTime() {
+        CronExpression cron = CronExpression.parse("*/15 * * * *");
+        assertEquals(LocalDateTime.of(2026, 10, 18, 13, 15), cron.next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+        assertEquals(LocalDateTime.of(2026, 10, 18, 13, 15), cron.next(LocalDateTime.of(2026, 10, 18, 13, 0, 59, 999)));
+        assertEquals(LocalDateTime.of(2026, 10, 19, 0, 0), cron.next(LocalDateTime.of(2026, 10, 18, 23, 45)));
+    }
+
+    @Test
+    public void testWeekdays() {
+        CronExpression cron = CronExpression.parse("0 7 * * 1-5");
+        // friday to monday
+        assertEquals(LocalDateTime.of(2026, 10, 19, 7, 0), cron.next(LocalDateTime.of(2026, 10, 16, 7, 0)));
+        // 0 and 7 are sunday
+        assertEquals(LocalDateTime.of(2026, 10, 25, 7, 0), CronExpression.parse("0 7 * * 7").next(LocalDateTime.of(2026, 10, 19, 7, 0)));
+        assertEquals(LocalDateTime.of(2026, 10, 25, 7, 0), CronExpression.parse("0 7 * * 0").next(LocalDateTime.of(2026, 10, 19, 7, 0)));
+    }
+
+    @Test
+    public void testDayOfMonthOrDayOfWeek() {
+        // first day of month or monday
+        CronExpression cron = CronExpression.parse("0 12 1 * 1");
+        assertEquals(LocalDateTime.of(2026, 10, 19, 12, 0), cron.next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+        assertEquals(LocalDateTime.of(2026, 11, 1, 12, 0), cron.next(LocalDateTime.of(2026, 10, 27, 13, 0)));
+        assertEquals(LocalDateTime.of(2026, 11, 2, 12, 0), cron.next(LocalDateTime.of(2026, 11, 1, 12, 0)));
+
+        // only day of month restricted: day of week is ignored
+        assertEquals(LocalDateTime.of(2026, 11, 1, 12, 0), CronExpression.parse("0 12 1 * *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+    }
+
+    @Test
+    public void testSkipsMonths() {
+        assertEquals(LocalDateTime.of(2027, 3, 1, 8, 30), CronExpression.parse("30 8 * 3 *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+        // november has no 31st
+        assertEquals(LocalDateTime.of(2026, 12, 31, 0, 0), CronExpression.parse("0 0 31 * *").next(LocalDateTime.of(2026, 11, 1, 0, 0)));
+        assertEquals(LocalDateTime.of(2027, 1, 1, 0, 0), CronExpression.parse("0 0 1 1,7 *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+    }
+
+    @Test
+    public void testLeapDay() {
+        assertEquals(LocalDateTime.of(2028, 2, 29, 0, 0), CronExpression.parse("0 0 29 2 *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+    }
+
+    @Test
+    public void testImpossibleDate() {
+        assertNull(CronExpression.parse("0 0 30 2 *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+        assertNull(CronExpression.parse("0 0 31 4,6,9,11 *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+    }
+
+    @Test
+    public void testStepsAndLists() {
+        CronExpression cron = CronExpression.parse("0-30/10 18-23 * * *");
+        assertEquals(LocalDateTime.of(2026, 10, 18, 18, 0), cron.next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+        assertEquals(LocalDateTime.of(2026, 10, 18, 18, 30), cron.next(LocalDateTime.of(2026, 10, 18, 18, 20)));
+        assertEquals(LocalDateTime.of(2026, 10, 18, 19, 0), cron.next(LocalDateTime.of(2026, 10, 18, 18, 30)));
+        assertEquals(LocalDateTime.of(2026, 10, 18, 15, 0), CronExpression.parse("0 9,15 * * *").next(LocalDateTime.of(2026, 10, 18, 13, 0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsMissingField() {
+        CronExpression.parse("0 7 * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsValueOutOfRange() {
+        CronExpression.parse("60 7 * * *");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsInvalidRange() {
+        CronExpression.parse("0 7 * * 5-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseRejectsInvalidNumber() {
+        CronExpression.parse("0 x * * *");
+    }
+}
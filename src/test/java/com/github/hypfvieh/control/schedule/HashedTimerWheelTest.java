@@ -0,0 +1,106 @@
+package com.github.hypfvieh.control.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.hypfvieh.control.schedule.HashedTimerWheel.Timeout;
+
+public class HashedTimerWheelTest {
+    /** One revolution of the wheel takes 80 ms. */
+    private static final long TICK_MILLIS = 10;
+    private static final int  BUCKETS     = 8;
+
+    private HashedTimerWheel  wheel;
+
+    @Before
+    public void createWheel() {
+        wheel = new HashedTimerWheel(TICK_MILLIS, TimeUnit.MILLISECONDS, BUCKETS, Runnable::run, "TestTimer");
+    }
+
+    @After
+    public void closeWheel() {
+        wheel.close();
+    }
+
+    @Test
+    public void testDelayBeyondOneRevolution() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        long[] elapsed = new long[1];
+        wheel.schedule(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            latch.countDown();
+        }, 200, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue("expired after " + TimeUnit.NANOSECONDS.toMillis(elapsed[0]) + " ms", elapsed[0] >= TimeUnit.MILLISECONDS.toNanos(200));
+        assertEquals(1, wheel.getExpiredCount());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testSameBucketDifferentRounds() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        List<String> order = new CopyOnWriteArrayList<>();
+        // all timeouts end up in the same bucket, one, two and three revolutions apart
+        wheel.schedule(() -> {
+            order.add("third");
+            latch.countDown();
+        }, 30 + 2 * TICK_MILLIS * BUCKETS, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> {
+            order.add("first");
+            latch.countDown();
+        }, 30, TimeUnit.MILLISECONDS);
+        wheel.schedule(() -> {
+            order.add("second");
+            latch.countDown();
+        }, 30 + TICK_MILLIS * BUCKETS, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals("first", order.get(0));
+        assertEquals("second", order.get(1));
+        assertEquals("third", order.get(2));
+    }
+
+    @Test
+    public void testZeroAndNegativeDelay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(2);
+        wheel.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, -100, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        Timeout cancelled = wheel.schedule(() -> {
+            throw new IllegalStateException("cancelled timeout executed");
+        }, 50, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, 100, TimeUnit.MILLISECONDS);
+        assertEquals(2, wheel.size());
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertEquals(1, wheel.size());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelled.isExpired());
+        assertEquals(1, wheel.getExpiredCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidTickDuration() {
+        new HashedTimerWheel(0, TimeUnit.MILLISECONDS, BUCKETS, Runnable::run, "TestTimer");
+    }
+}